@@ -0,0 +1,119 @@
+package protoparse;
+
+import com.hedera.hashgraph.protoparse.ByteBufferOutputStream;
+import com.hedera.hashgraph.protoparse.MalformedProtobufException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import sample.target.model.Apple;
+import sample.target.model.Nested;
+import sample.target.model.Omnibus;
+import sample.target.model.Suit;
+import sample.target.proto.parsers.OmnibusParser;
+import sample.target.proto.writers.OmnibusWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 1, time = 5)
+@Measurement(iterations = 5, time = 10)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OmnibusBench {
+	private final OmnibusParser parser = new OmnibusParser();
+	private final OmnibusWriter writer = new OmnibusWriter();
+	private Omnibus omnibus;
+	private byte[] protobuf;
+	private ByteBuffer heapBuffer;
+	private ByteBuffer directBuffer;
+	private ByteBuffer directSink;
+	private Path file;
+
+	@Setup
+	public void setup() throws IOException {
+		omnibus = new Omnibus.Builder()
+				.int32Number(-42)
+				.int64Number(Long.MAX_VALUE)
+				.uint32Number(42)
+				.uint64Number(1234567890123L)
+				.flag(true)
+				.suitEnum(Suit.CLUBS)
+				.sint32Number(-1234)
+				.sint64Number(-1234567890123L)
+				.sfixed32Number(-5)
+				.sfixed64Number(-6)
+				.fixed32Number(7)
+				.fixed64Number(8)
+				.floatNumber(9.5f)
+				.doubleNumber(10.25)
+				.randomBytes(ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}))
+				.nested(new Nested("I need some HBAR to run work on Hedera!"))
+				.apple(new Apple("Honey Crisp"))
+				.int32NumberList(List.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10))
+				.int64NumberList(List.of(1L, 200L, 30_000L, 4_000_000L, 500_000_000_000L))
+				.fixed64NumberList(List.of(1L, 2L, 3L, 4L))
+				.memoList(List.of("Bob", "Sue", "Fred", "Sally"))
+				.nestedList(List.of(new Nested("Bob"), new Nested("Sue")))
+				.build();
+
+		final var out = new ByteArrayOutputStream();
+		writer.write(omnibus, out);
+		protobuf = out.toByteArray();
+		heapBuffer = ByteBuffer.wrap(protobuf);
+		directBuffer = ByteBuffer.allocateDirect(protobuf.length).put(protobuf).flip();
+		directSink = ByteBuffer.allocateDirect(protobuf.length);
+		file = Files.createTempFile("omnibus", ".bin");
+		Files.write(file, protobuf);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Benchmark
+	public void parseByteArray(Blackhole blackhole) throws MalformedProtobufException {
+		blackhole.consume(parser.parse(protobuf));
+	}
+
+	@Benchmark
+	public void parseHeapByteBuffer(Blackhole blackhole) throws MalformedProtobufException {
+		blackhole.consume(parser.parse(heapBuffer));
+	}
+
+	@Benchmark
+	public void parseDirectByteBuffer(Blackhole blackhole) throws MalformedProtobufException {
+		blackhole.consume(parser.parse(directBuffer));
+	}
+
+	@Benchmark
+	public void parseMappedFile(Blackhole blackhole) throws IOException, MalformedProtobufException {
+		blackhole.consume(parser.parse(file));
+	}
+
+	@Benchmark
+	public void parseInputStream(Blackhole blackhole) throws IOException, MalformedProtobufException {
+		blackhole.consume(parser.parse(new ByteArrayInputStream(protobuf)));
+	}
+
+	@Benchmark
+	public void writeDirectByteBuffer(Blackhole blackhole) throws IOException {
+		directSink.clear();
+		writer.write(omnibus, new ByteBufferOutputStream(directSink));
+		blackhole.consume(directSink);
+	}
+}
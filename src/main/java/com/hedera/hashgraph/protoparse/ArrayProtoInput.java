@@ -0,0 +1,383 @@
+package com.hedera.hashgraph.protoparse;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static com.hedera.hashgraph.protoparse.ProtoConstants.*;
+
+/**
+ * A {@link ProtoInput} that decodes directly from a byte[] (either given to the parser directly, or the
+ * backing array of a heap {@link ByteBuffer}). Rather than going through {@link java.io.InputStream#read()}
+ * for every byte, it walks the array with an int cursor and limit. Varints are decoded inline, and
+ * fixed32/fixed64 values are read with a single little-endian load.
+ *
+ * <p>The array does not have to hold all the input up front. A subclass may override {@link #refill(int)}
+ * to load more bytes into the array when the cursor gets close to the limit, in which case all the
+ * decoding still happens on the array (see {@link StreamProtoInput}).
+ */
+class ArrayProtoInput extends ProtoInput {
+	private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+	byte[] buffer;
+	/**
+	 * The index in {@link #buffer} of the next byte to read
+	 */
+	int position;
+	/**
+	 * The index in {@link #buffer} one past the last byte that may be read
+	 */
+	int limit;
+	/**
+	 * The index in {@link #buffer} of the first byte, used to compute {@link #bytesRead()}
+	 */
+	int start;
+	/**
+	 * A read-only view of the whole of {@link #buffer}, that bytes fields are sliced from. It is created
+	 * the first time it is needed.
+	 */
+	private ByteBuffer view;
+
+	/**
+	 * Resets this input to read the bytes of the given array from {@code offset} (inclusive)
+	 * to {@code limit} (exclusive).
+	 */
+	void reset(byte[] buffer, int offset, int limit) {
+		assert buffer != null : "The only code that calls this ensures this is true";
+		assert offset >= 0 && offset <= limit && limit <= buffer.length;
+		if (buffer != this.buffer) {
+			this.view = null;
+		}
+		this.buffer = buffer;
+		this.position = offset;
+		this.start = offset;
+		this.limit = limit;
+	}
+
+	/**
+	 * Tries to make at least {@code needed} bytes available between {@link #position} and {@link #limit}.
+	 * This may move the bytes within {@link #buffer}, so any cached copy of {@link #position} must be
+	 * re-read afterwards. An array holds all of its bytes from the start, so there is never anything more
+	 * to load.
+	 *
+	 * @param needed the number of bytes needed
+	 * @return true if at least {@code needed} bytes are now available
+	 * @throws IOException if more bytes could not be loaded
+	 */
+	boolean refill(int needed) throws IOException {
+		return limit - position >= needed;
+	}
+
+	/**
+	 * Reads {@code length} bytes into a new array, when they are not all available in {@link #buffer} even
+	 * after a {@link #refill(int)}. For an array, this means the input is truncated.
+	 */
+	byte[] readBytesBeyondBuffer(int length, String fieldName) throws IOException, MalformedProtobufException {
+		throw new MalformedProtobufException("Truncated protobuf, length of " + length +
+				" exceeds the remaining " + (limit - position) + " bytes while reading field: " + fieldName);
+	}
+
+	/**
+	 * Skips {@code length} bytes, when they are not all available in {@link #buffer}. For an array, this
+	 * means the input is truncated.
+	 */
+	void skipBytesBeyondBuffer(long length, String fieldName) throws IOException, MalformedProtobufException {
+		throw new MalformedProtobufException("Truncated protobuf, length of " + length +
+				" exceeds the remaining " + (limit - position) + " bytes while skipping field: " + fieldName);
+	}
+
+	@Override
+	boolean atEnd() throws IOException {
+		return position >= limit && !refill(1);
+	}
+
+	@Override
+	long bytesRead() {
+		return position - start;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (bytesRead() >= messageEnd || (position >= limit && !refill(1))) {
+			return -1;
+		}
+		return buffer[position++] & 0xFF; // no sign extending
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+
+		if (bytesRead() >= messageEnd || (position >= limit && !refill(1))) {
+			return -1;
+		}
+
+		final int toRead = Math.min(bytesLeftInMessage(len), limit - position);
+		System.arraycopy(buffer, position, b, off, toRead);
+		position += toRead;
+		return toRead;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		// Skips what is already loaded, without going past the end of the nested message being read
+		if (n <= 0 || bytesRead() >= messageEnd || (position >= limit && !refill(1))) {
+			return 0;
+		}
+		final int toSkip = (int) Math.min(n, Math.min(messageEnd - bytesRead(), limit - position));
+		position += toSkip;
+		return toSkip;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return bytesLeftInMessage(limit - position);
+	}
+
+	@Override
+	boolean matchTag(CompiledSchema.Entry expected) throws IOException {
+		if (limit - position >= Long.BYTES) {
+			// Compare all the bytes of the tag at once
+			if ((((long) LONG_LE.get(buffer, position) ^ expected.tagBytes) & expected.tagMask) != 0) {
+				return false;
+			}
+			position += expected.tagSize;
+			return true;
+		}
+
+		if (limit - position < expected.tagSize && !refill(expected.tagSize)) {
+			return false;
+		}
+		for (int i = 0; i < expected.tagSize; i++) {
+			if (buffer[position + i] != (byte) (expected.tagBytes >>> (8 * i))) {
+				return false;
+			}
+		}
+		position += expected.tagSize;
+		return true;
+	}
+
+	@Override
+	long readVarint(String fieldName, boolean zigZag) throws IOException, MalformedProtobufException {
+		if (limit - position < MAX_VARINT_SIZE) {
+			refill(MAX_VARINT_SIZE);
+		}
+
+		final int pos = position;
+		if (pos < limit) {
+			// The very common single byte case (tags of low numbered fields, small lengths and values)
+			final long first = buffer[pos];
+			if (first >= 0) {
+				position = pos + 1;
+				return zigZag ? decodeZigZag(first) : first;
+			}
+
+			// If the longest possible varint fits in what is left of the array, then it can be decoded
+			// a word at a time without any further bounds checks.
+			if (limit - pos >= MAX_VARINT_SIZE) {
+				final long value = readVarintWord(fieldName);
+				return zigZag ? decodeZigZag(value) : value;
+			}
+		}
+
+		return readVarintSlow(fieldName, zigZag);
+	}
+
+	/**
+	 * Decodes a varint by loading the next 8 bytes as a single little-endian long, and then using bit tricks
+	 * (SWAR, "SIMD within a register") to find the terminating byte and gather the 7-bit groups, rather than
+	 * looping and branching on each byte. There must be at least {@link ProtoConstants#MAX_VARINT_SIZE} bytes
+	 * remaining.
+	 */
+	private long readVarintWord(String fieldName) throws MalformedProtobufException {
+		final int pos = position;
+		final long word = (long) LONG_LE.get(buffer, pos);
+		// Every byte of a varint except the last one has the continuation bit set. Inverting the word leaves
+		// the high bit set only in bytes that terminate a varint, so the lowest of those marks the end.
+		final long stopBits = ~word & VARINT_CONTINUATION_BITS;
+		if (stopBits != 0) {
+			// Bit 7 of the n'th byte (counting from 0) is bit 8n+7, so the varint is (8n+8)/8 bytes long.
+			final int numBytes = (Long.numberOfTrailingZeros(stopBits) + 1) >>> 3;
+			// Keep only the bytes of this varint. When the last byte is the 8th, the shift overflows to
+			// 0 and the mask is all 1's, which is just what we want.
+			final long varintBytes = word & (((stopBits & -stopBits) << 1) - 1);
+			position = pos + numBytes;
+			return gatherVarintBits(varintBytes);
+		}
+
+		// All 8 bytes have the continuation bit set, so this is a 9 or 10 byte varint
+		long value = gatherVarintBits(word);
+		final int b9 = buffer[pos + 8];
+		value |= (long) (b9 & VARINT_DATA_MASK) << 56;
+		if (b9 >= 0) {
+			position = pos + 9;
+			return value;
+		}
+
+		final int b10 = buffer[pos + 9];
+		if (b10 < 0) {
+			throw new MalformedProtobufException(
+					"Bad protobuf encoding, MSB set on last byte of varint for field '" + fieldName + "'!");
+		}
+		// Only the lowest bit of the 10th byte fits in a long
+		value |= (long) b10 << 63;
+		position = pos + 10;
+		return value;
+	}
+
+	/**
+	 * Decodes a varint one byte at a time. Used near the end of the input, where an 8 byte load could run
+	 * past the limit.
+	 */
+	private long readVarintSlow(String fieldName, boolean zigZag) throws IOException, MalformedProtobufException {
+		// Protobuf encodes smaller integers with fewer bytes than larger integers. It takes a full byte
+		// to encode 7 bits of information. So, if all 64 bits of a long are in use (for example, if the
+		// leading bit is 1, or even all bits are 1) then it will take 10 bytes to transmit what would
+		// have otherwise been 8 bytes of data!
+		//
+		// Thus, at most, reading a varint should involve reading 10 bytes of data.
+		//
+		// The leading bit of each byte is a continuation bit. If set, another byte will follow.
+		// If we read 10 bytes in sequence with a continuation bit set, then we have a malformed
+		// byte stream.
+		// The bytes come least to most significant 7 bits. So the first byte we read represents
+		// the lowest 7 bytes, then the next byte is the next highest 7 bytes, etc.
+		long value = 0;
+		int shift = 0;
+		while (true) {
+			if (position >= limit && !refill(1)) {
+				throw new MalformedProtobufException("Truncated protobuf, unexpected end of input while " +
+						"reading varint for field '" + fieldName + "'");
+			}
+
+			final int b = buffer[position++];
+			value |= (long) (b & VARINT_DATA_MASK) << shift;
+			if (b >= 0) {
+				break;
+			}
+
+			shift += NUM_BITS_PER_VARINT_BYTE;
+			if (shift == MAX_VARINT_SIZE * NUM_BITS_PER_VARINT_BYTE) {
+				throw new MalformedProtobufException(
+						"Bad protobuf encoding, MSB set on last byte of varint for field '" + fieldName + "'!");
+			}
+		}
+
+		return zigZag ? decodeZigZag(value) : value;
+	}
+
+	@Override
+	int countPackedElements(int length, int fixedWidth) throws IOException {
+		if (limit - position < length && !refill(length)) {
+			return -1;
+		}
+
+		if (fixedWidth > 0) {
+			return length / fixedWidth;
+		}
+
+		int count = 0;
+		int i = position;
+		final int end = position + length;
+		for (; i + Long.BYTES <= end; i += Long.BYTES) {
+			count += Long.bitCount(~(long) LONG_LE.get(buffer, i) & VARINT_CONTINUATION_BITS);
+		}
+		for (; i < end; i++) {
+			if (buffer[i] >= 0) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Override
+	void skipBytes(long length, String fieldName) throws IOException, MalformedProtobufException {
+		if (limit - position < length) {
+			skipBytesBeyondBuffer(length, fieldName);
+			return;
+		}
+		position += (int) length;
+	}
+
+	@Override
+	int readIntFromStream() throws IOException, MalformedProtobufException {
+		if (limit - position < Integer.BYTES && !refill(Integer.BYTES)) {
+			throw new MalformedProtobufException("Unexpected end of stream while parsing protobuf int");
+		}
+
+		final int value = (int) INT_LE.get(buffer, position);
+		position += Integer.BYTES;
+		return value;
+	}
+
+	@Override
+	long readLongFromStream() throws IOException, MalformedProtobufException {
+		if (limit - position < Long.BYTES && !refill(Long.BYTES)) {
+			throw new MalformedProtobufException("Unexpected end of stream while parsing protobuf int");
+		}
+
+		final long value = (long) LONG_LE.get(buffer, position);
+		position += Long.BYTES;
+		return value;
+	}
+
+	@Override
+	String readString(String fieldName) throws IOException, MalformedProtobufException {
+		final int length = readDelimitedLength(fieldName);
+		if (limit - position < length && !refill(length)) {
+			return new String(readBytesBeyondBuffer(length, fieldName), StandardCharsets.UTF_8);
+		}
+
+		final String value = stringCache != null
+				? stringCache.get(buffer, position, length)
+				: new String(buffer, position, length, StandardCharsets.UTF_8);
+		position += length;
+		return value;
+	}
+
+	@Override
+	ByteBuffer readBytes(String fieldName) throws IOException, MalformedProtobufException {
+		final int length = readDelimitedLength(fieldName);
+		if (limit - position < length && !refill(length)) {
+			return ByteBuffer.wrap(readBytesBeyondBuffer(length, fieldName)).asReadOnlyBuffer();
+		}
+
+		final byte[] data = Arrays.copyOfRange(buffer, position, position + length);
+		position += length;
+		return ByteBuffer.wrap(data).asReadOnlyBuffer();
+	}
+
+	@Override
+	ByteBuffer readBytesSlice(String fieldName) throws IOException, MalformedProtobufException {
+		final int length = readDelimitedLength(fieldName);
+		if (limit - position < length && !refill(length)) {
+			return ByteBuffer.wrap(readBytesBeyondBuffer(length, fieldName)).asReadOnlyBuffer();
+		}
+
+		if (view == null) {
+			view = ByteBuffer.wrap(buffer).asReadOnlyBuffer();
+		}
+		final ByteBuffer slice = view.slice(position, length);
+		position += length;
+		return slice;
+	}
+
+	@Override
+	Utf8View readUtf8(String fieldName) throws IOException, MalformedProtobufException {
+		final int length = readDelimitedLength(fieldName);
+		if (limit - position < length && !refill(length)) {
+			return new Utf8View(readBytesBeyondBuffer(length, fieldName), 0, length);
+		}
+
+		final Utf8View value = new Utf8View(buffer, position, length);
+		position += length;
+		return value;
+	}
+}
@@ -0,0 +1,255 @@
+package com.hedera.hashgraph.protoparse;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Parses batches of independent messages, such as the transactions of a block, on many threads at once.
+ *
+ * <p>The messages of a batch are split into runs of consecutive messages. A number of workers, one per thread
+ * of the executor plus the calling thread, each borrow a parser from a {@link ParserPool} and keep taking the
+ * next run until there are none left. So each worker parses all of its messages with the one parser, busy
+ * threads take fewer runs than idle ones, and the parsers are reused by the next batch. Each message is
+ * stored at its own index of the result, so the messages come out in the same order they went in.
+ *
+ * <p>The calling thread takes runs too, and only waits for runs that other workers have already started. If
+ * the executor is busy, or is the pool the calling thread itself belongs to, the batch still finishes, on
+ * fewer threads.
+ *
+ * <p>For example:
+ *
+ * <pre>
+ *     final BatchParser&lt;OmnibusParser, Omnibus&gt; batchParser =
+ *             new BatchParser&lt;&gt;(OmnibusParser::new, OmnibusParser::parse);
+ *     final List&lt;Omnibus&gt; transactions = batchParser.parseAll(buffers).messages();
+ * </pre>
+ *
+ * <p>A batch parser is thread safe.
+ *
+ * @param <P> The type of parser
+ * @param <T> The type of the messages
+ */
+public final class BatchParser<P extends ProtoParser, T> {
+	/**
+	 * The number of runs each worker gets, on average. More runs balance the work between threads better,
+	 * fewer cost less to hand out.
+	 */
+	private static final int RUNS_PER_WORKER = 8;
+
+	/**
+	 * Parses one message with a parser, such as {@code OmnibusParser::parse}.
+	 *
+	 * @param <P> The type of parser
+	 * @param <T> The type of the message
+	 */
+	@FunctionalInterface
+	public interface ParseFunction<P, T> {
+		T parse(P parser, ByteBuffer message) throws MalformedProtobufException;
+	}
+
+	/**
+	 * The messages of a batch, with how long they took to parse.
+	 *
+	 * @param messages The messages, in the same order as the buffers they were parsed from
+	 * @param bytes The total number of bytes parsed
+	 * @param elapsedNanos How long parsing the batch took, from start to finish, in nanoseconds
+	 * @param threads The number of threads that parsed messages
+	 * @param <T> The type of the messages
+	 */
+	public record Batch<T>(List<T> messages, long bytes, long elapsedNanos, int threads) {
+		/**
+		 * Gets the number of messages parsed per second.
+		 */
+		public double messagesPerSecond() {
+			return elapsedNanos == 0 ? 0 : messages.size() * 1e9 / elapsedNanos;
+		}
+
+		/**
+		 * Gets the number of bytes parsed per second.
+		 */
+		public double bytesPerSecond() {
+			return elapsedNanos == 0 ? 0 : bytes * 1e9 / elapsedNanos;
+		}
+	}
+
+	private final ParserPool<P> pool;
+	private final ParseFunction<? super P, ? extends T> parseFunction;
+
+	/**
+	 * Create a new batch parser.
+	 *
+	 * @param factory Creates a new parser, whenever a worker needs one and there is no idle one. Must not be null.
+	 * @param parseFunction Parses one message. Must not be null.
+	 */
+	public BatchParser(Supplier<P> factory, ParseFunction<? super P, ? extends T> parseFunction) {
+		this.pool = new ParserPool<>(factory);
+		this.parseFunction = Objects.requireNonNull(parseFunction);
+	}
+
+	/**
+	 * Parses a batch of messages on the common fork-join pool.
+	 *
+	 * @param messages The bytes of each message, between its position and limit. Must not be null, nor contain
+	 *                 null. The positions of the buffers are not changed.
+	 * @return the messages, in the same order
+	 * @throws MalformedProtobufException if any of the messages is malformed
+	 */
+	public Batch<T> parseAll(List<ByteBuffer> messages) throws MalformedProtobufException {
+		return parseAll(messages, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Parses a batch of messages on the threads of the given executor, and the calling thread.
+	 *
+	 * @param messages The bytes of each message, between its position and limit. Must not be null, nor contain
+	 *                 null. The positions of the buffers are not changed.
+	 * @param executor The executor to parse on. If it is a {@link ForkJoinPool}, as many workers as its
+	 *                 parallelism are used, otherwise one per processor. Must not be null.
+	 * @return the messages, in the same order
+	 * @throws MalformedProtobufException if any of the messages is malformed. If more than one is, this is
+	 *                                    about the first that was found to be.
+	 */
+	public Batch<T> parseAll(List<ByteBuffer> messages, Executor executor) throws MalformedProtobufException {
+		Objects.requireNonNull(messages);
+		Objects.requireNonNull(executor);
+		final long startNanos = System.nanoTime();
+		final ByteBuffer[] buffers = messages.toArray(new ByteBuffer[0]);
+		long bytes = 0;
+		for (final ByteBuffer buffer : buffers) {
+			bytes += buffer.remaining();
+		}
+
+		final int parallelism = executor instanceof ForkJoinPool fjp
+				? fjp.getParallelism()
+				: Runtime.getRuntime().availableProcessors();
+		final Run run = new Run(buffers, Math.max(1, parallelism));
+		// The calling thread is a worker too, so one fewer is needed from the executor
+		for (int i = 1; i < run.workers; i++) {
+			try {
+				executor.execute(run::work);
+			} catch (RejectedExecutionException e) {
+				break;
+			}
+		}
+		run.work();
+		run.await();
+
+		if (run.failure.get() != null) {
+			throw run.failure.get();
+		}
+		@SuppressWarnings("unchecked")
+		final List<T> result = (List<T>) Collections.unmodifiableList(Arrays.asList(run.results));
+		return new Batch<>(result, bytes, System.nanoTime() - startNanos, run.threads.get());
+	}
+
+	/**
+	 * The parsing of one batch, shared by its workers
+	 */
+	private final class Run {
+		private final ByteBuffer[] buffers;
+		private final Object[] results;
+		private final int runLength;
+		private final int numRuns;
+		private final int workers;
+		/**
+		 * The index of the next run to take
+		 */
+		private final AtomicInteger nextRun = new AtomicInteger();
+		/**
+		 * Counts down as each run is finished, whether its messages were parsed or not
+		 */
+		private final CountDownLatch runsLeft;
+		private final AtomicInteger threads = new AtomicInteger();
+		private final AtomicReference<MalformedProtobufException> failure = new AtomicReference<>();
+		private final AtomicReference<RuntimeException> error = new AtomicReference<>();
+
+		Run(ByteBuffer[] buffers, int parallelism) {
+			this.buffers = buffers;
+			this.results = new Object[buffers.length];
+			final long wantedRuns = (long) parallelism * RUNS_PER_WORKER;
+			this.runLength = (int) Math.max(1, (buffers.length + wantedRuns - 1) / wantedRuns);
+			this.numRuns = (buffers.length + runLength - 1) / runLength;
+			this.workers = Math.min(parallelism, numRuns);
+			this.runsLeft = new CountDownLatch(numRuns);
+		}
+
+		void work() {
+			int runIndex = nextRun.getAndIncrement();
+			if (runIndex >= numRuns) {
+				return;
+			}
+
+			threads.incrementAndGet();
+			P parser = null;
+			try {
+				do {
+					final int from = runIndex * runLength;
+					final int to = Math.min(from + runLength, buffers.length);
+					try {
+						if (parser == null) {
+							parser = pool.acquire();
+						}
+						// Once anything has failed, the rest of the runs are just counted off
+						for (int i = from; i < to && failure.get() == null && error.get() == null; i++) {
+							results[i] = parseOne(parser, i);
+						}
+					} catch (MalformedProtobufException e) {
+						failure.compareAndSet(null, e);
+					} catch (RuntimeException e) {
+						error.compareAndSet(null, e);
+					} finally {
+						runsLeft.countDown();
+					}
+					runIndex = nextRun.getAndIncrement();
+				} while (runIndex < numRuns);
+			} finally {
+				if (parser != null) {
+					pool.release(parser);
+				}
+			}
+		}
+
+		private T parseOne(P parser, int index) throws MalformedProtobufException {
+			try {
+				return parseFunction.parse(parser, buffers[index]);
+			} catch (MalformedProtobufException e) {
+				final MalformedProtobufException wrapped = new MalformedProtobufException(
+						"Message " + index + " of the batch is malformed: " + e.getMessage());
+				wrapped.initCause(e);
+				throw wrapped;
+			}
+		}
+
+		/**
+		 * Waits for the runs that other workers have taken to be finished. Since the calling thread only
+		 * gets here once there are no runs left to take, every run has been started by then.
+		 */
+		void await() {
+			boolean interrupted = false;
+			while (true) {
+				try {
+					runsLeft.await();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			if (error.get() != null) {
+				throw error.get();
+			}
+		}
+	}
+}
@@ -0,0 +1,383 @@
+package com.hedera.hashgraph.protoparse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static com.hedera.hashgraph.protoparse.ProtoConstants.*;
+
+/**
+ * A {@link ProtoInput} that decodes directly from a {@link ByteBuffer} that has no accessible backing array,
+ * such as a direct, read-only or memory mapped buffer. Just like {@link ArrayProtoInput}, it walks the buffer
+ * with an int cursor and limit, using absolute gets so that the position of the buffer is never touched.
+ * Fixed32/fixed64 values (and the 8 byte words used to decode varints) are read with a single load.
+ *
+ * <p>The buffer does not have to hold all the input up front. A subclass may override {@link #refill(int)}
+ * to move on to a buffer holding more bytes when the cursor gets close to the limit (see
+ * {@link MappedProtoInput}).
+ */
+class BufferProtoInput extends ProtoInput {
+	/**
+	 * The size of the reusable array that strings are copied into
+	 */
+	private static final int MAX_SCRATCH_SIZE = 1024;
+
+	ByteBuffer buffer;
+	/**
+	 * Whether the buffer is big-endian, in which case multibyte values have to be byte swapped. Changing the
+	 * order of the buffer itself is not an option, since it belongs to the caller.
+	 */
+	private boolean bigEndian;
+	/**
+	 * The index in {@link #buffer} of the next byte to read
+	 */
+	int position;
+	/**
+	 * The index in {@link #buffer} one past the last byte that may be read
+	 */
+	int limit;
+	/**
+	 * The index in {@link #buffer} of the first byte, used to compute {@link #bytesRead()}
+	 */
+	int start;
+	/**
+	 * Reusable array that strings are copied into before being decoded
+	 */
+	private byte[] scratch;
+	/**
+	 * A read-only view of the whole of {@link #buffer}, that bytes fields are sliced from. It is created
+	 * the first time it is needed.
+	 */
+	private ByteBuffer view;
+
+	/**
+	 * Resets this input to read the bytes of the given buffer from {@code offset} (inclusive)
+	 * to {@code limit} (exclusive).
+	 */
+	void reset(ByteBuffer buffer, int offset, int limit) {
+		assert buffer != null : "The only code that calls this ensures this is true";
+		assert offset >= 0 && offset <= limit && limit <= buffer.capacity();
+		this.buffer = buffer;
+		this.view = null;
+		this.bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+		this.position = offset;
+		this.start = offset;
+		this.limit = limit;
+	}
+
+	/**
+	 * Tries to make at least {@code needed} bytes available between {@link #position} and {@link #limit}.
+	 * This may switch to a different {@link #buffer}, so any cached copy of {@link #position} must be
+	 * re-read afterwards. A plain buffer holds all of its bytes from the start, so there is never anything
+	 * more to load.
+	 *
+	 * @param needed the number of bytes needed
+	 * @return true if at least {@code needed} bytes are now available
+	 * @throws IOException if more bytes could not be loaded
+	 */
+	boolean refill(int needed) throws IOException {
+		return limit - position >= needed;
+	}
+
+	/**
+	 * Reads {@code length} bytes into a new array, when they are not all available in {@link #buffer} even
+	 * after a {@link #refill(int)}. For a plain buffer, this means the input is truncated.
+	 */
+	byte[] readBytesBeyondBuffer(int length, String fieldName) throws IOException, MalformedProtobufException {
+		throw new MalformedProtobufException("Truncated protobuf, length of " + length +
+				" exceeds the remaining " + (limit - position) + " bytes while reading field: " + fieldName);
+	}
+
+	/**
+	 * Skips {@code length} bytes, when they are not all available in {@link #buffer}. For a plain buffer, this
+	 * means the input is truncated.
+	 */
+	void skipBytesBeyondBuffer(long length, String fieldName) throws IOException, MalformedProtobufException {
+		throw new MalformedProtobufException("Truncated protobuf, length of " + length +
+				" exceeds the remaining " + (limit - position) + " bytes while skipping field: " + fieldName);
+	}
+
+	@Override
+	boolean atEnd() throws IOException {
+		return position >= limit && !refill(1);
+	}
+
+	@Override
+	long bytesRead() {
+		return position - start;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (bytesRead() >= messageEnd || (position >= limit && !refill(1))) {
+			return -1;
+		}
+		return buffer.get(position++) & 0xFF; // no sign extending
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+
+		if (bytesRead() >= messageEnd || (position >= limit && !refill(1))) {
+			return -1;
+		}
+
+		final int toRead = Math.min(bytesLeftInMessage(len), limit - position);
+		buffer.get(position, b, off, toRead);
+		position += toRead;
+		return toRead;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		// Skips what is already loaded, without going past the end of the nested message being read
+		if (n <= 0 || bytesRead() >= messageEnd || (position >= limit && !refill(1))) {
+			return 0;
+		}
+		final int toSkip = (int) Math.min(n, Math.min(messageEnd - bytesRead(), limit - position));
+		position += toSkip;
+		return toSkip;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return bytesLeftInMessage(limit - position);
+	}
+
+	@Override
+	boolean matchTag(CompiledSchema.Entry expected) throws IOException {
+		if (limit - position >= Long.BYTES) {
+			// Compare all the bytes of the tag at once
+			if (((getLongLE(position) ^ expected.tagBytes) & expected.tagMask) != 0) {
+				return false;
+			}
+			position += expected.tagSize;
+			return true;
+		}
+
+		if (limit - position < expected.tagSize && !refill(expected.tagSize)) {
+			return false;
+		}
+		for (int i = 0; i < expected.tagSize; i++) {
+			if (buffer.get(position + i) != (byte) (expected.tagBytes >>> (8 * i))) {
+				return false;
+			}
+		}
+		position += expected.tagSize;
+		return true;
+	}
+
+	@Override
+	long readVarint(String fieldName, boolean zigZag) throws IOException, MalformedProtobufException {
+		if (limit - position < MAX_VARINT_SIZE) {
+			refill(MAX_VARINT_SIZE);
+		}
+
+		final int pos = position;
+		if (pos < limit) {
+			// The very common single byte case (tags of low numbered fields, small lengths and values)
+			final long first = buffer.get(pos);
+			if (first >= 0) {
+				position = pos + 1;
+				return zigZag ? decodeZigZag(first) : first;
+			}
+
+			// If the longest possible varint fits in what is left of the buffer, then it can be decoded
+			// a word at a time without any further bounds checks.
+			if (limit - pos >= MAX_VARINT_SIZE) {
+				final long value = readVarintWord(fieldName);
+				return zigZag ? decodeZigZag(value) : value;
+			}
+		}
+
+		return readVarintSlow(fieldName, zigZag);
+	}
+
+	/**
+	 * Decodes a varint from the next 8 bytes loaded as a single little-endian long. This is the same as
+	 * {@code ArrayProtoInput.readVarintWord}, see there for how it works. There must be at least
+	 * {@link ProtoConstants#MAX_VARINT_SIZE} bytes remaining.
+	 */
+	private long readVarintWord(String fieldName) throws MalformedProtobufException {
+		final int pos = position;
+		final long word = getLongLE(pos);
+		final long stopBits = ~word & VARINT_CONTINUATION_BITS;
+		if (stopBits != 0) {
+			final int numBytes = (Long.numberOfTrailingZeros(stopBits) + 1) >>> 3;
+			final long varintBytes = word & (((stopBits & -stopBits) << 1) - 1);
+			position = pos + numBytes;
+			return gatherVarintBits(varintBytes);
+		}
+
+		// All 8 bytes have the continuation bit set, so this is a 9 or 10 byte varint
+		long value = gatherVarintBits(word);
+		final int b9 = buffer.get(pos + 8);
+		value |= (long) (b9 & VARINT_DATA_MASK) << 56;
+		if (b9 >= 0) {
+			position = pos + 9;
+			return value;
+		}
+
+		final int b10 = buffer.get(pos + 9);
+		if (b10 < 0) {
+			throw new MalformedProtobufException(
+					"Bad protobuf encoding, MSB set on last byte of varint for field '" + fieldName + "'!");
+		}
+		// Only the lowest bit of the 10th byte fits in a long
+		value |= (long) b10 << 63;
+		position = pos + 10;
+		return value;
+	}
+
+	/**
+	 * Decodes a varint one byte at a time. Used near the end of the input, where an 8 byte load could run
+	 * past the limit.
+	 */
+	private long readVarintSlow(String fieldName, boolean zigZag) throws IOException, MalformedProtobufException {
+		long value = 0;
+		int shift = 0;
+		while (true) {
+			if (position >= limit && !refill(1)) {
+				throw new MalformedProtobufException("Truncated protobuf, unexpected end of input while " +
+						"reading varint for field '" + fieldName + "'");
+			}
+
+			final int b = buffer.get(position++);
+			value |= (long) (b & VARINT_DATA_MASK) << shift;
+			if (b >= 0) {
+				break;
+			}
+
+			shift += NUM_BITS_PER_VARINT_BYTE;
+			if (shift == MAX_VARINT_SIZE * NUM_BITS_PER_VARINT_BYTE) {
+				throw new MalformedProtobufException(
+						"Bad protobuf encoding, MSB set on last byte of varint for field '" + fieldName + "'!");
+			}
+		}
+
+		return zigZag ? decodeZigZag(value) : value;
+	}
+
+	@Override
+	int countPackedElements(int length, int fixedWidth) throws IOException {
+		if (limit - position < length && !refill(length)) {
+			return -1;
+		}
+
+		if (fixedWidth > 0) {
+			return length / fixedWidth;
+		}
+
+		// The byte order of the words doesn't matter, only how many bytes have the continuation bit clear
+		int count = 0;
+		int i = position;
+		final int end = position + length;
+		for (; i + Long.BYTES <= end; i += Long.BYTES) {
+			count += Long.bitCount(~buffer.getLong(i) & VARINT_CONTINUATION_BITS);
+		}
+		for (; i < end; i++) {
+			if (buffer.get(i) >= 0) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Override
+	void skipBytes(long length, String fieldName) throws IOException, MalformedProtobufException {
+		if (limit - position < length) {
+			skipBytesBeyondBuffer(length, fieldName);
+			return;
+		}
+		position += (int) length;
+	}
+
+	@Override
+	int readIntFromStream() throws IOException, MalformedProtobufException {
+		if (limit - position < Integer.BYTES && !refill(Integer.BYTES)) {
+			throw new MalformedProtobufException("Unexpected end of stream while parsing protobuf int");
+		}
+
+		final int value = buffer.getInt(position);
+		position += Integer.BYTES;
+		return bigEndian ? Integer.reverseBytes(value) : value;
+	}
+
+	@Override
+	long readLongFromStream() throws IOException, MalformedProtobufException {
+		if (limit - position < Long.BYTES && !refill(Long.BYTES)) {
+			throw new MalformedProtobufException("Unexpected end of stream while parsing protobuf int");
+		}
+
+		final long value = getLongLE(position);
+		position += Long.BYTES;
+		return value;
+	}
+
+	private long getLongLE(int index) {
+		final long value = buffer.getLong(index);
+		return bigEndian ? Long.reverseBytes(value) : value;
+	}
+
+	@Override
+	String readString(String fieldName) throws IOException, MalformedProtobufException {
+		final int length = readDelimitedLength(fieldName);
+		if (limit - position < length && !refill(length)) {
+			return new String(readBytesBeyondBuffer(length, fieldName), StandardCharsets.UTF_8);
+		}
+
+		if (stringCache != null) {
+			final String value = stringCache.get(buffer, position, length);
+			position += length;
+			return value;
+		}
+
+		// There is no way to decode a String straight out of a buffer without allocating a temporary
+		// CharBuffer, so the bytes are copied into a reusable array instead. Huge strings get an array
+		// of their own, so that it is not held onto after the parse.
+		final byte[] bytes;
+		if (length > MAX_SCRATCH_SIZE) {
+			bytes = new byte[length];
+		} else {
+			if (scratch == null || scratch.length < length) {
+				scratch = new byte[MAX_SCRATCH_SIZE];
+			}
+			bytes = scratch;
+		}
+		buffer.get(position, bytes, 0, length);
+		position += length;
+		return new String(bytes, 0, length, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	ByteBuffer readBytes(String fieldName) throws IOException, MalformedProtobufException {
+		final int length = readDelimitedLength(fieldName);
+		if (limit - position < length && !refill(length)) {
+			return ByteBuffer.wrap(readBytesBeyondBuffer(length, fieldName)).asReadOnlyBuffer();
+		}
+
+		final byte[] data = new byte[length];
+		buffer.get(position, data, 0, length);
+		position += length;
+		return ByteBuffer.wrap(data).asReadOnlyBuffer();
+	}
+
+	@Override
+	ByteBuffer readBytesSlice(String fieldName) throws IOException, MalformedProtobufException {
+		final int length = readDelimitedLength(fieldName);
+		if (limit - position < length && !refill(length)) {
+			return ByteBuffer.wrap(readBytesBeyondBuffer(length, fieldName)).asReadOnlyBuffer();
+		}
+
+		if (view == null) {
+			view = buffer.asReadOnlyBuffer();
+		}
+		final ByteBuffer slice = view.slice(position, length);
+		position += length;
+		return slice;
+	}
+}
@@ -0,0 +1,56 @@
+package com.hedera.hashgraph.protoparse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * An {@link OutputStream} that writes into a {@link ByteBuffer}, starting at its position and advancing the
+ * position as bytes are written. This makes it possible to write protobuf straight into an off-heap (direct)
+ * buffer using any {@link ProtoWriter}, without first collecting the bytes on the heap.
+ *
+ * <p>The buffer is never grown. If it does not have room for a write, an {@link IOException} is thrown and
+ * nothing is written.
+ */
+public final class ByteBufferOutputStream extends OutputStream {
+    private final ByteBuffer buffer;
+
+    /**
+     * Create a new stream that writes into the given buffer.
+     *
+     * @param buffer The buffer to write into. Must not be null or read-only.
+     */
+    public ByteBufferOutputStream(ByteBuffer buffer) {
+        this.buffer = Objects.requireNonNull(buffer);
+        if (buffer.isReadOnly()) {
+            throw new IllegalArgumentException("Cannot write into a read-only buffer");
+        }
+    }
+
+    /**
+     * Gets the buffer being written into.
+     *
+     * @return the buffer
+     */
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            throw new IOException("The buffer is full");
+        }
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (buffer.remaining() < len) {
+            throw new IOException("The buffer has room for " + buffer.remaining() + " more bytes, not " + len);
+        }
+        buffer.put(b, off, len);
+    }
+}
@@ -0,0 +1,413 @@
+package com.hedera.hashgraph.protoparse;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import static com.hedera.hashgraph.protoparse.ProtoConstants.*;
+
+/**
+ * The fields of a protobuf message, compiled into a table that a {@link ProtoParser} can look up a tag in with
+ * a single array load. Each entry of the table holds the {@link FieldDefinition} along with everything the
+ * parser needs to decode the field, resolved up front: the decoder for its type, and the full tag (field
+ * number and wire type) it is encoded with. A compiled schema is immutable and threadsafe, so it is normally
+ * built once, kept in a static field, and shared by every parser of the message (see
+ * {@link ProtoParser#ProtoParser(CompiledSchema)}).
+ *
+ * <p>The table is keyed by the whole tag rather than the field number, so that finding the entry of a tag
+ * also checks that the wire type is the one the field is encoded with. A repeated scalar field has two
+ * entries: one for the packed encoding, and one for the unpacked encoding, where each element has a tag of
+ * its own. Both are accepted, each with a decoder of its own.
+ *
+ * <p>The order of the fields matters too. Writers emit fields in a fixed order, so the parser predicts that
+ * each field will be followed by the next one given to the constructor, and checks the encoded tag of that
+ * field against the bytes of the input before decoding the tag at all. Listing the fields in the order they
+ * are written (normally field number order) makes the most of this.
+ *
+ * <p>When the field numbers are small, or densely packed, the table is an array indexed by tag. Otherwise, it
+ * is a perfect hash table: a table a little bigger than the number of entries, and a multiplier that sends
+ * each of the tags to a different slot. Either way, a lookup never has to probe more than one slot. In the
+ * unlikely event that no such multiplier is found, the hash table is probed linearly instead.
+ */
+public final class CompiledSchema {
+	/**
+	 * Field numbers up to this are always looked up in a dense table
+	 */
+	static final int MAX_DENSE_NUMBER = 1024;
+	/**
+	 * Above {@link #MAX_DENSE_NUMBER}, a dense table is used if it has no more than this many field numbers per field
+	 */
+	static final int MAX_DENSE_SLOTS_PER_FIELD = 8;
+	/**
+	 * The number of multipliers tried for each size of perfect hash table, before trying a bigger table
+	 */
+	private static final int MULTIPLIERS_PER_SIZE = 1 << 12;
+	/**
+	 * The most slots a perfect hash table may have, as a power of two
+	 */
+	private static final int MAX_HASH_BITS = 24;
+	private static final int GOLDEN_RATIO = 0x9E37_79B9;
+	/**
+	 * The wire types a field may be encoded with. Groups (wire types 3 and 4) are not supported.
+	 */
+	private static final int[] WIRE_TYPES = {
+			WIRE_TYPE_VARINT_OR_ZIGZAG, WIRE_TYPE_FIXED_64_BIT, WIRE_TYPE_DELIMITED, WIRE_TYPE_FIXED_32_BIT};
+
+	/**
+	 * A field of the schema, encoded with one wire type, and how to decode it. Immutable once the schema is
+	 * built.
+	 */
+	static final class Entry {
+		/**
+		 * The definition of the field
+		 */
+		final FieldDefinition definition;
+		/**
+		 * Decodes the field, and passes its value to the parser's {@link ParseListener} callback
+		 */
+		final ProtoParser.FieldDecoder decoder;
+		/**
+		 * The wire type the field is encoded with
+		 */
+		final int wireType;
+		/**
+		 * The tag, field number and wire type together, as read off the wire
+		 */
+		final int tag;
+		/**
+		 * True if this is the entry for the elements of an unpacked repeated scalar field
+		 */
+		final boolean unpacked;
+		/**
+		 * The bytes of the encoded tag, packed little-endian into a long
+		 */
+		final long tagBytes;
+		/**
+		 * The mask of the bits of {@link #tagBytes} that hold the tag
+		 */
+		final long tagMask;
+		/**
+		 * The number of bytes of the encoded tag
+		 */
+		final int tagSize;
+		/**
+		 * The field most likely to come right after this one, or null. Set once, while the schema is built.
+		 */
+		Entry expectedNext;
+
+		private Entry(FieldDefinition definition, boolean unpacked) {
+			this.definition = definition;
+			this.unpacked = unpacked;
+			if (unpacked) {
+				this.decoder = ProtoParser.unpackedDecoderFor(definition);
+				this.wireType = wireType(definition.type());
+			} else {
+				this.decoder = ProtoParser.decoderFor(definition);
+				this.wireType = wireType(definition);
+			}
+			this.tag = (definition.number() << TAG_FIELD_OFFSET) | wireType;
+
+			long remaining = tag & 0xFFFF_FFFFL;
+			long bytes = 0;
+			int size = 0;
+			while ((remaining & ~0x7FL) != 0) {
+				bytes |= ((remaining & 0x7F) | 0x80) << (8 * size++);
+				remaining >>>= 7;
+			}
+			bytes |= remaining << (8 * size++);
+			this.tagBytes = bytes;
+			this.tagSize = size;
+			this.tagMask = -1L >>> (64 - 8 * size);
+		}
+	}
+
+	private final FieldDefinition[] fields;
+	/**
+	 * The entries. In a dense table, the entry for a tag is at that index. In a hash table, it is at the
+	 * index given by {@link #slot(int)}.
+	 */
+	private final Entry[] table;
+	/**
+	 * The multiplier of the perfect hash function, or 0 for a dense table
+	 */
+	private final int multiplier;
+	/**
+	 * The number of bits to shift the hash right by to get a slot
+	 */
+	private final int shift;
+	/**
+	 * Whether the hash table is not perfect, so that an entry may be in a later slot than its hash, up to the
+	 * next empty one
+	 */
+	private final boolean probed;
+	/**
+	 * The entry of the first of {@link #fields}, or null
+	 */
+	private final Entry first;
+
+	/**
+	 * Compiles the given fields.
+	 *
+	 * @param fields The fields of the message. None may be null, and no two may have the same number.
+	 * @throws NullPointerException If the array or any of the fields is null
+	 * @throws IllegalArgumentException If two fields have the same number, or a field has number 0
+	 */
+	public CompiledSchema(FieldDefinition... fields) {
+		this(MULTIPLIERS_PER_SIZE, fields);
+	}
+
+	/**
+	 * Compiles the given fields, trying the given number of multipliers for each size of perfect hash table.
+	 * Always {@link #MULTIPLIERS_PER_SIZE}, except in tests.
+	 */
+	CompiledSchema(int multipliersPerSize, FieldDefinition... fields) {
+		this.fields = fields.clone();
+		int maxNumber = 0;
+		int numEntries = 0;
+		for (final FieldDefinition f : this.fields) {
+			Objects.requireNonNull(f, "The fields must not be null");
+			if (f.number() == 0) {
+				throw new IllegalArgumentException("Field " + f.name() + " has number 0, which is not valid");
+			}
+			maxNumber = Math.max(maxNumber, f.number());
+			numEntries += isUnpackable(f) ? 2 : 1;
+		}
+		checkNoDuplicates(this.fields);
+
+		final Entry[] entries = new Entry[numEntries];
+		int i = 0;
+		for (final FieldDefinition f : this.fields) {
+			entries[i++] = new Entry(f, false);
+			if (isUnpackable(f)) {
+				entries[i++] = new Entry(f, true);
+			}
+		}
+
+		final boolean dense = maxNumber <= MAX_DENSE_NUMBER
+				|| (long) maxNumber <= (long) MAX_DENSE_SLOTS_PER_FIELD * this.fields.length;
+		if (dense) {
+			this.table = new Entry[(maxNumber + 1) << TAG_FIELD_OFFSET];
+			this.multiplier = 0;
+			this.shift = 0;
+			this.probed = false;
+			for (final Entry e : entries) {
+				table[e.tag] = e;
+			}
+		} else {
+			// Each size is given a fair number of tries to find a multiplier without any collisions. A table
+			// twice the size has half the chance of each collision, so it is not long before one is found.
+			final int minBits = 32 - Integer.numberOfLeadingZeros(Math.max(1, entries.length * 2 - 1));
+			int bits = minBits;
+			int found = findMultiplier(entries, bits, multipliersPerSize);
+			while (found == 0 && bits < MAX_HASH_BITS) {
+				found = findMultiplier(entries, ++bits, multipliersPerSize);
+			}
+			if (found != 0) {
+				this.multiplier = found;
+				this.shift = 32 - bits;
+				this.probed = false;
+				this.table = new Entry[1 << bits];
+				for (final Entry e : entries) {
+					table[slot(e.tag)] = e;
+				}
+			} else {
+				// The smallest table is at most half full, so the runs of entries to probe stay short
+				this.multiplier = GOLDEN_RATIO | 1;
+				this.shift = 32 - minBits;
+				this.probed = true;
+				this.table = new Entry[1 << minBits];
+				final int mask = table.length - 1;
+				for (final Entry e : entries) {
+					int s = slot(e.tag);
+					while (table[s] != null) {
+						s = (s + 1) & mask;
+					}
+					table[s] = e;
+				}
+			}
+		}
+
+		linkExpectedFields();
+		this.first = this.fields.length == 0 ? null : entry(this.fields[0].number());
+	}
+
+	/**
+	 * Searches for a multiplier that hashes the tag of each entry to a different slot of a table of
+	 * 2^{@code bits} slots, trying up to {@code attempts} of them.
+	 *
+	 * @return the multiplier, or 0 if none was found
+	 */
+	private static int findMultiplier(Entry[] entries, int bits, int attempts) {
+		final boolean[] used = new boolean[1 << bits];
+		int candidate = GOLDEN_RATIO;
+		for (int attempt = 0; attempt < attempts; attempt++, candidate += 2 * GOLDEN_RATIO) {
+			// The multiplier must be odd, so that no two tags hash the same
+			final int m = candidate | 1;
+			int collision = -1;
+			for (int i = 0; i < entries.length; i++) {
+				final int s = (entries[i].tag * m) >>> (32 - bits);
+				if (used[s]) {
+					collision = i;
+					break;
+				}
+				used[s] = true;
+			}
+			if (collision < 0) {
+				return m;
+			}
+			// Only the slots of the entries before the collision were used, so only they need clearing
+			for (int i = 0; i < collision; i++) {
+				used[(entries[i].tag * m) >>> (32 - bits)] = false;
+			}
+		}
+		return 0;
+	}
+
+	private static void checkNoDuplicates(FieldDefinition[] fields) {
+		final int[] numbers = new int[fields.length];
+		for (int i = 0; i < fields.length; i++) {
+			numbers[i] = fields[i].number();
+		}
+		Arrays.sort(numbers);
+		for (int i = 1; i < numbers.length; i++) {
+			if (numbers[i] == numbers[i - 1]) {
+				throw new IllegalArgumentException("More than one field has number " + numbers[i]);
+			}
+		}
+	}
+
+	/**
+	 * Links each entry to the one expected after it. Writers emit fields in a fixed order, normally the order
+	 * of the schema, so each field is expected to be followed by the one after it in {@link #fields}. The
+	 * elements of a repeated string, bytes or message field, or of an unpacked repeated scalar field, each
+	 * have a tag of their own, so such a field is expected to be followed by itself.
+	 */
+	private void linkExpectedFields() {
+		for (int i = 0; i < fields.length; i++) {
+			final FieldDefinition f = fields[i];
+			final Entry e = entry(f.number());
+			final FieldType type = f.type();
+			final boolean repeatsItself = f.repeated()
+					&& (type == FieldType.STRING || type == FieldType.BYTES || type == FieldType.MESSAGE);
+			e.expectedNext = repeatsItself ? e : i + 1 < fields.length ? entry(fields[i + 1].number()) : null;
+			if (isUnpackable(f)) {
+				final Entry unpacked = entryForTag((f.number() << TAG_FIELD_OFFSET) | wireType(type));
+				unpacked.expectedNext = unpacked;
+			}
+		}
+	}
+
+	/**
+	 * Gets the entry of the field expected to come first in a message.
+	 *
+	 * @return the entry of the first field, or null if the schema has no fields
+	 */
+	Entry expectedFirst() {
+		return first;
+	}
+
+	/**
+	 * Gets the wire type that a field of the given definition is encoded with. Repeated scalar fields are
+	 * expected to be packed, as they are by default since proto3, but may be unpacked too (see
+	 * {@link #isUnpackable(FieldDefinition)}).
+	 */
+	static int wireType(FieldDefinition f) {
+		if (f.repeated() || f.optional()) {
+			// Packed lists, and the message that wraps an optional value
+			return WIRE_TYPE_DELIMITED;
+		}
+		return wireType(f.type());
+	}
+
+	/**
+	 * Gets the wire type that a single value of the given type is encoded with.
+	 */
+	static int wireType(FieldType type) {
+		return switch (type) {
+			case INT_32, INT_64, UINT_32, UINT_64, SINT_32, SINT_64, BOOL, ENUM -> WIRE_TYPE_VARINT_OR_ZIGZAG;
+			case FIXED_64, SFIXED_64, DOUBLE -> WIRE_TYPE_FIXED_64_BIT;
+			case FIXED_32, SFIXED_32, FLOAT -> WIRE_TYPE_FIXED_32_BIT;
+			case STRING, BYTES, MESSAGE -> WIRE_TYPE_DELIMITED;
+		};
+	}
+
+	/**
+	 * Gets whether the given field is a repeated scalar field, whose elements may also be encoded unpacked,
+	 * each with a tag of its own, with the wire type of its type.
+	 */
+	static boolean isUnpackable(FieldDefinition f) {
+		return f.repeated() && !f.optional() && wireType(f.type()) != WIRE_TYPE_DELIMITED;
+	}
+
+	private int slot(int tag) {
+		return (tag * multiplier) >>> shift;
+	}
+
+	/**
+	 * Looks up the entry of the given tag. As the tag includes the wire type, this finds the field and checks
+	 * that it is encoded the way it should be in one go.
+	 *
+	 * @param tag The tag, as read off the wire
+	 * @return the entry, or null if there is no field with that number, or if the field is not encoded with
+	 * 		   that wire type
+	 */
+	Entry entryForTag(int tag) {
+		final Entry[] t = table;
+		if (multiplier == 0) {
+			return tag >= 0 && tag < t.length ? t[tag] : null;
+		}
+		int s = slot(tag);
+		Entry e = t[s];
+		if (e == null || e.tag == tag) {
+			return e;
+		}
+		if (probed) {
+			final int mask = t.length - 1;
+			while ((e = t[s = (s + 1) & mask]) != null) {
+				if (e.tag == tag) {
+					return e;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Looks up the entry of the given field number, for the wire type the field is normally encoded with.
+	 * This is slower than {@link #entryForTag(int)}, as each wire type is tried in turn.
+	 *
+	 * @param fieldNumber The field number, which must be positive
+	 * @return the entry, or null if there is no field with that number
+	 */
+	Entry entry(int fieldNumber) {
+		for (final int wireType : WIRE_TYPES) {
+			final Entry e = entryForTag((fieldNumber << TAG_FIELD_OFFSET) | wireType);
+			if (e != null && !e.unpacked) {
+				return e;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the definition of the field with the given number.
+	 *
+	 * @param fieldNumber The field number
+	 * @return the definition, or null if there is no field with that number
+	 */
+	public FieldDefinition getField(int fieldNumber) {
+		if (fieldNumber <= 0) {
+			return null;
+		}
+		final Entry e = entry(fieldNumber);
+		return e == null ? null : e.definition;
+	}
+
+	/**
+	 * Gets the fields of the schema, in the order they were given.
+	 *
+	 * @return a copy of the fields
+	 */
+	public FieldDefinition[] fields() {
+		return fields.clone();
+	}
+}
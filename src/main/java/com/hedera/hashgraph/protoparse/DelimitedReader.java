@@ -0,0 +1,264 @@
+package com.hedera.hashgraph.protoparse;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static com.hedera.hashgraph.protoparse.ProtoConstants.*;
+
+/**
+ * Reads a stream of length delimited messages, each one a varint length followed by that many bytes of
+ * message, as written by {@link DelimitedWriter} (or {@code writeDelimitedTo} of the Google protobuf library).
+ * The messages are read one at a time with {@link #read()}, or as an {@link Iterator}, a {@link Spliterator}
+ * or a {@link Stream}.
+ *
+ * <p>All the messages are read into one buffer, and parsed by the same parser, through one reusable
+ * {@link ByteBuffer} view of the buffer. The buffer only grows when a message doesn't fit in it, so once it
+ * is as big as the biggest message, framing a message allocates nothing at all. Because of this, anything
+ * the parser hands out that refers to the bytes of a message, rather than copying them (see
+ * {@link ProtoParser#setZeroCopyBytes(boolean)}), is only valid until the next message is read.
+ *
+ * <p>For example, to process a file of {@code Omnibus} messages:
+ *
+ * <pre>
+ *     final OmnibusParser parser = new OmnibusParser();
+ *     try (DelimitedReader&lt;Omnibus&gt; reader = new DelimitedReader&lt;&gt;(in, parser::parse)) {
+ *         reader.stream().forEach(this::process);
+ *     }
+ * </pre>
+ *
+ * <p>A reader is not thread safe, and neither are the iterators and streams it hands out. They all read from
+ * where the reader is up to, so only one of them should be used at a time.
+ *
+ * @param <T> The type of the messages
+ */
+public final class DelimitedReader<T> implements Iterable<T>, Closeable {
+	/**
+	 * The most bytes a message may have, unless another limit is given
+	 */
+	public static final int DEFAULT_MAX_MESSAGE_SIZE = 64 * 1024 * 1024;
+	/**
+	 * The size the buffer starts at
+	 */
+	private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+	/**
+	 * The most bytes a length prefix may take. Five 7-bit groups hold any positive int, and a message can't
+	 * be any longer than that.
+	 */
+	private static final int MAX_LENGTH_SIZE = 5;
+
+	/**
+	 * Parses one message, such as {@code parser::parse} for a generated parser.
+	 *
+	 * @param <T> The type of the message
+	 */
+	@FunctionalInterface
+	public interface MessageParser<T> {
+		/**
+		 * Parses the bytes of one message, between the position and limit of {@code message}.
+		 *
+		 * @param message The bytes of the message. The buffer is reused for the next message.
+		 * @return the message
+		 * @throws MalformedProtobufException if the message is malformed
+		 */
+		T parse(ByteBuffer message) throws MalformedProtobufException;
+	}
+
+	private final InputStream in;
+	private final MessageParser<? extends T> parser;
+	private final int maxMessageSize;
+	/**
+	 * The bytes read from {@link #in}, of which those from {@link #position} to {@link #limit} have not been
+	 * consumed yet
+	 */
+	private byte[] buffer;
+	/**
+	 * A view of the whole of {@link #buffer}, whose position and limit are set to each message in turn
+	 */
+	private ByteBuffer view;
+	private int position;
+	private int limit;
+	/**
+	 * The number of messages read so far, used in error messages
+	 */
+	private long messagesRead;
+
+	/**
+	 * Creates a reader of messages of up to {@link #DEFAULT_MAX_MESSAGE_SIZE} bytes.
+	 *
+	 * @param in The stream to read from. Must not be null.
+	 * @param parser The parser of each message. Must not be null.
+	 */
+	public DelimitedReader(InputStream in, MessageParser<? extends T> parser) {
+		this(in, parser, DEFAULT_MAX_MESSAGE_SIZE);
+	}
+
+	/**
+	 * Creates a reader.
+	 *
+	 * @param in The stream to read from. Must not be null.
+	 * @param parser The parser of each message. Must not be null.
+	 * @param maxMessageSize The most bytes a message may have. A message claiming to be longer is rejected
+	 *                       before anything is allocated for it. Must be &gt;= 0.
+	 */
+	public DelimitedReader(InputStream in, MessageParser<? extends T> parser, int maxMessageSize) {
+		this.in = Objects.requireNonNull(in);
+		this.parser = Objects.requireNonNull(parser);
+		if (maxMessageSize < 0) {
+			throw new IllegalArgumentException("The max message size must be >= 0");
+		}
+		this.maxMessageSize = maxMessageSize;
+		this.buffer = new byte[Math.min(INITIAL_BUFFER_SIZE, Math.max(maxMessageSize, MAX_VARINT_SIZE))];
+		this.view = ByteBuffer.wrap(buffer);
+	}
+
+	/**
+	 * Reads the next message.
+	 *
+	 * @return the message, or null if the stream ended cleanly, after the last message
+	 * @throws IOException if the stream could not be read
+	 * @throws MalformedProtobufException if the message is malformed, too big, or the stream ended part way
+	 *                                    through it
+	 */
+	public T read() throws IOException, MalformedProtobufException {
+		if (!fill(1)) {
+			return null;
+		}
+
+		// The length is read a byte at a time, since it may not all have arrived yet
+		long length = 0;
+		for (int i = 0; ; i++) {
+			if (i == MAX_LENGTH_SIZE) {
+				throw new MalformedProtobufException("Bad protobuf encoding, varint is too long in the length of " +
+						"message " + messagesRead);
+			}
+			if (!fill(i + 1)) {
+				throw new MalformedProtobufException("Truncated protobuf, the stream ended in the length of " +
+						"message " + messagesRead);
+			}
+			final byte b = buffer[position + i];
+			length |= (long) (b & VARINT_DATA_MASK) << (i * NUM_BITS_PER_VARINT_BYTE);
+			if (b >= 0) {
+				position += i + 1;
+				break;
+			}
+		}
+
+		if (length > Integer.MAX_VALUE || length > maxMessageSize) {
+			throw new MalformedProtobufException("Bad protobuf encoding, length of " + length + " of message " +
+					messagesRead + " is not valid, or exceeds the maximum message size of " + maxMessageSize);
+		}
+		final int size = (int) length;
+		if (!fill(size)) {
+			throw new MalformedProtobufException("Truncated protobuf, the stream ended part way through message " +
+					messagesRead + " of " + size + " bytes");
+		}
+
+		view.clear().position(position).limit(position + size);
+		position += size;
+		messagesRead++;
+		return parser.parse(view);
+	}
+
+	/**
+	 * Makes sure at least {@code needed} bytes have been read in, from {@link #position} on. The bytes not
+	 * consumed yet are moved to the front of the buffer first, and the buffer grows if they still won't fit,
+	 * doubling each time it fills up, so that a message claiming to be huge only gets as big a buffer as
+	 * the bytes that actually arrive.
+	 *
+	 * @return true if the bytes have been read in, false if the stream ended first
+	 */
+	private boolean fill(int needed) throws IOException {
+		if (limit - position >= needed) {
+			return true;
+		}
+
+		if (position > 0) {
+			System.arraycopy(buffer, position, buffer, 0, limit - position);
+			limit -= position;
+			position = 0;
+		}
+
+		while (limit < needed) {
+			if (limit == buffer.length) {
+				buffer = Arrays.copyOf(buffer, (int) Math.min(needed, 2L * buffer.length));
+				view = ByteBuffer.wrap(buffer);
+			}
+			final int n = in.read(buffer, limit, buffer.length - limit);
+			if (n < 0) {
+				return false;
+			}
+			limit += n;
+		}
+		return true;
+	}
+
+	/**
+	 * Gets an iterator over the rest of the messages. Failures to read or parse a message are thrown as
+	 * {@link UncheckedIOException}, with a {@link MalformedProtobufException} wrapped in an {@link IOException}.
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		return Spliterators.iterator(spliterator());
+	}
+
+	/**
+	 * Gets a spliterator over the rest of the messages. Failures are thrown as by {@link #iterator()}.
+	 */
+	@Override
+	public Spliterator<T> spliterator() {
+		return new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+			@Override
+			public boolean tryAdvance(Consumer<? super T> action) {
+				final T message = readUnchecked();
+				if (message == null) {
+					return false;
+				}
+				action.accept(message);
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Gets a sequential stream of the rest of the messages, that closes this reader when it is closed.
+	 * Failures are thrown as by {@link #iterator()}.
+	 */
+	public Stream<T> stream() {
+		return StreamSupport.stream(spliterator(), false).onClose(() -> {
+			try {
+				close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	private T readUnchecked() {
+		try {
+			return read();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (MalformedProtobufException e) {
+			throw new UncheckedIOException(new IOException(e.getMessage(), e));
+		}
+	}
+
+	/**
+	 * Closes the stream being read from.
+	 */
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
@@ -0,0 +1,87 @@
+package com.hedera.hashgraph.protoparse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Objects;
+
+import static com.hedera.hashgraph.protoparse.ProtoConstants.*;
+
+/**
+ * Writes a stream of length delimited messages, each one a varint length followed by that many bytes of
+ * message, for {@link DelimitedReader} (or {@code parseDelimitedFrom} of the Google protobuf library) to read.
+ *
+ * <p>Each message is written by the {@link ProtoWriter} into one reusable buffer, so that its length is
+ * known before any of it is written out. The buffer only grows when a message doesn't fit in it.
+ *
+ * <p>A writer is not thread safe.
+ *
+ * @param <T> The type of the messages
+ */
+public final class DelimitedWriter<T> implements Closeable, Flushable {
+    private final OutputStream out;
+    private final ProtoWriter<? super T> writer;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private final byte[] lengthBytes = new byte[MAX_VARINT_SIZE];
+
+    /**
+     * Creates a writer.
+     *
+     * @param out The stream to write to. Must not be null.
+     * @param writer The writer of each message. Must not be null.
+     */
+    public DelimitedWriter(OutputStream out, ProtoWriter<? super T> writer) {
+        this.out = Objects.requireNonNull(out);
+        this.writer = Objects.requireNonNull(writer);
+    }
+
+    /**
+     * Writes a message, preceded by its length.
+     *
+     * @param message The message. Must not be null.
+     * @throws IOException if the message could not be written
+     */
+    public void write(T message) throws IOException {
+        Objects.requireNonNull(message);
+        buffer.reset();
+        writer.write(message, buffer);
+
+        // The length is always positive, so it is written as a plain varint
+        int length = buffer.size();
+        int numBytes = 0;
+        while ((length & ~VARINT_DATA_MASK) != 0) {
+            lengthBytes[numBytes++] = (byte) (VARINT_CONTINUATION_MASK | (length & VARINT_DATA_MASK));
+            length >>>= NUM_BITS_PER_VARINT_BYTE;
+        }
+        lengthBytes[numBytes++] = (byte) length;
+        out.write(lengthBytes, 0, numBytes);
+        buffer.writeTo(out);
+    }
+
+    /**
+     * Writes each of the messages, preceded by its length.
+     *
+     * @param messages The messages. Must not be null, nor contain null.
+     * @throws IOException if a message could not be written
+     */
+    public void writeAll(Iterable<? extends T> messages) throws IOException {
+        for (final T message : messages) {
+            write(message);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Closes the stream being written to.
+     */
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,17 @@
+package com.hedera.hashgraph.protoparse;
+
+/**
+ * The result of feeding a chunk of a message to a parser that is parsing it incrementally (see
+ * {@link ProtoParser#feed(java.nio.ByteBuffer)}).
+ */
+public enum FeedResult {
+	/**
+	 * The chunk was consumed, and the parser needs more bytes to finish the message
+	 */
+	NEED_MORE,
+	/**
+	 * The last byte of the message was consumed, and all of its fields were passed to the listener. Any bytes
+	 * of the chunk after the end of the message were left unread.
+	 */
+	DONE
+}
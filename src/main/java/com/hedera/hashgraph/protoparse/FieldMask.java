@@ -0,0 +1,162 @@
+package com.hedera.hashgraph.protoparse;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * The fields of a message that a {@link ProtoParser} should parse (see
+ * {@link ProtoParser#setFieldMask(FieldMask)}). Every other field is skipped on the wire, without being decoded,
+ * and without its callback being called. A length delimited field is skipped by moving past it.
+ *
+ * <p>A field is selected by its path from the outermost message: the field itself, preceded by the nested
+ * message fields it is in. Selecting a nested message field on its own selects all of its fields, and
+ * selecting a field in it selects the nested message too, but only that field of it. For example, for the
+ * paths {@code memo}, {@code nested.nestedMemo} and {@code fruit.apple.variety}:
+ *
+ * <pre>
+ *     FieldMask.builder()
+ *             .include(OmnibusSchema.MEMO)
+ *             .include(OmnibusSchema.NESTED, NestedSchema.NESTED_MEMO)
+ *             .include(OmnibusSchema.FRUIT_APPLE, AppleSchema.VARIETY)
+ *             .build()
+ * </pre>
+ *
+ * <p>A nested message that is parsed in place, by passing its stream to another parser, is parsed with the
+ * part of the mask for it, whatever the mask of that parser. A nested message handed out as a slice (see
+ * {@link ProtoParser#setMessageSlices(boolean)}) is parsed as a message of its own, so the mask of the
+ * parser that parses it applies.
+ *
+ * <p>A mask is immutable, and can be shared by any number of parsers.
+ */
+public final class FieldMask {
+	/**
+	 * The numbers of the selected fields, in order
+	 */
+	private final int[] numbers;
+	/**
+	 * The mask of the fields of each selected field that is a nested message, in the same order as
+	 * {@link #numbers}, or null where all of its fields are selected
+	 */
+	private final FieldMask[] children;
+
+	private FieldMask(int[] numbers, FieldMask[] children) {
+		this.numbers = numbers;
+		this.children = children;
+	}
+
+	/**
+	 * Creates a builder of a mask, which selects no fields until some are included.
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Gets whether the field with the given number is selected.
+	 */
+	boolean includes(int fieldNum) {
+		return Arrays.binarySearch(numbers, fieldNum) >= 0;
+	}
+
+	/**
+	 * Gets the mask of the fields of the selected nested message field with the given number.
+	 *
+	 * @return the mask, or null if all of the fields of the nested message are selected
+	 */
+	FieldMask child(int fieldNum) {
+		final int i = Arrays.binarySearch(numbers, fieldNum);
+		return i >= 0 ? children[i] : null;
+	}
+
+	/**
+	 * Gets the selected field numbers, each followed by the numbers of its fields in brackets if only some
+	 * of them are selected, such as {@code FieldMask[1, 3[100]]}.
+	 */
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder("FieldMask");
+		appendTo(sb);
+		return sb.toString();
+	}
+
+	private void appendTo(StringBuilder sb) {
+		sb.append('[');
+		for (int i = 0; i < numbers.length; i++) {
+			sb.append(i == 0 ? "" : ", ").append(numbers[i]);
+			if (children[i] != null) {
+				children[i].appendTo(sb);
+			}
+		}
+		sb.append(']');
+	}
+
+	/**
+	 * Builds a {@link FieldMask}, one path at a time.
+	 */
+	public static final class Builder {
+		private final Node root = new Node();
+
+		private Builder() {
+		}
+
+		/**
+		 * Selects a field by its path.
+		 *
+		 * @param path The field, preceded by the nested message fields it is in, outermost first. Must not be
+		 *             empty, and all but the last field must be message fields.
+		 * @return this builder
+		 * @throws IllegalArgumentException If the path is empty, or goes through a field that is not a message
+		 */
+		public Builder include(FieldDefinition... path) {
+			if (path.length == 0) {
+				throw new IllegalArgumentException("The path must have at least one field");
+			}
+			for (int i = 0; i < path.length - 1; i++) {
+				if (Objects.requireNonNull(path[i]).type() != FieldType.MESSAGE) {
+					throw new IllegalArgumentException("Field " + path[i].name() + " is not a message field, " +
+							"so it has no fields of its own");
+				}
+			}
+
+			Node node = root;
+			for (final FieldDefinition f : path) {
+				node = node.children.computeIfAbsent(Objects.requireNonNull(f).number(), n -> new Node());
+			}
+			node.whole = true;
+			return this;
+		}
+
+		/**
+		 * Builds the mask of the paths included so far.
+		 */
+		public FieldMask build() {
+			return root.compile();
+		}
+
+		/**
+		 * A field in the tree of paths being built
+		 */
+		private static final class Node {
+			/**
+			 * Whether all of the fields of this field are selected, because it is the end of a path
+			 */
+			boolean whole;
+			final Map<Integer, Node> children = new TreeMap<>();
+
+			FieldMask compile() {
+				final int[] numbers = new int[children.size()];
+				final FieldMask[] masks = new FieldMask[children.size()];
+				int i = 0;
+				for (final Map.Entry<Integer, Node> entry : children.entrySet()) {
+					final Node child = entry.getValue();
+					numbers[i] = entry.getKey();
+					masks[i] = child.whole ? null : child.compile();
+					i++;
+				}
+				return new FieldMask(numbers, masks);
+			}
+		}
+	}
+}
@@ -0,0 +1,228 @@
+package com.hedera.hashgraph.protoparse;
+
+import java.nio.ByteBuffer;
+
+import static com.hedera.hashgraph.protoparse.ProtoConstants.*;
+
+/**
+ * Where a {@link ProtoParser} is up to in a message that is fed to it a chunk at a time (see
+ * {@link ProtoParser#feed(ByteBuffer)}). The fields that are wholly within a chunk are parsed straight from
+ * the chunk, so all this has to keep between chunks is the field that runs off the end of one chunk into the
+ * next. Until its size is known, that is just the few bytes of its tag, and of its length or its varint
+ * value, which are kept in {@link #head}. Once the size is known, the field is gathered into an array of
+ * exactly that size, which is parsed once it is full. A nested message is a length delimited field like any
+ * other, so it too is parsed once all of it has arrived.
+ */
+final class IncrementalState {
+	/**
+	 * Whether a message is being parsed
+	 */
+	boolean active;
+	/**
+	 * Whether the length of the message is known up front. If not, it ends when the parser is told so.
+	 */
+	private boolean lengthKnown;
+	/**
+	 * The number of bytes of the message after which no more may be fed: its length if known, otherwise the
+	 * maximum message size
+	 */
+	private long end;
+	/**
+	 * The number of bytes of the message consumed so far
+	 */
+	long consumed;
+	/**
+	 * The number of unknown fields skipped so far, carried from one chunk to the next
+	 */
+	int unknownFields;
+
+	/**
+	 * The bytes of the field being gathered, read so far, while its size is not yet known. The longest a
+	 * field can be without its size being known is a tag followed by a varint.
+	 */
+	private final byte[] head = new byte[2 * MAX_VARINT_SIZE];
+	private final ByteBuffer headBuffer = ByteBuffer.wrap(head);
+	private int headSize;
+	/**
+	 * The field being gathered, once its size is known, or null
+	 */
+	private byte[] field;
+	private int fieldFill;
+
+	/**
+	 * Starts a new message.
+	 *
+	 * @param length The length of the message, or -1 if it is not known
+	 * @param maxMessageSize The most bytes the message may have
+	 */
+	void reset(long length, long maxMessageSize) {
+		this.active = true;
+		this.lengthKnown = length >= 0;
+		this.end = lengthKnown ? length : maxMessageSize;
+		this.consumed = 0;
+		this.unknownFields = 0;
+		this.headSize = 0;
+		this.field = null;
+		this.fieldFill = 0;
+	}
+
+	boolean lengthKnown() {
+		return lengthKnown;
+	}
+
+	/**
+	 * Gets the number of bytes that may still be fed.
+	 */
+	long remaining() {
+		return end - consumed;
+	}
+
+	/**
+	 * Gets whether part of a field has been gathered, so that the message can't end yet.
+	 */
+	boolean gathering() {
+		return headSize > 0 || field != null;
+	}
+
+	/**
+	 * Gets whether the field being gathered has all arrived, and can be taken with {@link #takeField()}.
+	 */
+	boolean fieldComplete() {
+		return field != null && fieldFill == field.length;
+	}
+
+	/**
+	 * Takes the field that has been gathered, leaving nothing gathered.
+	 *
+	 * @return the bytes of the field, tag and all
+	 */
+	byte[] takeField() {
+		final byte[] complete = field;
+		field = null;
+		fieldFill = 0;
+		return complete;
+	}
+
+	/**
+	 * Gathers the bytes of the field that runs past the end of the chunk. The bytes up to the end of the
+	 * header are taken one at a time, until the size of the field is known. After that, the rest of the
+	 * field, or as much of it as there is, is copied in one go.
+	 *
+	 * @param chunk The chunk
+	 * @param pos The index of the first byte of the chunk not consumed yet
+	 * @param limit The index of the last byte of the chunk that may be consumed, plus one
+	 * @param maxFieldLength The most bytes a length delimited field may have
+	 * @return the index of the first byte of the chunk not consumed
+	 * @throws MalformedProtobufException if the field is malformed, or runs past the end of the message
+	 */
+	int gather(ByteBuffer chunk, int pos, int limit, int maxFieldLength) throws MalformedProtobufException {
+		while (field == null && pos < limit) {
+			if (headSize == head.length) {
+				throw new MalformedProtobufException("Bad protobuf encoding, the header of a field is too long");
+			}
+			head[headSize++] = chunk.get(pos++);
+			consumed++;
+			final long size = fieldSize(headBuffer, 0, headSize, maxFieldLength);
+			if (size >= 0) {
+				if (size > Integer.MAX_VALUE || size - headSize > remaining()) {
+					throw new MalformedProtobufException("Bad protobuf encoding, a field of " + size +
+							" bytes runs past the end of the message");
+				}
+				field = new byte[(int) size];
+				System.arraycopy(head, 0, field, 0, headSize);
+				fieldFill = headSize;
+				headSize = 0;
+			}
+		}
+
+		if (field != null) {
+			final int n = Math.min(field.length - fieldFill, limit - pos);
+			chunk.get(pos, field, fieldFill, n);
+			fieldFill += n;
+			consumed += n;
+			pos += n;
+		}
+		return pos;
+	}
+
+	/**
+	 * Finds the end of the run of whole fields starting at {@code pos}.
+	 *
+	 * @return the index of the first byte after the last field that ends by {@code limit}
+	 * @throws MalformedProtobufException if one of the fields is malformed
+	 */
+	static int wholeFieldsEnd(ByteBuffer buf, int pos, int limit, int maxFieldLength)
+			throws MalformedProtobufException {
+		int end = pos;
+		while (end < limit) {
+			final long size = fieldSize(buf, end, limit, maxFieldLength);
+			if (size < 0 || size > limit - end) {
+				break;
+			}
+			end += (int) size;
+		}
+		return end;
+	}
+
+	/**
+	 * Works out the size of the field starting at {@code pos}, from its tag, and its length or varint value.
+	 *
+	 * @return the size of the field in bytes, including the tag, or -1 if not enough of it is there to tell
+	 * @throws MalformedProtobufException if the field is malformed
+	 */
+	static long fieldSize(ByteBuffer buf, int pos, int limit, int maxFieldLength) throws MalformedProtobufException {
+		final int tagEnd = varintEnd(buf, pos, limit);
+		if (tagEnd < 0) {
+			return -1;
+		}
+		// The wire type is the bottom 3 bits of the first byte of the tag
+		final int wireType = buf.get(pos) & TAG_WRITE_TYPE_MASK;
+		switch (wireType) {
+			case WIRE_TYPE_VARINT_OR_ZIGZAG -> {
+				final int valueEnd = varintEnd(buf, tagEnd, limit);
+				return valueEnd < 0 ? -1 : valueEnd - pos;
+			}
+			case WIRE_TYPE_FIXED_64_BIT -> {
+				return tagEnd - pos + 8L;
+			}
+			case WIRE_TYPE_FIXED_32_BIT -> {
+				return tagEnd - pos + 4L;
+			}
+			case WIRE_TYPE_DELIMITED -> {
+				final int lengthEnd = varintEnd(buf, tagEnd, limit);
+				if (lengthEnd < 0) {
+					return -1;
+				}
+				long length = 0;
+				for (int i = tagEnd, shift = 0; i < lengthEnd; i++, shift += 7) {
+					length |= (long) (buf.get(i) & 0x7F) << shift;
+				}
+				if (length < 0 || length > maxFieldLength) {
+					throw new MalformedProtobufException("Bad protobuf encoding, length of " + length +
+							" is not valid, or exceeds the maximum field length of " + maxFieldLength);
+				}
+				return lengthEnd - pos + length;
+			}
+			default -> throw new MalformedProtobufException("Cannot understand wire_type of " + wireType);
+		}
+	}
+
+	/**
+	 * Finds the end of the varint starting at {@code pos}.
+	 *
+	 * @return the index of the first byte after the varint, or -1 if it doesn't end by {@code limit}
+	 * @throws MalformedProtobufException if the varint is too long
+	 */
+	private static int varintEnd(ByteBuffer buf, int pos, int limit) throws MalformedProtobufException {
+		for (int i = pos; i < limit; i++) {
+			if (i - pos == MAX_VARINT_SIZE) {
+				throw new MalformedProtobufException("Bad protobuf encoding, varint is too long");
+			}
+			// The last byte of a varint is the only one without the continuation bit
+			if (buf.get(i) >= 0) {
+				return i + 1;
+			}
+		}
+		return -1;
+	}
+}
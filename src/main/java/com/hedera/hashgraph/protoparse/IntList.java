@@ -0,0 +1,131 @@
+package com.hedera.hashgraph.protoparse;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * An immutable list of int values, backed by an int[], used for repeated int32, uint32, sint32, fixed32,
+ * sfixed32 and enum fields. The values can be read with {@link #getInt(int)} without boxing them. It is also a
+ * {@code List<Integer>}, so it can be used anywhere a list of boxed values is expected, in which case each
+ * value is boxed as it is read.
+ */
+public final class IntList extends AbstractList<Integer> implements RandomAccess {
+	private static final int[] EMPTY = new int[0];
+
+	private int[] values;
+	private int size;
+
+	/**
+	 * Create a new, empty list, with room for the given number of values before it has to grow. Only the
+	 * parser adds values to a list.
+	 */
+	IntList(int initialCapacity) {
+		this.values = initialCapacity == 0 ? EMPTY : new int[initialCapacity];
+	}
+
+	/**
+	 * Create a list holding the given values.
+	 *
+	 * @param values The values. The array is copied.
+	 * @return a new list
+	 */
+	public static IntList of(int... values) {
+		final IntList list = new IntList(0);
+		list.values = values.clone();
+		list.size = values.length;
+		return list;
+	}
+
+	/**
+	 * Adds a value to the end of the list, growing it if needed.
+	 */
+	void append(int value) {
+		if (size == values.length) {
+			values = Arrays.copyOf(values, Math.max(8, size * 2));
+		}
+		values[size++] = value;
+	}
+
+	/**
+	 * Makes room for the given number of values on top of those already in the list, so that appending them
+	 * does not have to grow it.
+	 */
+	void reserve(int count) {
+		if (size + count > values.length) {
+			// Grow geometrically, like append, so that many small packed runs of one field don't copy the
+			// whole list each time
+			values = Arrays.copyOf(values, Math.max(size + count, values.length * 2));
+		}
+	}
+
+	/**
+	 * Copies the values to a new list of exactly the right size, and empties this one, so that it can be reused.
+	 * This list keeps its capacity, unless it is more than the given maximum.
+	 *
+	 * @param maxRetainedCapacity The most values this list may keep room for once it is empty
+	 * @return a new list holding the values
+	 */
+	IntList copyAndClear(int maxRetainedCapacity) {
+		final IntList copy = new IntList(0);
+		copy.values = size == 0 ? EMPTY : Arrays.copyOf(values, size);
+		copy.size = size;
+		size = 0;
+		if (values.length > maxRetainedCapacity) {
+			values = EMPTY;
+		}
+		return copy;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the value at the given index, without boxing it.
+	 *
+	 * @param index The index of the value
+	 * @return the value
+	 * @throws IndexOutOfBoundsException If the index is negative or not less than the size
+	 */
+	public int getInt(int index) {
+		Objects.checkIndex(index, size);
+		return values[index];
+	}
+
+	@Override
+	public Integer get(int index) {
+		return getInt(index);
+	}
+
+	/**
+	 * Gets a copy of the values.
+	 *
+	 * @return a new array holding the values
+	 */
+	public int[] toIntArray() {
+		return Arrays.copyOf(values, size);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o instanceof IntList other) {
+			return Arrays.equals(values, 0, size, other.values, 0, other.size);
+		}
+		return super.equals(o);
+	}
+
+	/**
+	 * Gets the hash code, exactly as defined by {@link java.util.List#hashCode()}, but without boxing.
+	 */
+	@Override
+	public int hashCode() {
+		int hash = 1;
+		for (int i = 0; i < size; i++) {
+			hash = 31 * hash + Integer.hashCode(values[i]);
+		}
+		return hash;
+	}
+}
@@ -0,0 +1,624 @@
+package com.hedera.hashgraph.protoparse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.LongConsumer;
+
+import static com.hedera.hashgraph.protoparse.ProtoConstants.*;
+
+/**
+ * A view of an encoded message that only decodes the fields that are asked for. Where a {@link ProtoParser}
+ * decodes every field of a message, and passes each to a callback, a lazy message is read with getters,
+ * such as {@link #getString(FieldDefinition)}, and pays only for the fields that are read. This suits code
+ * that reads a few fields out of a message with many.
+ *
+ * <p>The first time a field is asked for, the view walks the message once, without decoding anything but
+ * the tags and lengths, to build an index of where each field is. The index is a single int[] holding the
+ * tag, offset and length of each field, sorted by field number, so finding a field is a binary search.
+ * After that, each getter decodes just the field it is asked for, with the same decode engines as the
+ * parsers. A nested message is returned as a lazy message of its own, over the same bytes.
+ *
+ * <p>The getters follow protobuf: a field that is not there has its default value, and if a singular field
+ * is there more than once, the last one wins. A getter throws an {@link IllegalArgumentException} if the
+ * field is not of its type, and a {@link MalformedProtobufException} if the message is malformed. The
+ * message is only checked as far as the getters read it, so a malformed field that is never read goes
+ * unnoticed.
+ *
+ * <p>The bytes of the message are not copied, so the view, and any bytes or nested messages it hands out,
+ * are <b>only valid for as long as the buffer is</b>. A lazy message is not thread safe.
+ */
+public final class LazyMessage {
+	/**
+	 * The number of ints in {@link #index} for each field: its tag, offset and length
+	 */
+	private static final int ENTRY_SIZE = 3;
+
+	private final ByteBuffer buffer;
+	/**
+	 * The index in {@link #buffer} of the first byte of the message
+	 */
+	private final int start;
+	private final int length;
+	private final ParserLimits limits;
+	/**
+	 * How deeply this message is nested in the outermost one
+	 */
+	private final int depth;
+	/**
+	 * The decode engine the fields are read with, positioned at each field in turn
+	 */
+	private final ProtoInput input;
+	private final ArrayProtoInput arrayInput;
+	private final BufferProtoInput bufferInput;
+
+	/**
+	 * For each field, in order of field number, and in the order they appear for fields that appear more
+	 * than once: its tag, the offset of its value from the start of the message, and the length of its value
+	 * (including the length, for a length delimited field). Null until it is first needed.
+	 */
+	private int[] index;
+	private int numEntries;
+
+	/**
+	 * Creates a view of the message between the position and limit of the buffer, without limits on it.
+	 *
+	 * @param message The encoded message. Must not be null. Its position and limit are not changed.
+	 */
+	public LazyMessage(ByteBuffer message) {
+		this(message, ParserLimits.UNLIMITED);
+	}
+
+	/**
+	 * Creates a view of the message between the position and limit of the buffer.
+	 *
+	 * @param message The encoded message. Must not be null. Its position and limit are not changed.
+	 * @param limits The limits on the message, and the messages nested in it. Must not be null.
+	 */
+	public LazyMessage(ByteBuffer message, ParserLimits limits) {
+		this(message, Objects.requireNonNull(limits), 0);
+	}
+
+	private LazyMessage(ByteBuffer message, ParserLimits limits, int depth) {
+		this.buffer = message;
+		this.start = message.position();
+		this.length = message.remaining();
+		this.limits = limits;
+		this.depth = depth;
+		if (message.hasArray()) {
+			this.arrayInput = new ArrayProtoInput();
+			this.bufferInput = null;
+			this.input = arrayInput;
+		} else {
+			this.arrayInput = null;
+			this.bufferInput = new BufferProtoInput();
+			this.input = bufferInput;
+		}
+	}
+
+	/**
+	 * Gets the length of the message in bytes.
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * Gets whether the field is in the message.
+	 *
+	 * @param f The field. Must not be null.
+	 * @return true if the field appears at least once
+	 * @throws MalformedProtobufException if the message is malformed
+	 */
+	public boolean has(FieldDefinition f) throws MalformedProtobufException {
+		return first(f.number()) >= 0;
+	}
+
+	/**
+	 * Gets an int32, uint32, sint32, fixed32, sfixed32 or enum (as its ordinal) field.
+	 *
+	 * @param f The field. Must be singular.
+	 * @return the value, or 0 if the field is not there
+	 * @throws MalformedProtobufException if the field is malformed
+	 */
+	public int getInt(FieldDefinition f) throws MalformedProtobufException {
+		checkType(f, false, FieldType.INT_32, FieldType.UINT_32, FieldType.SINT_32, FieldType.FIXED_32,
+				FieldType.SFIXED_32, FieldType.ENUM);
+		return (int) getScalar(f);
+	}
+
+	/**
+	 * Gets an int64, uint64, sint64, fixed64 or sfixed64 field.
+	 *
+	 * @param f The field. Must be singular.
+	 * @return the value, or 0 if the field is not there
+	 * @throws MalformedProtobufException if the field is malformed
+	 */
+	public long getLong(FieldDefinition f) throws MalformedProtobufException {
+		checkType(f, false, FieldType.INT_64, FieldType.UINT_64, FieldType.SINT_64, FieldType.FIXED_64,
+				FieldType.SFIXED_64);
+		return getScalar(f);
+	}
+
+	/**
+	 * Gets a float field.
+	 *
+	 * @param f The field. Must be singular.
+	 * @return the value, or 0 if the field is not there
+	 * @throws MalformedProtobufException if the field is malformed
+	 */
+	public float getFloat(FieldDefinition f) throws MalformedProtobufException {
+		checkType(f, false, FieldType.FLOAT);
+		return Float.intBitsToFloat((int) getScalar(f));
+	}
+
+	/**
+	 * Gets a double field.
+	 *
+	 * @param f The field. Must be singular.
+	 * @return the value, or 0 if the field is not there
+	 * @throws MalformedProtobufException if the field is malformed
+	 */
+	public double getDouble(FieldDefinition f) throws MalformedProtobufException {
+		checkType(f, false, FieldType.DOUBLE);
+		return Double.longBitsToDouble(getScalar(f));
+	}
+
+	/**
+	 * Gets a bool field.
+	 *
+	 * @param f The field. Must be singular.
+	 * @return the value, or false if the field is not there
+	 * @throws MalformedProtobufException if the field is malformed
+	 */
+	public boolean getBoolean(FieldDefinition f) throws MalformedProtobufException {
+		checkType(f, false, FieldType.BOOL);
+		return getScalar(f) != 0;
+	}
+
+	/**
+	 * Gets a string field.
+	 *
+	 * @param f The field. Must be singular.
+	 * @return the value, or "" if the field is not there
+	 * @throws MalformedProtobufException if the field is malformed
+	 */
+	public String getString(FieldDefinition f) throws MalformedProtobufException {
+		checkType(f, false, FieldType.STRING);
+		final int entry = last(f);
+		if (entry < 0 || !seekValue(entry, f)) {
+			return "";
+		}
+		try {
+			return input.readString(f.name());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Gets a bytes field, as a read-only slice of the message.
+	 *
+	 * @param f The field. Must be singular.
+	 * @return the value, or an empty buffer if the field is not there
+	 * @throws MalformedProtobufException if the field is malformed
+	 */
+	public ByteBuffer getBytes(FieldDefinition f) throws MalformedProtobufException {
+		checkType(f, false, FieldType.BYTES);
+		final int entry = last(f);
+		if (entry < 0 || !seekValue(entry, f)) {
+			return ByteBuffer.allocate(0).asReadOnlyBuffer();
+		}
+		return readSlice(f);
+	}
+
+	/**
+	 * Gets a nested message field, as a lazy message of its own.
+	 *
+	 * @param f The field. Must be singular.
+	 * @return the message, or null if the field is not there
+	 * @throws MalformedProtobufException if the field is malformed, or nested too deeply
+	 */
+	public LazyMessage getMessage(FieldDefinition f) throws MalformedProtobufException {
+		checkType(f, false, FieldType.MESSAGE);
+		final int entry = last(f);
+		if (entry < 0) {
+			return null;
+		}
+		seek(entry, f);
+		return nested(readSlice(f));
+	}
+
+	/**
+	 * Gets the elements of a repeated int32, uint32, sint32, fixed32, sfixed32 or enum field, whether they are
+	 * packed, unpacked, or a mix of both.
+	 *
+	 * @param f The field. Must be repeated.
+	 * @return the elements, which is empty if the field is not there
+	 * @throws MalformedProtobufException if the field is malformed
+	 */
+	public IntList getIntList(FieldDefinition f) throws MalformedProtobufException {
+		checkType(f, true, FieldType.INT_32, FieldType.UINT_32, FieldType.SINT_32, FieldType.FIXED_32,
+				FieldType.SFIXED_32, FieldType.ENUM);
+		final IntList list = new IntList(0);
+		forEachElement(f, value -> list.append((int) value));
+		return list;
+	}
+
+	/**
+	 * Gets the elements of a repeated int64, uint64, sint64, fixed64 or sfixed64 field.
+	 *
+	 * @param f The field. Must be repeated.
+	 * @return the elements, which is empty if the field is not there
+	 * @throws MalformedProtobufException if the field is malformed
+	 */
+	public LongList getLongList(FieldDefinition f) throws MalformedProtobufException {
+		checkType(f, true, FieldType.INT_64, FieldType.UINT_64, FieldType.SINT_64, FieldType.FIXED_64,
+				FieldType.SFIXED_64);
+		final LongList list = new LongList(0);
+		forEachElement(f, list::append);
+		return list;
+	}
+
+	/**
+	 * Gets the elements of a repeated float field.
+	 *
+	 * @param f The field. Must be repeated.
+	 * @return the elements, which is empty if the field is not there
+	 * @throws MalformedProtobufException if the field is malformed
+	 */
+	public FloatList getFloatList(FieldDefinition f) throws MalformedProtobufException {
+		checkType(f, true, FieldType.FLOAT);
+		final FloatList list = new FloatList(0);
+		forEachElement(f, value -> list.append(Float.intBitsToFloat((int) value)));
+		return list;
+	}
+
+	/**
+	 * Gets the elements of a repeated double field.
+	 *
+	 * @param f The field. Must be repeated.
+	 * @return the elements, which is empty if the field is not there
+	 * @throws MalformedProtobufException if the field is malformed
+	 */
+	public DoubleList getDoubleList(FieldDefinition f) throws MalformedProtobufException {
+		checkType(f, true, FieldType.DOUBLE);
+		final DoubleList list = new DoubleList(0);
+		forEachElement(f, value -> list.append(Double.longBitsToDouble(value)));
+		return list;
+	}
+
+	/**
+	 * Gets the elements of a repeated bool field.
+	 *
+	 * @param f The field. Must be repeated.
+	 * @return the elements, which is empty if the field is not there
+	 * @throws MalformedProtobufException if the field is malformed
+	 */
+	public BooleanList getBooleanList(FieldDefinition f) throws MalformedProtobufException {
+		checkType(f, true, FieldType.BOOL);
+		final BooleanList list = new BooleanList(0);
+		forEachElement(f, value -> list.append(value != 0));
+		return list;
+	}
+
+	/**
+	 * Gets the elements of a repeated string field.
+	 *
+	 * @param f The field. Must be repeated.
+	 * @return the elements, which is empty if the field is not there
+	 * @throws MalformedProtobufException if the field is malformed
+	 */
+	public List<String> getStringList(FieldDefinition f) throws MalformedProtobufException {
+		checkType(f, true, FieldType.STRING);
+		final List<String> list = new ArrayList<>();
+		for (int entry = first(f.number()); entry >= 0; entry = next(entry)) {
+			seek(entry, f);
+			try {
+				list.add(input.readString(f.name()));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return Collections.unmodifiableList(list);
+	}
+
+	/**
+	 * Gets the elements of a repeated bytes field, as read-only slices of the message.
+	 *
+	 * @param f The field. Must be repeated.
+	 * @return the elements, which is empty if the field is not there
+	 * @throws MalformedProtobufException if the field is malformed
+	 */
+	public List<ByteBuffer> getBytesList(FieldDefinition f) throws MalformedProtobufException {
+		checkType(f, true, FieldType.BYTES);
+		final List<ByteBuffer> list = new ArrayList<>();
+		for (int entry = first(f.number()); entry >= 0; entry = next(entry)) {
+			seek(entry, f);
+			list.add(readSlice(f));
+		}
+		return Collections.unmodifiableList(list);
+	}
+
+	/**
+	 * Gets the elements of a repeated message field, as lazy messages of their own.
+	 *
+	 * @param f The field. Must be repeated.
+	 * @return the elements, which is empty if the field is not there
+	 * @throws MalformedProtobufException if the field is malformed, or nested too deeply
+	 */
+	public List<LazyMessage> getMessageList(FieldDefinition f) throws MalformedProtobufException {
+		checkType(f, true, FieldType.MESSAGE);
+		final List<LazyMessage> list = new ArrayList<>();
+		for (int entry = first(f.number()); entry >= 0; entry = next(entry)) {
+			seek(entry, f);
+			list.add(nested(readSlice(f)));
+		}
+		return Collections.unmodifiableList(list);
+	}
+
+	private static void checkType(FieldDefinition f, boolean repeated, FieldType... types) {
+		if (f.repeated() != repeated) {
+			throw new IllegalArgumentException("Field " + f.name() + (repeated ? " is not" : " is") +
+					" repeated");
+		}
+		for (final FieldType type : types) {
+			if (f.type() == type) {
+				return;
+			}
+		}
+		throw new IllegalArgumentException("Field " + f.name() + " is of type " + f.type() + ", not one of " +
+				Arrays.toString(types));
+	}
+
+	private LazyMessage nested(ByteBuffer message) throws MalformedProtobufException {
+		if (depth == limits.maxDepth()) {
+			throw new MalformedProtobufException("Messages are nested more than the maximum depth of " +
+					limits.maxDepth());
+		}
+		return new LazyMessage(message, limits, depth + 1);
+	}
+
+	/**
+	 * Reads a singular numeric or bool field, as the bits of its value.
+	 */
+	private long getScalar(FieldDefinition f) throws MalformedProtobufException {
+		final int entry = last(f);
+		if (entry < 0 || !seekValue(entry, f)) {
+			return 0;
+		}
+		return readScalar(f);
+	}
+
+	/**
+	 * Reads each element of a repeated numeric or bool field, as the bits of its value, in order. Each
+	 * occurrence of the field is either a packed run of elements, or a single unpacked element.
+	 */
+	private void forEachElement(FieldDefinition f, LongConsumer action) throws MalformedProtobufException {
+		int count = 0;
+		for (int entry = first(f.number()); entry >= 0; entry = next(entry)) {
+			final int wireType = index[entry * ENTRY_SIZE] & TAG_WRITE_TYPE_MASK;
+			if (wireType != WIRE_TYPE_DELIMITED) {
+				seek(entry, f);
+				action.accept(readScalar(f));
+				count++;
+				continue;
+			}
+
+			seek(entry, f);
+			try {
+				input.readDelimitedLength(f.name());
+				while (!input.eof()) {
+					action.accept(readScalar(f));
+					count++;
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			if (count > limits.maxRepeatedElements()) {
+				break;
+			}
+		}
+		if (count > limits.maxRepeatedElements()) {
+			throw new MalformedProtobufException("Repeated field " + f.name() + " has more than the maximum of " +
+					limits.maxRepeatedElements() + " elements");
+		}
+	}
+
+	private long readScalar(FieldDefinition f) throws MalformedProtobufException {
+		final ProtoInput in = input;
+		final String name = f.name();
+		try {
+			return switch (f.type()) {
+				case INT_32 -> in.readInt32(name);
+				case UINT_32 -> in.readUint32(name);
+				case SINT_32 -> in.readSignedInt32(name);
+				case FIXED_32 -> in.readFixed32(name);
+				case SFIXED_32 -> in.readSignedFixed32(name);
+				case ENUM -> in.readEnum(name);
+				case INT_64 -> in.readInt64(name);
+				case UINT_64 -> in.readUint64(name);
+				case SINT_64 -> in.readSignedInt64(name);
+				case FIXED_64 -> in.readFixed64(name);
+				case SFIXED_64 -> in.readSignedFixed64(name);
+				case BOOL -> in.readBool(name) ? 1 : 0;
+				case FLOAT -> in.readIntFromStream();
+				case DOUBLE -> in.readLongFromStream();
+				case STRING, BYTES, MESSAGE -> throw new IllegalArgumentException("Field " + name + " is not scalar");
+			};
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private ByteBuffer readSlice(FieldDefinition f) throws MalformedProtobufException {
+		try {
+			return input.readBytesSlice(f.name()).order(ByteOrder.LITTLE_ENDIAN);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Positions the engine at the value of a field, and checks its wire type is the one it should be
+	 * encoded with.
+	 */
+	private void seek(int entry, FieldDefinition f) throws MalformedProtobufException {
+		final int tag = index[entry * ENTRY_SIZE];
+		final int wireType = tag & TAG_WRITE_TYPE_MASK;
+		if (wireType != CompiledSchema.wireType(f)
+				&& !(CompiledSchema.isUnpackable(f) && wireType == CompiledSchema.wireType(f.type()))) {
+			throw new MalformedProtobufException("Bad protobuf encoding, field " + f.name() +
+					" cannot be encoded with wire type " + wireType);
+		}
+		final int offset = index[entry * ENTRY_SIZE + 1];
+		final int valueLength = index[entry * ENTRY_SIZE + 2];
+		if (arrayInput != null) {
+			final int from = buffer.arrayOffset() + start + offset;
+			arrayInput.reset(buffer.array(), from, from + valueLength);
+		} else {
+			bufferInput.reset(buffer, start + offset, start + offset + valueLength);
+		}
+		input.begin(limits, valueLength);
+	}
+
+	/**
+	 * Positions the engine at the value of a singular field. An optional field is a wrapper message holding
+	 * the value, and if the wrapper is empty, the value is the default.
+	 *
+	 * @return true if there is a value to read, false if it is the default
+	 */
+	private boolean seekValue(int entry, FieldDefinition f) throws MalformedProtobufException {
+		seek(entry, f);
+		if (!f.optional()) {
+			return true;
+		}
+		try {
+			input.readDelimitedLength(f.name());
+			if (input.eof()) {
+				return false;
+			}
+			// The value is always the "value" field (number 1) of the wrapper
+			final int tag = (int) input.readVarint("TAG", false);
+			if (tag != ((1 << TAG_FIELD_OFFSET) | CompiledSchema.wireType(f.type()))) {
+				throw new MalformedProtobufException("Bad protobuf encoding, optional field " + f.name() +
+						" has a value with tag " + tag);
+			}
+			return true;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Finds the first entry of the index for the given field number.
+	 *
+	 * @return the entry, or -1 if the field is not there
+	 */
+	private int first(int fieldNum) throws MalformedProtobufException {
+		final int[] index = index();
+		int low = 0;
+		int high = numEntries;
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if ((index[mid * ENTRY_SIZE] >>> TAG_FIELD_OFFSET) < fieldNum) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low < numEntries && (index[low * ENTRY_SIZE] >>> TAG_FIELD_OFFSET) == fieldNum ? low : -1;
+	}
+
+	/**
+	 * Finds the next entry for the same field as the given one.
+	 *
+	 * @return the entry, or -1 if there are no more
+	 */
+	private int next(int entry) {
+		final int next = entry + 1;
+		return next < numEntries && (index[next * ENTRY_SIZE] >>> TAG_FIELD_OFFSET)
+				== (index[entry * ENTRY_SIZE] >>> TAG_FIELD_OFFSET) ? next : -1;
+	}
+
+	/**
+	 * Finds the last entry for the given field, which is the one that counts for a singular field.
+	 *
+	 * @return the entry, or -1 if the field is not there
+	 */
+	private int last(FieldDefinition f) throws MalformedProtobufException {
+		int entry = first(f.number());
+		if (entry >= 0) {
+			for (int next = next(entry); next >= 0; next = next(next)) {
+				entry = next;
+			}
+		}
+		return entry;
+	}
+
+	/**
+	 * Gets the index, building it if this is the first time it is needed.
+	 */
+	private int[] index() throws MalformedProtobufException {
+		if (index == null) {
+			buildIndex();
+		}
+		return index;
+	}
+
+	/**
+	 * Walks the message, noting the tag, offset and length of each field, without decoding the values. The
+	 * entries are then sorted by field number. The sort is stable, so the occurrences of a field stay in the
+	 * order they appear.
+	 */
+	private void buildIndex() throws MalformedProtobufException {
+		if (arrayInput != null) {
+			final int from = buffer.arrayOffset() + start;
+			arrayInput.reset(buffer.array(), from, from + length);
+		} else {
+			bufferInput.reset(buffer, start, start + length);
+		}
+		input.begin(limits, length);
+
+		int[] entries = new int[8 * ENTRY_SIZE];
+		int count = 0;
+		try {
+			while (!input.eof()) {
+				final int tag = (int) input.readVarint("TAG", false);
+				if ((tag >>> TAG_FIELD_OFFSET) == 0) {
+					throw new MalformedProtobufException("Bad protobuf encoding. We read a field value of 0");
+				}
+				final int offset = (int) input.bytesRead();
+				input.skipField(tag & TAG_WRITE_TYPE_MASK);
+				if (count * ENTRY_SIZE == entries.length) {
+					entries = Arrays.copyOf(entries, entries.length * 2);
+				}
+				entries[count * ENTRY_SIZE] = tag;
+				entries[count * ENTRY_SIZE + 1] = offset;
+				entries[count * ENTRY_SIZE + 2] = (int) input.bytesRead() - offset;
+				count++;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		// Sort by field number, then by position, by sorting keys holding both
+		final long[] keys = new long[count];
+		for (int i = 0; i < count; i++) {
+			keys[i] = ((long) (entries[i * ENTRY_SIZE] >>> TAG_FIELD_OFFSET) << 32) | i;
+		}
+		Arrays.sort(keys);
+		final int[] sorted = new int[count * ENTRY_SIZE];
+		for (int i = 0; i < count; i++) {
+			System.arraycopy(entries, (int) keys[i] * ENTRY_SIZE, sorted, i * ENTRY_SIZE, ENTRY_SIZE);
+		}
+		this.index = sorted;
+		this.numEntries = count;
+	}
+}
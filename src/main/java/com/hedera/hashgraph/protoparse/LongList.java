@@ -0,0 +1,131 @@
+package com.hedera.hashgraph.protoparse;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * An immutable list of long values, backed by a long[], used for repeated int64, uint64, sint64, fixed64 and
+ * sfixed64 fields. The values can be read with {@link #getLong(int)} without boxing them. It is also a
+ * {@code List<Long>}, so it can be used anywhere a list of boxed values is expected, in which case each value
+ * is boxed as it is read.
+ */
+public final class LongList extends AbstractList<Long> implements RandomAccess {
+	private static final long[] EMPTY = new long[0];
+
+	private long[] values;
+	private int size;
+
+	/**
+	 * Create a new, empty list, with room for the given number of values before it has to grow. Only the
+	 * parser adds values to a list.
+	 */
+	LongList(int initialCapacity) {
+		this.values = initialCapacity == 0 ? EMPTY : new long[initialCapacity];
+	}
+
+	/**
+	 * Create a list holding the given values.
+	 *
+	 * @param values The values. The array is copied.
+	 * @return a new list
+	 */
+	public static LongList of(long... values) {
+		final LongList list = new LongList(0);
+		list.values = values.clone();
+		list.size = values.length;
+		return list;
+	}
+
+	/**
+	 * Adds a value to the end of the list, growing it if needed.
+	 */
+	void append(long value) {
+		if (size == values.length) {
+			values = Arrays.copyOf(values, Math.max(8, size * 2));
+		}
+		values[size++] = value;
+	}
+
+	/**
+	 * Makes room for the given number of values on top of those already in the list, so that appending them
+	 * does not have to grow it.
+	 */
+	void reserve(int count) {
+		if (size + count > values.length) {
+			// Grow geometrically, like append, so that many small packed runs of one field don't copy the
+			// whole list each time
+			values = Arrays.copyOf(values, Math.max(size + count, values.length * 2));
+		}
+	}
+
+	/**
+	 * Copies the values to a new list of exactly the right size, and empties this one, so that it can be reused.
+	 * This list keeps its capacity, unless it is more than the given maximum.
+	 *
+	 * @param maxRetainedCapacity The most values this list may keep room for once it is empty
+	 * @return a new list holding the values
+	 */
+	LongList copyAndClear(int maxRetainedCapacity) {
+		final LongList copy = new LongList(0);
+		copy.values = size == 0 ? EMPTY : Arrays.copyOf(values, size);
+		copy.size = size;
+		size = 0;
+		if (values.length > maxRetainedCapacity) {
+			values = EMPTY;
+		}
+		return copy;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the value at the given index, without boxing it.
+	 *
+	 * @param index The index of the value
+	 * @return the value
+	 * @throws IndexOutOfBoundsException If the index is negative or not less than the size
+	 */
+	public long getLong(int index) {
+		Objects.checkIndex(index, size);
+		return values[index];
+	}
+
+	@Override
+	public Long get(int index) {
+		return getLong(index);
+	}
+
+	/**
+	 * Gets a copy of the values.
+	 *
+	 * @return a new array holding the values
+	 */
+	public long[] toLongArray() {
+		return Arrays.copyOf(values, size);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o instanceof LongList other) {
+			return Arrays.equals(values, 0, size, other.values, 0, other.size);
+		}
+		return super.equals(o);
+	}
+
+	/**
+	 * Gets the hash code, exactly as defined by {@link java.util.List#hashCode()}, but without boxing.
+	 */
+	@Override
+	public int hashCode() {
+		int hash = 1;
+		for (int i = 0; i < size; i++) {
+			hash = 31 * hash + Long.hashCode(values[i]);
+		}
+		return hash;
+	}
+}
@@ -0,0 +1,133 @@
+package com.hedera.hashgraph.protoparse;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A {@link ProtoInput} that reads a region of a file by memory mapping it, so that the bytes are decoded
+ * straight out of the OS page cache without ever being copied onto the heap.
+ *
+ * <p>A single {@link MappedByteBuffer} can map at most {@link Integer#MAX_VALUE} bytes, so larger regions
+ * are mapped one window at a time. When a read needs more bytes than are left in the current window, a new
+ * window is mapped starting at the current position in the file. Since the windows are always mapped from
+ * the next unread byte, a value that straddles the end of one window is whole in the next.
+ */
+final class MappedProtoInput extends BufferProtoInput {
+	/**
+	 * The largest window that can be mapped at once
+	 */
+	static final long MAX_WINDOW_SIZE = Integer.MAX_VALUE;
+
+	/**
+	 * The size of the windows to map. Always {@link #MAX_WINDOW_SIZE}, except in tests.
+	 */
+	private final long windowSize;
+	private FileChannel channel;
+	/**
+	 * The position in the file of the first byte of the current window
+	 */
+	private long windowStart;
+	/**
+	 * The position in the file of the first byte of the region being read
+	 */
+	private long regionStart;
+	/**
+	 * The position in the file one past the last byte of the region being read. Unlike
+	 * {@link ProtoInput#messageEnd}, which counts bytes read, this is an offset in the file.
+	 */
+	private long regionEnd;
+
+	MappedProtoInput() {
+		this(MAX_WINDOW_SIZE);
+	}
+
+	MappedProtoInput(long windowSize) {
+		assert windowSize >= ProtoConstants.MAX_VARINT_SIZE && windowSize <= MAX_WINDOW_SIZE;
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * Resets this input to read {@code length} bytes of the file starting at {@code offset}. The region must
+	 * lie within the file.
+	 *
+	 * @throws IOException if the file cannot be mapped
+	 */
+	void reset(FileChannel channel, long offset, long length) throws IOException {
+		assert channel != null : "The only code that calls this ensures this is true";
+		assert offset >= 0 && length >= 0;
+		this.channel = channel;
+		this.regionStart = offset;
+		this.regionEnd = offset + length;
+		map(offset);
+	}
+
+	/**
+	 * Maps the next window of the region, starting at the given position in the file.
+	 */
+	private void map(long fileOffset) throws IOException {
+		final int size = (int) Math.min(windowSize, regionEnd - fileOffset);
+		final MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, fileOffset, size);
+		// The window belongs to us, so rather than byte swapping every multibyte value it can just be
+		// made little-endian, like protobuf.
+		window.order(ByteOrder.LITTLE_ENDIAN);
+		windowStart = fileOffset;
+		super.reset(window, 0, size);
+	}
+
+	@Override
+	long bytesRead() {
+		return windowStart - regionStart + position;
+	}
+
+	@Override
+	boolean refill(int needed) throws IOException {
+		if (limit - position >= needed) {
+			return true;
+		}
+
+		// If the current window already reaches the end of the region there is nothing more to map.
+		// Likewise, there is no point remapping if even a whole window couldn't hold what is needed.
+		if (windowStart + limit >= regionEnd || needed > windowSize) {
+			return false;
+		}
+
+		map(windowStart + position);
+		return limit - position >= needed;
+	}
+
+	@Override
+	void skipBytesBeyondBuffer(long length, String fieldName) throws IOException, MalformedProtobufException {
+		final long available = regionEnd - (windowStart + position);
+		if (length > available) {
+			throw new MalformedProtobufException("Truncated protobuf, length of " + length +
+					" exceeds the remaining " + available + " bytes while skipping field: " + fieldName);
+		}
+		// Nothing in between needs to be mapped, just the window after it
+		map(windowStart + position + length);
+	}
+
+	@Override
+	byte[] readBytesBeyondBuffer(int length, String fieldName) throws IOException, MalformedProtobufException {
+		final long available = regionEnd - (windowStart + position);
+		if (length > available) {
+			throw new MalformedProtobufException("Truncated protobuf, length of " + length +
+					" exceeds the remaining " + available + " bytes while reading field: " + fieldName);
+		}
+
+		// The value is bigger than a window, so copy it out one window at a time
+		final byte[] data = new byte[length];
+		int numCopied = 0;
+		while (numCopied < length) {
+			if (position >= limit) {
+				map(windowStart + position);
+			}
+			final int n = Math.min(limit - position, length - numCopied);
+			buffer.get(position, data, numCopied, n);
+			position += n;
+			numCopied += n;
+		}
+		return data;
+	}
+}
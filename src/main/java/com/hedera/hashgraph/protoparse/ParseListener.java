@@ -30,13 +30,53 @@ public interface ParseListener {
 
 	}
 
+	/**
+	 * Called for each nested message field. The stream holds the bytes of the nested message, and nothing
+	 * after them. It is the input of the enclosing message itself, so it is only valid during this call, and
+	 * passing it to the {@code start(InputStream)} method of another parser parses the nested message in
+	 * place, without copying it or wrapping it. Any bytes of the message that are not read are skipped.
+	 */
 	default void objectField(int fieldNum, InputStream protoStream) throws IOException, MalformedProtobufException {
 	}
 
+	/**
+	 * Called for each nested message field instead of {@link #objectField(int, InputStream)} when the parser
+	 * hands out nested messages as slices (see {@link ProtoParser#setMessageSlices(boolean)}). The slice holds
+	 * the encoded message from its position to its limit, and is read-only. It can be parsed right away, kept
+	 * to be parsed later, or handed to another thread, for as long as the input it is a slice of is valid.
+	 */
+	default void objectField(int fieldNum, ByteBuffer message) throws IOException, MalformedProtobufException {
+	}
+
+	/**
+	 * Called once at the end of the message, with all the elements of a repeated message field that is
+	 * parsed in parallel, instead of {@link #objectField(int, InputStream)} being called for each of them (see
+	 * {@link ProtoParser#setParallelMessages(int, BatchParser, java.util.concurrent.Executor)}). The elements are in
+	 * the order they appeared, and are of the type the batch parser of the field produces. The list is
+	 * unmodifiable.
+	 */
+	default void objectList(int fieldNum, List<?> messages) {
+	}
+
 	default void stringField(int fieldNum, String value) {
 
 	}
 
+	/**
+	 * Called for each string field instead of {@link #stringField(int, String)} when the parser is in lazy
+	 * string mode (see {@link ProtoParser#setLazyStrings(boolean)}). The value has not been decoded yet, so
+	 * a handler that only compares, hashes or ignores it saves decoding it. By default, the value is decoded
+	 * and passed on to {@link #stringField(int, String)}.
+	 */
+	default void utf8Field(int fieldNum, Utf8View value) {
+		stringField(fieldNum, value.toString());
+	}
+
+	/**
+	 * Called for each bytes field. The value is read-only, and is normally a copy of the bytes. If the parser
+	 * was set to zero-copy mode (see {@link ProtoParser#setZeroCopyBytes(boolean)}) it may instead be a slice
+	 * of the input, which is only valid while the input buffer is.
+	 */
 	default void bytesField(int fieldNum, ByteBuffer value) {
 
 	}
@@ -64,4 +104,99 @@ public interface ParseListener {
 	default void enumList(int fieldNum, List<Integer> value) {
 
 	}
+
+	// Repeated numeric and bool fields are delivered to these methods as lists of primitives, so that the
+	// values don't have to be boxed. By default, they pass the list on to the method for boxed values above
+	// (the primitive lists are also lists of boxed values, boxing each value as it is read). A field may
+	// appear more than once in a message, packed or unpacked, so the elements of all of them are collected
+	// into one list, which is delivered once the end of the message is reached.
+
+	default void intList(int fieldNum, IntList value) {
+		intList(fieldNum, (List<Integer>) value);
+	}
+
+	default void longList(int fieldNum, LongList value) {
+		longList(fieldNum, (List<Long>) value);
+	}
+
+	default void booleanList(int fieldNum, BooleanList value) {
+		booleanList(fieldNum, (List<Boolean>) value);
+	}
+
+	default void floatList(int fieldNum, FloatList value) {
+		floatList(fieldNum, (List<Float>) value);
+	}
+
+	default void doubleList(int fieldNum, DoubleList value) {
+		doubleList(fieldNum, (List<Double>) value);
+	}
+
+	default void enumList(int fieldNum, IntList value) {
+		enumList(fieldNum, (List<Integer>) value);
+	}
+
+	// Packed repeated fields can instead be streamed one element at a time, so that a handler that folds the
+	// values (sums them, counts them, copies them into its own storage, ...) needs no memory for the list.
+	// For each packed field, packedStart is called first. If it returns true, the matching element method is
+	// called for each element, in order, and then packedEnd. Nothing is passed to the list methods above.
+	// If it returns false, which it does by default, the field is delivered as a list. The elements of an
+	// unpacked field each have a tag of their own, and are always delivered as a list.
+
+	/**
+	 * Called at the start of each packed repeated field, to ask whether its elements should be streamed.
+	 *
+	 * @param fieldNum The field number
+	 * @param byteLength The encoded length of the elements, in bytes
+	 * @return true to have each element passed to the element method for its type, followed by a call to
+	 * 			{@link #packedEnd(int, int)}; false to have the elements delivered as a list
+	 */
+	default boolean packedStart(int fieldNum, int byteLength) {
+		return false;
+	}
+
+	/**
+	 * Called for each element of a streamed int32, uint32, sint32, fixed32, sfixed32 or enum field.
+	 */
+	default void intElement(int fieldNum, int value) {
+
+	}
+
+	/**
+	 * Called for each element of a streamed int64, uint64, sint64, fixed64 or sfixed64 field.
+	 */
+	default void longElement(int fieldNum, long value) {
+
+	}
+
+	/**
+	 * Called for each element of a streamed bool field.
+	 */
+	default void booleanElement(int fieldNum, boolean value) {
+
+	}
+
+	/**
+	 * Called for each element of a streamed float field. By default, the value is passed on to
+	 * {@link #doubleElement(int, double)}, which represents every float exactly.
+	 */
+	default void floatElement(int fieldNum, float value) {
+		doubleElement(fieldNum, value);
+	}
+
+	/**
+	 * Called for each element of a streamed double field.
+	 */
+	default void doubleElement(int fieldNum, double value) {
+
+	}
+
+	/**
+	 * Called after the last element of a streamed field.
+	 *
+	 * @param fieldNum The field number
+	 * @param count The number of elements that were passed to the element method
+	 */
+	default void packedEnd(int fieldNum, int count) {
+
+	}
 }
@@ -0,0 +1,100 @@
+package com.hedera.hashgraph.protoparse;
+
+/**
+ * Hard limits on the input a {@link ProtoParser} accepts, so that the memory and time it takes to parse a
+ * message is bounded, however the message is crafted. Without limits, a few bytes claiming a huge length
+ * can make the parser allocate a huge array, and deeply nested messages can use up the stack. Input that
+ * breaks a limit is rejected with a {@link MalformedProtobufException}, before anything is allocated for it.
+ *
+ * <p>The limits of the parser of the outermost message apply to every message nested in it, whichever
+ * parser parses them. A nested message handed out as a slice (see {@link ProtoParser#setMessageSlices(boolean)})
+ * is parsed as a message of its own, under the limits of the parser that parses it.
+ *
+ * <p>For example, to accept messages of up to 1 MB, from an untrusted source:
+ *
+ * <pre>
+ *     ParserLimits.UNTRUSTED.withMaxMessageSize(1024 * 1024)
+ * </pre>
+ *
+ * @param maxMessageSize      The most bytes the outermost message may have. Must be &gt;= 0.
+ * @param maxFieldLength      The most bytes a length delimited field (a string, bytes, a nested message, a packed
+ *                            list, or an unknown field) may have. Must be &gt;= 0.
+ * @param maxDepth            The most levels messages may be nested in the outermost message. Must be &gt;= 0.
+ * @param maxRepeatedElements The most elements a repeated numeric or bool field of one message may have, counting
+ *                            all of its occurrences, packed and unpacked. This also applies to a repeated message
+ *                            field that is parsed in parallel. Must be &gt;= 0.
+ * @param maxUnknownFields    The most fields that are not in the schema that may be skipped, in the outermost
+ *                            message and all the messages nested in it. Must be &gt;= 0.
+ */
+public record ParserLimits(long maxMessageSize, int maxFieldLength, int maxDepth, int maxRepeatedElements,
+                           int maxUnknownFields) {
+    /**
+     * No limits at all, other than those of protobuf itself. This is what parsers use by default.
+     */
+    public static final ParserLimits UNLIMITED = new ParserLimits(
+            Long.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+    /**
+     * Limits for input from untrusted sources, generous enough for any reasonable message: 64 MB messages,
+     * 16 MB fields, 100 levels of nesting, a million elements per repeated field, and 65,536 unknown fields.
+     */
+    public static final ParserLimits UNTRUSTED = new ParserLimits(
+            64L * 1024 * 1024, 16 * 1024 * 1024, 100, 1024 * 1024, 65_536);
+
+    public ParserLimits {
+        if (maxMessageSize < 0 || maxFieldLength < 0 || maxDepth < 0 || maxRepeatedElements < 0
+                || maxUnknownFields < 0) {
+            throw new IllegalArgumentException("The limits must be >= 0");
+        }
+    }
+
+    /**
+     * Gets a copy of these limits, with the given maximum message size.
+     *
+     * @param maxMessageSize The most bytes the outermost message may have
+     * @return the new limits
+     */
+    public ParserLimits withMaxMessageSize(long maxMessageSize) {
+        return new ParserLimits(maxMessageSize, maxFieldLength, maxDepth, maxRepeatedElements, maxUnknownFields);
+    }
+
+    /**
+     * Gets a copy of these limits, with the given maximum field length.
+     *
+     * @param maxFieldLength The most bytes a length delimited field may have
+     * @return the new limits
+     */
+    public ParserLimits withMaxFieldLength(int maxFieldLength) {
+        return new ParserLimits(maxMessageSize, maxFieldLength, maxDepth, maxRepeatedElements, maxUnknownFields);
+    }
+
+    /**
+     * Gets a copy of these limits, with the given maximum nesting depth.
+     *
+     * @param maxDepth The most levels messages may be nested in the outermost message
+     * @return the new limits
+     */
+    public ParserLimits withMaxDepth(int maxDepth) {
+        return new ParserLimits(maxMessageSize, maxFieldLength, maxDepth, maxRepeatedElements, maxUnknownFields);
+    }
+
+    /**
+     * Gets a copy of these limits, with the given maximum number of elements of a repeated field.
+     *
+     * @param maxRepeatedElements The most elements a repeated numeric or bool field of one message may have
+     * @return the new limits
+     */
+    public ParserLimits withMaxRepeatedElements(int maxRepeatedElements) {
+        return new ParserLimits(maxMessageSize, maxFieldLength, maxDepth, maxRepeatedElements, maxUnknownFields);
+    }
+
+    /**
+     * Gets a copy of these limits, with the given maximum number of unknown fields.
+     *
+     * @param maxUnknownFields The most fields that are not in the schema that may be skipped
+     * @return the new limits
+     */
+    public ParserLimits withMaxUnknownFields(int maxUnknownFields) {
+        return new ParserLimits(maxMessageSize, maxFieldLength, maxDepth, maxRepeatedElements, maxUnknownFields);
+    }
+}
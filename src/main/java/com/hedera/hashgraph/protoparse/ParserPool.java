@@ -0,0 +1,244 @@
+package com.hedera.hashgraph.protoparse;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A pool of reusable parsers, so that parsers can be shared by any number of threads. A {@link ProtoParser}
+ * is reusable, but may only be used by one thread at a time. A thread borrows a parser with
+ * {@link #acquire()}, uses it, and gives it back with {@link #release(ProtoParser)}, or does both with
+ * {@link #use(ParserFunction)}. If there is no idle parser, a new one is created with the factory.
+ *
+ * <p>The idle parsers are kept in a number of small stripes, one per processor, and a thread always looks
+ * in the same stripe first. Since there are about as many threads running at any moment as there are
+ * processors, a thread normally finds the parser it released last time, without contending with other
+ * threads. Parsers that don't fit in a stripe go to a shared overflow queue, and a thread that finds neither
+ * its stripe nor the queue has an idle parser takes one from another stripe before creating a new one. Virtual
+ * threads far outnumber processors, so they share stripes, but that is still safe. All of this is lock-free, so
+ * the pool never blocks, and never pins a virtual thread to its carrier.
+ *
+ * <p>The pool keeps at most a maximum number of idle parsers. Parsers released when the pool is full are
+ * dropped, to be garbage collected.
+ *
+ * @param <P> The type of parser
+ */
+public final class ParserPool<P extends ProtoParser> {
+	/**
+	 * The number of idle parsers each stripe holds
+	 */
+	static final int STRIPE_SIZE = 4;
+	/**
+	 * The default maximum number of idle parsers in the overflow queue
+	 */
+	public static final int DEFAULT_MAX_OVERFLOW = 64;
+
+	/**
+	 * Code that uses a parser borrowed from the pool.
+	 *
+	 * @param <P> The type of parser
+	 * @param <R> The type of the result
+	 * @param <E> The type of exception that may be thrown
+	 */
+	@FunctionalInterface
+	public interface ParserFunction<P, R, E extends Exception> {
+		R apply(P parser) throws E;
+	}
+
+	private final Supplier<P> factory;
+	/**
+	 * The stripes, back to back. The slots of stripe {@code s} are {@code s * STRIPE_SIZE} up to
+	 * {@code (s + 1) * STRIPE_SIZE}. An empty slot is null.
+	 */
+	private final AtomicReferenceArray<P> stripes;
+	private final int stripeMask;
+	private final ConcurrentLinkedQueue<P> overflow = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger overflowSize = new AtomicInteger();
+	private final int maxOverflow;
+
+	private final LongAdder acquires = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder acquireNanos = new LongAdder();
+
+	/**
+	 * Create a new, empty pool, with room for {@link #DEFAULT_MAX_OVERFLOW} parsers in the overflow queue.
+	 *
+	 * @param factory Creates a new parser when there is no idle one. Must not be null.
+	 */
+	public ParserPool(Supplier<P> factory) {
+		this(factory, DEFAULT_MAX_OVERFLOW);
+	}
+
+	/**
+	 * Create a new, empty pool.
+	 *
+	 * @param factory Creates a new parser when there is no idle one. Must not be null.
+	 * @param maxOverflow The maximum number of idle parsers kept in the overflow queue, on top of those in
+	 *                    the stripes
+	 * @throws IllegalArgumentException If the maximum is negative
+	 */
+	public ParserPool(Supplier<P> factory, int maxOverflow) {
+		this.factory = Objects.requireNonNull(factory);
+		if (maxOverflow < 0) {
+			throw new IllegalArgumentException("The maximum overflow must be non-negative");
+		}
+		this.maxOverflow = maxOverflow;
+
+		// One stripe per processor, rounded up to a power of two so that a stripe can be picked with a mask
+		final int processors = Runtime.getRuntime().availableProcessors();
+		final int numStripes = Integer.highestOneBit(Math.max(1, processors - 1)) << 1;
+		this.stripes = new AtomicReferenceArray<>(numStripes * STRIPE_SIZE);
+		this.stripeMask = numStripes - 1;
+	}
+
+	/**
+	 * Borrows a parser from the pool, creating a new one if there are no idle ones. The parser must be given
+	 * back with {@link #release(ProtoParser)} once it is no longer used.
+	 *
+	 * @return a parser that no other thread is using
+	 */
+	public P acquire() {
+		final long startNanos = System.nanoTime();
+		acquires.increment();
+
+		final int first = stripe();
+		for (int i = first; i < first + STRIPE_SIZE; i++) {
+			final P parser = stripes.get(i);
+			if (parser != null && stripes.compareAndSet(i, parser, null)) {
+				acquireNanos.add(System.nanoTime() - startNanos);
+				return parser;
+			}
+		}
+
+		P parser = overflow.poll();
+		if (parser != null) {
+			overflowSize.decrementAndGet();
+		} else {
+			parser = steal(first);
+			if (parser == null) {
+				misses.increment();
+				parser = Objects.requireNonNull(factory.get(), "The factory returned null");
+			}
+		}
+		acquireNanos.add(System.nanoTime() - startNanos);
+		return parser;
+	}
+
+	/**
+	 * Takes an idle parser from any stripe other than the one starting at the given slot, rather than creating
+	 * a new parser while there are idle ones. This happens when a thread's stripe is empty because other
+	 * threads sharing it hold its parsers.
+	 */
+	private P steal(int ownFirst) {
+		for (int i = 0; i < stripes.length(); i++) {
+			if (i >= ownFirst && i < ownFirst + STRIPE_SIZE) {
+				continue;
+			}
+			final P parser = stripes.get(i);
+			if (parser != null && stripes.compareAndSet(i, parser, null)) {
+				return parser;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Gives a parser back to the pool. The parser must not be used after this by the thread that released
+	 * it, as it may already be in use by another thread.
+	 *
+	 * @param parser The parser, which was borrowed from this pool. Must not be null.
+	 */
+	public void release(P parser) {
+		Objects.requireNonNull(parser);
+
+		final int first = stripe();
+		for (int i = first; i < first + STRIPE_SIZE; i++) {
+			if (stripes.get(i) == null && stripes.compareAndSet(i, null, parser)) {
+				return;
+			}
+		}
+
+		// Reserve a place in the overflow queue first, so that it never holds more than the maximum
+		if (overflowSize.incrementAndGet() <= maxOverflow) {
+			overflow.offer(parser);
+		} else {
+			overflowSize.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Borrows a parser, passes it to the given function, and gives it back, even if the function throws.
+	 *
+	 * @param function The code to run with the parser. It must not keep the parser after it returns.
+	 * @return the result of the function
+	 * @param <R> The type of the result
+	 * @param <E> The type of exception the function may throw
+	 * @throws E If thrown by the function
+	 */
+	public <R, E extends Exception> R use(ParserFunction<? super P, R, E> function) throws E {
+		final P parser = acquire();
+		try {
+			return function.apply(parser);
+		} finally {
+			release(parser);
+		}
+	}
+
+	/**
+	 * Gets the index of the first slot of the current thread's stripe.
+	 */
+	private int stripe() {
+		// Thread ids are handed out in sequence, so they are spread evenly over the stripes
+		return ((int) Thread.currentThread().getId() & stripeMask) * STRIPE_SIZE;
+	}
+
+	/**
+	 * Gets the number of times a parser was borrowed from the pool.
+	 *
+	 * @return the number of acquires
+	 */
+	public long acquires() {
+		return acquires.sum();
+	}
+
+	/**
+	 * Gets the number of times there was no idle parser, so that a new one had to be created.
+	 *
+	 * @return the number of misses
+	 */
+	public long misses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Gets the fraction of acquires that had to create a new parser.
+	 *
+	 * @return the miss rate, from 0 to 1, or 0 if there have been no acquires
+	 */
+	public double missRate() {
+		final long total = acquires();
+		return total == 0 ? 0 : (double) misses() / total;
+	}
+
+	/**
+	 * Gets the average time {@link #acquire()} took, including the time to create new parsers on misses.
+	 *
+	 * @return the average latency in nanoseconds, or 0 if there have been no acquires
+	 */
+	public double averageAcquireNanos() {
+		final long total = acquires();
+		return total == 0 ? 0 : (double) acquireNanos.sum() / total;
+	}
+
+	/**
+	 * Resets the acquire and miss counters, and the acquire latency, to zero. The idle parsers are kept.
+	 */
+	public void resetCounters() {
+		acquires.reset();
+		misses.reset();
+		acquireNanos.reset();
+	}
+}
@@ -33,6 +33,18 @@ class ProtoConstants {
      * The number of actual data bits in a varint byte
      */
     static final int NUM_BITS_PER_VARINT_BYTE = 7;
+    /**
+     * The maximum number of bytes in a varint encoded 64-bit value
+     */
+    static final int MAX_VARINT_SIZE = 10;
+    /**
+     * {@link #VARINT_CONTINUATION_MASK} repeated for each of the 8 bytes packed into a long
+     */
+    static final long VARINT_CONTINUATION_BITS = 0x8080_8080_8080_8080L;
+    /**
+     * {@link #VARINT_DATA_MASK} repeated for each of the 8 bytes packed into a long
+     */
+    static final long VARINT_DATA_BITS = 0x7F7F_7F7F_7F7F_7F7FL;
 
     private ProtoConstants() {
 
@@ -0,0 +1,386 @@
+package com.hedera.hashgraph.protoparse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import static com.hedera.hashgraph.protoparse.ProtoConstants.*;
+
+/**
+ * The source of bytes that a {@link ProtoParser} decodes. Each concrete subclass is a "decode engine"
+ * specialized for one kind of input (a byte[], an arbitrary {@link InputStream}, etc.), so that the
+ * primitive reads (varints, little-endian fixed width values, length delimited values) can be
+ * implemented in the most efficient way possible for that kind of input.
+ *
+ * <p>A {@code ProtoInput} is itself an {@link InputStream}, so that it can be handed to a
+ * {@link ParseListener} as the stream of a nested message. Rather than wrapping the input in another stream
+ * for each nested message, the end of the nested message is pushed as a limit (see {@link #pushLimit(long)})
+ * and the same input is handed on. The parser of the nested message then reads from the same cursor, at the
+ * same speed, as the parser of the top-level message.
+ */
+abstract class ProtoInput extends InputStream {
+	/**
+	 * The value of {@link #messageEnd} when no nested message is being read
+	 */
+	static final long NO_LIMIT = Long.MAX_VALUE;
+
+	/**
+	 * The cache to look string values up in before decoding them, or null to always decode them
+	 */
+	StringCache stringCache;
+	/**
+	 * The value of {@link #bytesRead()} at the end of the innermost nested message being read, or
+	 * {@link #NO_LIMIT}. The input appears to end there, both to {@link #eof()} and to the
+	 * {@link InputStream} methods.
+	 */
+	long messageEnd = NO_LIMIT;
+	/**
+	 * The limits of the parser of the outermost message, which apply to it and every message nested in it
+	 */
+	ParserLimits limits = ParserLimits.UNLIMITED;
+	/**
+	 * The number of nested messages being read, one inside the other
+	 */
+	int depth;
+	/**
+	 * The number of unknown fields skipped, in the outermost message and every message nested in it
+	 */
+	int unknownFields;
+	/**
+	 * The fields of the message being read that are parsed, or null to parse them all. When a nested message
+	 * is read, this is the part of the mask of the enclosing message for it.
+	 */
+	FieldMask fieldMask;
+
+	/**
+	 * Prepares to read an outermost message, once the input has been reset to it.
+	 *
+	 * @param limits The limits of the parser
+	 * @param length The length of the message, or -1 if it is not known up front (a stream)
+	 * @throws MalformedProtobufException if the message is longer than the limits allow
+	 */
+	final void begin(ParserLimits limits, long length) throws MalformedProtobufException {
+		if (length > limits.maxMessageSize()) {
+			throw new MalformedProtobufException("Message of " + length +
+					" bytes exceeds the maximum message size of " + limits.maxMessageSize());
+		}
+		this.limits = limits;
+		this.depth = 0;
+		this.unknownFields = 0;
+		// The end of a stream of unknown length isn't known until it is reached, but it can't be past the
+		// maximum. Either way, no length delimited field can claim more bytes than there are left.
+		this.messageEnd = length >= 0 ? length
+				: limits.maxMessageSize() == Long.MAX_VALUE ? NO_LIMIT : limits.maxMessageSize();
+	}
+
+	/**
+	 * Gets whether all bytes of the input, or of the nested message being read, have been read.
+	 *
+	 * @return true if there are no more bytes to read
+	 * @throws IOException if the underlying input cannot be read
+	 */
+	final boolean eof() throws IOException {
+		return bytesRead() >= messageEnd || atEnd();
+	}
+
+	/**
+	 * Gets whether all bytes of the underlying input have been read, ignoring {@link #messageEnd}.
+	 *
+	 * @return true if there are no more bytes to read
+	 * @throws IOException if the underlying input cannot be read
+	 */
+	abstract boolean atEnd() throws IOException;
+
+	/**
+	 * Limits the input to the next {@code length} bytes, which hold a nested message.
+	 *
+	 * @param length The length of the nested message
+	 * @return the previous limit, to be passed to {@link #popLimit(long)} once the nested message is read
+	 * @throws MalformedProtobufException if the nested message would run past the end of the message it is in
+	 */
+	final long pushLimit(long length) throws MalformedProtobufException {
+		final long previousEnd = messageEnd;
+		final long end = bytesRead() + length;
+		if (length < 0 || end > previousEnd) {
+			throw new MalformedProtobufException("Bad protobuf encoding, nested message length of " + length +
+					" exceeds the " + (previousEnd - bytesRead()) + " bytes left in the enclosing message");
+		}
+		if (length > limits.maxFieldLength()) {
+			throw new MalformedProtobufException("Nested message length of " + length +
+					" exceeds the maximum field length of " + limits.maxFieldLength());
+		}
+		if (depth == limits.maxDepth()) {
+			throw new MalformedProtobufException("Messages are nested more than the maximum depth of " +
+					limits.maxDepth());
+		}
+		depth++;
+		messageEnd = end;
+		return previousEnd;
+	}
+
+	/**
+	 * Restores the limit that was in place before the matching {@link #pushLimit(long)}.
+	 *
+	 * @param previousEnd The value returned by {@link #pushLimit(long)}
+	 */
+	final void popLimit(long previousEnd) {
+		depth--;
+		messageEnd = previousEnd;
+	}
+
+	/**
+	 * Gets the number of bytes that may be read through the {@link InputStream} methods before the end of
+	 * the nested message being read, capped at {@code max}.
+	 */
+	final int bytesLeftInMessage(int max) {
+		return (int) Math.min(max, messageEnd - bytesRead());
+	}
+
+	/**
+	 * Gets the total number of bytes read from this input since it was last reset.
+	 *
+	 * @return the number of bytes read
+	 */
+	abstract long bytesRead();
+
+	/**
+	 * Reads a variable length encoded integer from the protobuf bytes.
+	 *
+	 * @param fieldName The name of the field being decoded. Used for error messages only.
+	 * @param zigZag    Whether to decode using zig-zag decoding
+	 * @return the 64-bit integer read and decoded from the protobuf bytes
+	 * @throws IOException                if the protobuf bytes cannot be read
+	 * @throws MalformedProtobufException if the bytes cannot be decoded properly due to malformed protobuf
+	 */
+	abstract long readVarint(String fieldName, boolean zigZag) throws IOException, MalformedProtobufException;
+
+	/**
+	 * Checks whether the next bytes are the encoded tag of the given field, and if they are, reads past them.
+	 * This is much cheaper than decoding the tag and looking the field up, when the next field is known.
+	 *
+	 * @param expected The field expected next
+	 * @return true if the tag matched and was read, false if nothing was read
+	 * @throws IOException if the underlying input cannot be read
+	 */
+	abstract boolean matchTag(CompiledSchema.Entry expected) throws IOException;
+
+	/**
+	 * Moves past the next {@code length} bytes without reading them, so that skipping a large field costs
+	 * about as little as skipping a small one. The length of a delimited field has already been checked
+	 * against the end of the message it is in by {@link #readDelimitedLength(String)}.
+	 *
+	 * @param length    The number of bytes to skip
+	 * @param fieldName The name of the field being skipped. Used for error messages only.
+	 * @throws IOException                if the underlying input cannot be read
+	 * @throws MalformedProtobufException if the input ends before that many bytes
+	 */
+	abstract void skipBytes(long length, String fieldName) throws IOException, MalformedProtobufException;
+
+	/**
+	 * Reads 4 bytes in little-endian order as an int.
+	 */
+	abstract int readIntFromStream() throws IOException, MalformedProtobufException;
+
+	/**
+	 * Reads 8 bytes in little-endian order as a long.
+	 */
+	abstract long readLongFromStream() throws IOException, MalformedProtobufException;
+
+	/**
+	 * Reads a length delimited, UTF-8 encoded string.
+	 */
+	abstract String readString(String fieldName) throws IOException, MalformedProtobufException;
+
+	/**
+	 * Reads a length delimited sequence of bytes, returned as a read-only buffer.
+	 */
+	abstract ByteBuffer readBytes(String fieldName) throws IOException, MalformedProtobufException;
+
+	/**
+	 * Reads a length delimited sequence of bytes, returned as a read-only slice of the input itself rather
+	 * than a copy, if the input allows it. Inputs that reuse their buffers (such as streams) return a copy.
+	 */
+	ByteBuffer readBytesSlice(String fieldName) throws IOException, MalformedProtobufException {
+		return readBytes(fieldName);
+	}
+
+	/**
+	 * Reads a length delimited, UTF-8 encoded string without decoding it. Just like
+	 * {@link #readBytesSlice(String)}, the view is over the input itself if the input allows it.
+	 */
+	Utf8View readUtf8(String fieldName) throws IOException, MalformedProtobufException {
+		return new Utf8View(readBytesSlice(fieldName));
+	}
+
+	/**
+	 * Counts the elements of a packed repeated field of the given length, starting at the current position,
+	 * without reading them. Fixed width elements are counted by dividing, and varints by counting their last
+	 * bytes (the only ones without the continuation bit).
+	 *
+	 * @param length The length of the field in bytes
+	 * @param fixedWidth The size of each element in bytes, or 0 for varints
+	 * @return the number of elements, or -1 if the bytes are not all available to be counted
+	 */
+	int countPackedElements(int length, int fixedWidth) throws IOException {
+		return -1;
+	}
+
+	final int readInt32(String fieldName) throws IOException, MalformedProtobufException {
+		return (int) readVarint(fieldName, false);
+	}
+
+	final long readInt64(String fieldName) throws IOException, MalformedProtobufException {
+		return readVarint(fieldName, false);
+	}
+
+	final int readUint32(String fieldName) throws IOException, MalformedProtobufException {
+		return (int) readVarint(fieldName, false);
+	}
+
+	final long readUint64(String fieldName) throws IOException, MalformedProtobufException {
+		return readVarint(fieldName, false);
+	}
+
+	final boolean readBool(String fieldName) throws IOException, MalformedProtobufException {
+		final var i = readVarint(fieldName, false);
+		if (i != 1 && i != 0) {
+			throw new MalformedProtobufException("Bad protobuf encoding. Boolean was not 0 or 1");
+		}
+		return i == 1;
+	}
+
+	final int readEnum(String fieldName) throws IOException, MalformedProtobufException {
+		final var i = readVarint(fieldName, false);
+		return (int) i;
+	}
+
+	final int readSignedInt32(String fieldName) throws IOException, MalformedProtobufException {
+		return (int) readVarint(fieldName, true);
+	}
+
+	final long readSignedInt64(String fieldName) throws IOException, MalformedProtobufException {
+		return readVarint(fieldName, true);
+	}
+
+	final int readSignedFixed32(String fieldName) throws IOException, MalformedProtobufException {
+		return readIntFromStream();
+	}
+
+	final int readFixed32(String fieldName) throws IOException, MalformedProtobufException {
+		return readIntFromStream();
+	}
+
+	final float readFloat(String fieldName) throws IOException, MalformedProtobufException {
+		return Float.intBitsToFloat(readIntFromStream());
+	}
+
+	final long readSignedFixed64(String fieldName) throws IOException, MalformedProtobufException {
+		return readLongFromStream();
+	}
+
+	final long readFixed64(String fieldName) throws IOException, MalformedProtobufException {
+		return readLongFromStream();
+	}
+
+	final double readDouble(String fieldName) throws IOException, MalformedProtobufException {
+		return Double.longBitsToDouble(readLongFromStream());
+	}
+
+	final long readLengthFromStream() throws IOException, MalformedProtobufException {
+		return readVarint("", false);
+	}
+
+	/**
+	 * Reads the length of a length delimited field, and verifies that it is usable as an array length, that
+	 * it is within the limits, and that there are that many bytes left in the message, before anything is
+	 * allocated for the field.
+	 */
+	final int readDelimitedLength(String fieldName) throws IOException, MalformedProtobufException {
+		final long length = readVarint(fieldName, false);
+		if (length < 0 || length > Integer.MAX_VALUE) {
+			throw new MalformedProtobufException("Bad protobuf encoding, length of " + length +
+					" is not valid while reading field: " + fieldName);
+		}
+		if (length > limits.maxFieldLength()) {
+			throw new MalformedProtobufException("Length of " + length + " exceeds the maximum field length of " +
+					limits.maxFieldLength() + " while reading field: " + fieldName);
+		}
+		if (length > messageEnd - bytesRead()) {
+			throw new MalformedProtobufException("Truncated protobuf, length of " + length +
+					" exceeds the remaining " + (messageEnd - bytesRead()) + " bytes while reading field: " +
+					fieldName);
+		}
+		return (int) length;
+	}
+
+	void skipField(int wireType) throws IOException, MalformedProtobufException {
+		switch (wireType) {
+			case WIRE_TYPE_FIXED_64_BIT -> skipBytes(Long.BYTES, "Unknown");
+			case WIRE_TYPE_FIXED_32_BIT -> skipBytes(Integer.BYTES, "Unknown");
+			// The value for "zigZag" when calling varint doesn't matter because we are just reading past
+			// the varint, we don't care how to interpret it (zigzag is only used for interpretation of
+			// the bytes, not how many of them there are)
+			case WIRE_TYPE_VARINT_OR_ZIGZAG -> readVarint("Unknown", false);
+			case WIRE_TYPE_DELIMITED -> {
+				final var length = readDelimitedLength("Unknown");
+				skipBytes(length, "Unknown");
+			}
+			case WIRE_TYPE_GROUP_START -> throw new MalformedProtobufException(
+					"Wire type 'Group Start' is unsupported");
+			case WIRE_TYPE_GROUP_END -> throw new MalformedProtobufException(
+					"Wire type 'Group End' is unsupported");
+			default -> throw new MalformedProtobufException(
+					"Unhandled wire type while trying to skip a field " + wireType);
+		}
+	}
+
+	/**
+	 * Given up to 8 varint bytes packed little-endian into a long, strips the continuation bits and packs the
+	 * 7-bit groups together, returning the (up to 56-bit) value they represent. The groups are merged in pairs,
+	 * then in pairs of pairs, and so on, which takes 3 steps rather than 8.
+	 */
+	static long gatherVarintBits(long varintBytes) {
+		long x = varintBytes & VARINT_DATA_BITS;
+		// 7 bits in each byte -> 14 bits in each 16 bit lane
+		x = (x & 0x007F_007F_007F_007FL) | ((x & 0x7F00_7F00_7F00_7F00L) >>> 1);
+		// 14 bits in each 16 bit lane -> 28 bits in each 32 bit lane
+		x = (x & 0x0000_3FFF_0000_3FFFL) | ((x & 0x3FFF_0000_3FFF_0000L) >>> 2);
+		// 28 bits in each 32 bit lane -> 56 bits
+		return (x & 0x0000_0000_0FFF_FFFFL) | ((x & 0x0FFF_FFFF_0000_0000L) >>> 4);
+	}
+
+	/**
+	 * Undoes "ZigZag" encoding of a varint.
+	 *
+	 * <p>"ZigZag" mode basically maps a signed number into unsigned bits such that small signed and
+	 * unsigned numbers are small numbers. The most significant bit indicates the sign. All negative
+	 * numbers of a msb of 1, while all positive numbers are 0. When encoding, you would take a number
+	 * and multiply it by two and XOR it with all 1's if it is negative and all 0's if it is positive
+	 * (XOR ends up flipping the bits if the mask is all 1's and leaving them be if all 0's). Of course,
+	 * multiple by two means to shift left by 1. So the encoding looks like:
+	 *
+	 * <pre>
+	 *   (value &lt;&lt; 1) ^ (value &gt;&gt; 63)
+	 * </pre>
+	 *
+	 * <p>The first term simply multiplies the value by 2 while the second term is the mask. It does an
+	 * arithmetic shift -- basically if the msb is 1 then it will fill it with all 1's. If 0 then it
+	 * fills with all 0's.
+	 *
+	 * <p>The operation to undo this is slightly more tricky. The first term (value &gt;&gt;&gt; 1) will divide
+	 * the number, but uses the *logical shift right* operation so the msb will always be 0. Then
+	 * it creates the XOR flag of all 1's if the *lsb* is 1, otherwise with 0's. The trick of
+	 * using (value &lt;&lt; 63 &gt;&gt; 63) basically left shifts until the lsb is in the msb spot with all 0's
+	 * following it, and then arithmetically shifts right the same number of places, ending up with
+	 * either -1 (all 1's) or 0 (all 0's).
+	 *
+	 * <p>I could have put an "if" operation in there instead (if value &amp; 0x1 == 0 use mask of all 0's
+	 * else all 1's), but unless the JVM optimizes it, it will be less efficient. There you go.
+	 *
+	 * @param value the zig-zag encoded value
+	 * @return the decoded value
+	 */
+	static long decodeZigZag(long value) {
+		return (value >>> 1) ^ (value << 63 >> 63);
+	}
+}
@@ -3,7 +3,10 @@ package com.hedera.hashgraph.protoparse;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Objects;
@@ -23,14 +26,32 @@ import static com.hedera.hashgraph.protoparse.ProtoConstants.*;
 public class ProtoOutputStream {
     private static final String FIELD_ASSERT_MSG = "Field %s doesn't belong to the expected schema";
 
+    private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
     private final OutputStream out;
     private final Predicate<FieldDefinition> fieldChecker;
+    /**
+     * Varints and fixed width values are encoded into this array, and then written with a single call
+     */
+    private final byte[] scratch = new byte[MAX_VARINT_SIZE];
 
     public ProtoOutputStream(Predicate<FieldDefinition> fieldChecker, OutputStream out) {
         this.out = Objects.requireNonNull(out);
         this.fieldChecker = Objects.requireNonNull(fieldChecker);
     }
 
+    /**
+     * Create a stream that writes straight into the given buffer (which may be a direct, off-heap buffer),
+     * starting at its position. See {@link ByteBufferOutputStream}.
+     *
+     * @param fieldChecker Checks that written fields belong to the schema
+     * @param out The buffer to write into. Must not be read-only.
+     */
+    public ProtoOutputStream(Predicate<FieldDefinition> fieldChecker, ByteBuffer out) {
+        this(fieldChecker, new ByteBufferOutputStream(out));
+    }
+
     // === OPTIONAL VERSIONS OF WRITE METHODS
     public void writeOptionalInteger(FieldDefinition field, Optional<Integer> value) throws IOException {
         if (value != null && value.isPresent()) {
@@ -239,22 +260,16 @@ public class ProtoOutputStream {
         }
     }
 
+    // The bytes in protobuf are in little-endian order, so fixed width values are put into the scratch
+    // array with a single little-endian store and then written all at once.
     private void writeIntToStream(int value) throws IOException {
-        out.write(value & 0x000000FF);
-        out.write((value & 0x0000FF00) >> 8);
-        out.write((value & 0x00FF0000) >> 16);
-        out.write((value & 0xFF000000) >> 24);
+        INT_LE.set(scratch, 0, value);
+        out.write(scratch, 0, Integer.BYTES);
     }
 
     private void writeLongToStream(long value) throws IOException {
-        out.write((int) (value & 0x00000000000000FF));
-        out.write((int) ((value & 0x000000000000FF00) >> 8));
-        out.write((int) ((value & 0x0000000000FF0000) >> 16));
-        out.write((int) ((value & 0x00000000FF000000) >> 24));
-        out.write((int) ((value & 0x000000FF00000000L) >> 32));
-        out.write((int) ((value & 0x0000FF0000000000L) >> 40));
-        out.write((int) ((value & 0x00FF000000000000L) >> 48));
-        out.write((int) ((value & 0xFF00000000000000L) >> 56));
+        LONG_LE.set(scratch, 0, value);
+        out.write(scratch, 0, Long.BYTES);
     }
 
     public void writeFloat(FieldDefinition field, float value) throws IOException {
@@ -592,12 +607,14 @@ public class ProtoOutputStream {
         // 7 bits of the value and combine that with a byte with the leading
         // bit set. Then we shift the value 7 bits to the right.
         for (int i = 0; i < numBytesToSend - 1; i++) {
-            stream.write((int) (0x80 | (0x7F & value)));
+            scratch[i] = (byte) (0x80 | (0x7F & value));
             value >>>= 7;
         }
 
         // And now we can send whatever is left as the last byte, knowing that
-        // the high order bit will never be set.
-        stream.write((int) value);
+        // the high order bit will never be set. The bytes are collected in the scratch
+        // array so that they can be written all at once.
+        scratch[numBytesToSend - 1] = (byte) value;
+        stream.write(scratch, 0, numBytesToSend);
     }
 }
@@ -4,8 +4,18 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 import static com.hedera.hashgraph.protoparse.ProtoConstants.*;
 
@@ -40,31 +50,350 @@ import static com.hedera.hashgraph.protoparse.ProtoConstants.*;
  * be parsed.
  *
  * <p>To support this efficiently, subclasses of the ProtoParser have three tasks.
- * First, they must override the {@link #getFieldDefinition(int)} method. Given a field
- * number, the subclass must return a {@link FieldDefinition}, which among other things,
- * includes the type. Second, for each type supported in the specific schema, the subclass
- * must implement the corresponding method defined in the {@link ParseListener} interface.
+ * First, they must tell the parser about the fields of the message, either by passing a
+ * {@link CompiledSchema} to the constructor (the fastest way), or by overriding the
+ * {@link #getFieldDefinition(int)} method. Given a field number, the subclass must return a
+ * {@link FieldDefinition}, which among other things, includes the type. Second, for each type
+ * supported in the specific schema, the subclass must implement the corresponding method defined
+ * in the {@link ParseListener} interface.
  * Third, for each parsed field, the subclass must hold onto the parsed data until
  * parsing is complete and the final object representing the protobuf can be created
  * (if using immutable types).
  */
 public abstract class ProtoParser implements ParseListener {
 	/**
-	 * The protobuf data as a stream of bytes. This may be supplied directly by the caller
-	 * seeking to parse protobuf, or a reusable InputStream adapter provided by this class
-	 * can be used to wrap a ByteBuffer or byte[] passed to the class to be parsed.
- 	 */
-	private final ProtoStream protoStream = new ProtoStream();
+	 * The most elements to make room for up front in the list of a packed repeated field, when the exact
+	 * number is not known
+	 */
+	private static final int MAX_GUESSED_LIST_CAPACITY = 1024;
+	/**
+	 * The most elements the reusable list of a repeated field keeps room for between messages
+	 */
+	private static final int MAX_RETAINED_LIST_CAPACITY = 1 << 16;
+
+	/**
+	 * Decode engine used when the protobuf data is supplied directly by the caller as an InputStream.
+	 * It reads the stream in bulk into a reusable chunk buffer.
+	 */
+	private final StreamProtoInput streamInput;
+
+	/**
+	 * Decode engine used when the protobuf data is a byte[] or a heap ByteBuffer. It works directly on
+	 * the array, which is several times faster than going through an InputStream a byte at a time.
+	 */
+	private final ArrayProtoInput arrayInput = new ArrayProtoInput();
+
+	/**
+	 * Decode engine used when the protobuf data is a ByteBuffer without an accessible backing array (direct
+	 * or read-only buffers). It is created the first time it is needed.
+	 */
+	private BufferProtoInput bufferInput;
 
-	private final ByteArrayInputStreamAdapter byteArrayInputStreamAdapter = new ByteArrayInputStreamAdapter();
-	private final ByteBufferInputStreamAdapter byteBufferInputStreamAdapter = new ByteBufferInputStreamAdapter();
+	/**
+	 * Decode engine used when the protobuf data is a region of a file, which it memory maps. It is created
+	 * the first time it is needed.
+	 */
+	private MappedProtoInput mappedInput;
+
+	/**
+	 * The decode engine for the current parse. One of {@link #streamInput}, {@link #arrayInput},
+	 * {@link #bufferInput} or {@link #mappedInput}.
+	 */
+	private ProtoInput input;
+
+	/**
+	 * Whether bytes fields are handed out as slices of the input rather than copies
+	 */
+	private boolean zeroCopyBytes;
+
+	/**
+	 * Whether string fields are handed out undecoded, to {@link #utf8Field(int, Utf8View)}
+	 */
+	private boolean lazyStrings;
+
+	/**
+	 * Whether nested messages are handed out as slices, to {@link #objectField(int, ByteBuffer)}
+	 */
+	private boolean messageSlices;
+
+	/**
+	 * The repeated message fields whose elements are parsed in parallel, by field number, or null if there
+	 * are none (see {@link #setParallelMessages(int, BatchParser, Executor)})
+	 */
+	private Map<Integer, ParallelMessages> parallelMessages;
+
+	/**
+	 * The fields parsed, or null to parse them all
+	 */
+	private FieldMask fieldMask;
+
+	/**
+	 * The cache that string values are looked up in before decoding them, or null
+	 */
+	private StringCache stringCache;
+
+	/**
+	 * The limits on the input, which apply to the messages nested in it too
+	 */
+	private ParserLimits limits = ParserLimits.UNLIMITED;
+
+	/**
+	 * Where the parser is up to in a message being fed to it a chunk at a time. It is created the first time
+	 * it is needed.
+	 */
+	private IncrementalState incremental;
+
+	/**
+	 * The fields of the message, or null if the subclass looks them up in {@link #getFieldDefinition(int)}
+	 */
+	private final CompiledSchema schema;
+
+	/**
+	 * The repeated scalar fields whose elements are being collected (and the repeated message fields whose
+	 * elements are parsed in parallel), for the message being parsed and the messages it is nested in. The
+	 * slots, and the lists in them, are reused from one message to the next.
+	 */
+	private RepeatedField[] repeatedFields = new RepeatedField[4];
+
+	/**
+	 * The number of slots of {@link #repeatedFields} in use
+	 */
+	private int repeatedCount;
+
+	/**
+	 * The first slot of {@link #repeatedFields} used by the message being parsed
+	 */
+	private int firstRepeated;
+
+	/**
+	 * The number of tags that matched the field expected next, since the counters were last reset
+	 */
+	private long predictionHits;
+
+	/**
+	 * The number of tags that had to be decoded and looked up, since the counters were last reset
+	 */
+	private long predictionMisses;
 
 	/**
 	 * Instances of this class may only be instantiated by subclasses. It is recommended to cache
 	 * and reuse these parsers when object allocation is a concern.
 	 */
 	protected ProtoParser() {
+		this(StreamProtoInput.DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Instances of this class may only be instantiated by subclasses. It is recommended to cache
+	 * and reuse these parsers when object allocation is a concern.
+	 *
+	 * @param streamBufferSize The maximum size of the buffer used to read from an InputStream in bulk.
+	 *                         The buffer is never bigger than the message being parsed, if its length
+	 *                         is known. Must be at least 16.
+	 * @throws IllegalArgumentException If the buffer size is less than 16
+	 */
+	protected ProtoParser(int streamBufferSize) {
+		this.streamInput = new StreamProtoInput(streamBufferSize);
+		this.schema = null;
+	}
+
+	/**
+	 * Instances of this class may only be instantiated by subclasses. The fields of the message are looked
+	 * up in the given compiled schema, rather than by calling {@link #getFieldDefinition(int)} for each one.
+	 *
+	 * @param schema The fields of the message. Must not be null.
+	 */
+	protected ProtoParser(CompiledSchema schema) {
+		this(schema, StreamProtoInput.DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Instances of this class may only be instantiated by subclasses. The fields of the message are looked
+	 * up in the given compiled schema, rather than by calling {@link #getFieldDefinition(int)} for each one.
+	 *
+	 * @param schema The fields of the message. Must not be null.
+	 * @param streamBufferSize The maximum size of the buffer used to read from an InputStream in bulk.
+	 *                         Must be at least 16.
+	 * @throws IllegalArgumentException If the buffer size is less than 16
+	 */
+	protected ProtoParser(CompiledSchema schema, int streamBufferSize) {
+		this.streamInput = new StreamProtoInput(streamBufferSize);
+		this.schema = Objects.requireNonNull(schema);
+	}
+
+	/**
+	 * Sets whether the values given to {@link #bytesField(int, ByteBuffer)} are read-only slices of the
+	 * input, rather than copies. This avoids allocating and copying a new array for every bytes field,
+	 * which for messages full of hashes, signatures and embedded payloads is most of the garbage created
+	 * by parsing. It is off by default.
+	 *
+	 * <p>Only inputs that hold all of their bytes can be sliced: byte[], ByteBuffer and file inputs. Bytes
+	 * fields read from an InputStream (including the stream of a nested message) are always copied.
+	 *
+	 * <p><b>A slice is only valid for as long as the input is.</b> It shares the memory of the byte[] or
+	 * ByteBuffer given to {@code start}, so if the caller later reuses or modifies that memory, for example
+	 * to parse the next message into the same array, the contents of the slice change too. A subclass that
+	 * needs a value to outlive the input must copy it.
+	 *
+	 * @param zeroCopyBytes true to hand out slices of the input, false to hand out copies
+	 */
+	protected final void setZeroCopyBytes(boolean zeroCopyBytes) {
+		this.zeroCopyBytes = zeroCopyBytes;
+	}
+
+	/**
+	 * Sets whether string fields are given to {@link #utf8Field(int, Utf8View)} as views over their UTF-8
+	 * bytes, rather than being decoded and given to {@link #stringField(int, String)}. A view is only decoded
+	 * if and when the subclass asks for its String, so string fields that are never read cost neither
+	 * decoding nor allocating a String. It is off by default.
+	 *
+	 * <p>Just like the slices of {@link #setZeroCopyBytes(boolean)}, when parsing a byte[], ByteBuffer or
+	 * file, a view is over the input itself and <b>is only valid for as long as the input is</b>.
+	 *
+	 * @param lazyStrings true to hand out undecoded views, false to hand out decoded Strings
+	 */
+	protected final void setLazyStrings(boolean lazyStrings) {
+		this.lazyStrings = lazyStrings;
+	}
+
+	/**
+	 * Sets whether nested message fields are given to {@link #objectField(int, ByteBuffer)} as read-only
+	 * slices holding the encoded message, rather than being given to {@link #objectField(int, InputStream)}
+	 * to be parsed right away. Whatever the subclass does with a slice (parses it, keeps it to parse later,
+	 * hands it to another thread, or ignores it), the parser moves past the message without reading it.
+	 * It is off by default.
+	 *
+	 * <p>Just like the slices of {@link #setZeroCopyBytes(boolean)}, when parsing a byte[], ByteBuffer or
+	 * file, a slice is of the input itself and <b>is only valid for as long as the input is</b>. When
+	 * parsing a stream, it is a copy.
+	 *
+	 * @param messageSlices true to hand out nested messages as slices, false to hand them out as streams
+	 */
+	protected final void setMessageSlices(boolean messageSlices) {
+		this.messageSlices = messageSlices;
+	}
+
+	/**
+	 * Sets a repeated message field to have its elements parsed in parallel, on the common fork-join pool.
+	 * See {@link #setParallelMessages(int, BatchParser, Executor)}.
+	 */
+	protected final void setParallelMessages(int fieldNum, BatchParser<?, ?> batchParser) {
+		setParallelMessages(fieldNum, batchParser, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Sets a repeated message field to have its elements parsed in parallel, rather than one at a time as
+	 * they are reached. As the message is parsed, the parser only notes where each element of the field is,
+	 * and moves past it without reading it. At the end of the message, the elements are parsed all at once
+	 * by the batch parser, on the threads of the executor, and given to {@link #objectList(int, List)} in the
+	 * order they appeared. This pays off for fields with many elements, such as the transactions of a block.
+	 * Any number of fields can be set, and the field may be in the outermost message or in a message nested
+	 * in it that this parser parses.
+	 *
+	 * @param fieldNum The number of the field
+	 * @param batchParser The batch parser of the elements, or null to go back to parsing them one at a time
+	 * @param executor The executor to parse the elements on. Must not be null, unless the batch parser is.
+	 * @throws IllegalArgumentException If the field is known not to be a repeated message field
+	 */
+	protected final void setParallelMessages(int fieldNum, BatchParser<?, ?> batchParser, Executor executor) {
+		if (schema != null) {
+			final FieldDefinition f = schema.getField(fieldNum);
+			if (f == null || f.type() != FieldType.MESSAGE || !f.repeated()) {
+				throw new IllegalArgumentException("Field " + fieldNum + " is not a repeated message field");
+			}
+		}
+
+		if (batchParser == null) {
+			if (parallelMessages != null) {
+				parallelMessages.remove(fieldNum);
+				if (parallelMessages.isEmpty()) {
+					parallelMessages = null;
+				}
+			}
+			return;
+		}
+		if (parallelMessages == null) {
+			parallelMessages = new HashMap<>();
+		}
+		parallelMessages.put(fieldNum, new ParallelMessages(batchParser, Objects.requireNonNull(executor)));
+	}
+
+	/**
+	 * Sets the fields of the message that are parsed. The callbacks are only called for the fields the mask
+	 * selects, and every other field is skipped without being decoded, however deeply it is nested. This
+	 * applies to every parse from then on, so a mask for just one parse must be set before it, and cleared
+	 * after it. It is null, selecting all fields, by default.
+	 *
+	 * <p>Unselected fields are still checked to be well formed as far as is needed to skip them, and
+	 * fields that are not in the schema still count towards {@link ParserLimits#maxUnknownFields()}.
+	 *
+	 * @param fieldMask The mask, or null to parse all fields
+	 */
+	protected final void setFieldMask(FieldMask fieldMask) {
+		this.fieldMask = fieldMask;
+	}
+
+	/**
+	 * Sets the limits on the input this parser accepts, to bound the memory and time a parse can take on
+	 * input from an untrusted source. Input that breaks a limit is rejected with a
+	 * {@link MalformedProtobufException}. The limits also apply to any message nested in the input, even if
+	 * it is parsed by another parser. By default there are no limits ({@link ParserLimits#UNLIMITED}).
+	 *
+	 * @param limits The limits. Must not be null.
+	 */
+	protected final void setLimits(ParserLimits limits) {
+		this.limits = Objects.requireNonNull(limits);
+	}
+
+	/**
+	 * Sets the cache that string values are looked up in before they are decoded. When the same strings
+	 * show up over and over, this saves decoding them, and all the parsed values share the same String
+	 * instances. A cache is threadsafe, so it may be shared by many parsers. There is no cache by default.
+	 *
+	 * <p>The cache is not used for strings given to {@link #utf8Field(int, Utf8View)} in lazy string mode.
+	 *
+	 * @param stringCache The cache, or null to always decode strings
+	 */
+	protected final void setStringCache(StringCache stringCache) {
+		this.stringCache = stringCache;
+	}
 
+	/**
+	 * Gets the number of fields whose tag matched the field the parser expected next, so that it did not have
+	 * to be decoded or looked up. Only parsers constructed with a {@link CompiledSchema} make predictions.
+	 *
+	 * @return the number of correct predictions since the counters were last reset
+	 */
+	public final long predictionHits() {
+		return predictionHits;
+	}
+
+	/**
+	 * Gets the number of fields whose tag did not match the field the parser expected next (or for which
+	 * there was no prediction), so that it had to be decoded and looked up in the {@link CompiledSchema}.
+	 *
+	 * @return the number of wrong predictions since the counters were last reset
+	 */
+	public final long predictionMisses() {
+		return predictionMisses;
+	}
+
+	/**
+	 * Gets the fraction of fields whose tag matched the field the parser expected next.
+	 *
+	 * @return the hit rate, from 0 to 1, or 0 if there have been no predictions
+	 */
+	public final double predictionHitRate() {
+		final long total = predictionHits + predictionMisses;
+		return total == 0 ? 0 : (double) predictionHits / total;
+	}
+
+	/**
+	 * Resets the prediction hit and miss counters to zero.
+	 */
+	public final void resetPredictionCounters() {
+		predictionHits = 0;
+		predictionMisses = 0;
 	}
 
 	/**
@@ -80,10 +409,22 @@ public abstract class ProtoParser implements ParseListener {
 			return;
 		}
 
-		// Reuse the existing input stream that wraps a byte buffer and delegate to the other start method.
+		// Heap buffers are decoded directly from their backing array. Anything else (direct or read-only
+		// buffers) is decoded directly from the buffer.
 		try {
-			byteBufferInputStreamAdapter.reset(protobuf);
-			this.start(byteBufferInputStreamAdapter);
+			if (protobuf.hasArray()) {
+				final int offset = protobuf.arrayOffset();
+				arrayInput.reset(protobuf.array(), offset + protobuf.position(), offset + protobuf.limit());
+				arrayInput.begin(limits, protobuf.remaining());
+				parse(arrayInput);
+			} else {
+				if (bufferInput == null) {
+					bufferInput = new BufferProtoInput();
+				}
+				bufferInput.reset(protobuf, protobuf.position(), protobuf.limit());
+				bufferInput.begin(limits, protobuf.remaining());
+				parse(bufferInput);
+			}
 		} catch (IOException ignored) {
 			throw new UncheckedIOException(ignored);
 //			assert false : "It should never be possible for IOException to be thrown here.";
@@ -102,26 +443,97 @@ public abstract class ProtoParser implements ParseListener {
 			return;
 		}
 
-		// Reuse the existing input stream that wraps a byte array and delegate to the other start method.
+		// Decode directly from the array
 		try {
-			byteArrayInputStreamAdapter.reset(protobuf);
-			this.start(byteArrayInputStreamAdapter);
+			arrayInput.reset(protobuf, 0, protobuf.length);
+			arrayInput.begin(limits, protobuf.length);
+			parse(arrayInput);
 		} catch (IOException ignored) {
 			throw new UncheckedIOException(ignored);
 //			assert false : "It should never be possible for IOException to be thrown here.";
 		}
 	}
 
+	/**
+	 * Starts parsing a protobuf message of the given length, located at the given offset in a file. The
+	 * region of the file is memory mapped and decoded straight out of the OS page cache, so none of it is
+	 * copied onto the heap (except for the values of string and bytes fields). Regions bigger than 2GB, which
+	 * is the most that can be mapped at once, are mapped one window at a time as parsing moves along. The
+	 * position of the channel is not used or modified.
+	 *
+	 * @param channel The file to read from. Must be open for reading. If null, the method returns immediately.
+	 * @param offset The position in the file of the first byte of the message. Must be non-negative.
+	 * @param length The number of bytes in the message. Must be non-negative.
+	 * @throws IllegalArgumentException If the offset or length is negative, or the region extends past the
+	 * 									 end of the file
+	 * @throws IOException If the file cannot be mapped
+	 * @throws MalformedProtobufException If the protobuf bytes are non-empty and invalid
+	 */
+	protected final void start(FileChannel channel, long offset, long length)
+			throws IOException, MalformedProtobufException {
+		if (offset < 0 || length < 0) {
+			throw new IllegalArgumentException("The offset and length must be non-negative");
+		}
+
+		// If protobuf channel is null, then return null (valid protobuf encoding can be 0+ tag/value pairs)
+		if (channel == null) {
+			return;
+		}
+
+		if (length > channel.size() - offset) {
+			throw new IllegalArgumentException("The region at offset " + offset + " of length " + length +
+					" extends past the end of the file, which is " + channel.size() + " bytes long");
+		}
+
+		if (mappedInput == null) {
+			mappedInput = new MappedProtoInput();
+		}
+		mappedInput.reset(channel, offset, length);
+		mappedInput.begin(limits, length);
+		parse(mappedInput);
+	}
+
+	/**
+	 * Starts parsing the protobuf message that makes up the whole of the given file. The file is memory
+	 * mapped, just like {@link #start(FileChannel, long, long)}.
+	 *
+	 * @param file The file to read from. If null, the method returns immediately.
+	 * @throws IOException If the file cannot be opened or mapped
+	 * @throws MalformedProtobufException If the protobuf bytes are non-empty and invalid
+	 */
+	protected final void start(Path file) throws IOException, MalformedProtobufException {
+		// If protobuf file is null, then return null (valid protobuf encoding can be 0+ tag/value pairs)
+		if (file == null) {
+			return;
+		}
+
+		// The mapping stays valid after the channel is closed, but everything is parsed by then anyway
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			start(channel, 0, channel.size());
+		}
+	}
+
 	/**
 	 * Gets a {@link FieldDefinition} corresponding to the given field number. It may be that this protobuf
 	 * parser is parsing from a newer version of the schema than this parser knows about (for example, maybe
 	 * the schema known by this parser is the 10th revision but the bytes are from a newer 11th revision).
 	 * In that case, {@code null} will be returned.
 	 *
+	 * <p>A subclass constructed with a {@link CompiledSchema} does not need to override this method, as the
+	 * parser looks fields up in the schema instead. A subclass constructed without one must override it.
+	 *
 	 * @param fieldNumber The field number. Will always be positive.
 	 * @return The corresponding {@link FieldDefinition}, or null if the field is unknown.
+	 * @throws IllegalStateException if this parser has no schema and the subclass does not override this method
 	 */
-	protected abstract FieldDefinition getFieldDefinition(int fieldNumber);
+	protected FieldDefinition getFieldDefinition(int fieldNumber) {
+		if (schema == null) {
+			// Otherwise every field would silently be dropped as unknown
+			throw new IllegalStateException(getClass().getName() + " was constructed without a CompiledSchema, " +
+					"so it must override getFieldDefinition");
+		}
+		return schema.getField(fieldNumber);
+	}
 
 	/**
 	 * Starts parsing the given protobuf input stream. For each field found in the stream, the
@@ -129,6 +541,9 @@ public abstract class ProtoParser implements ParseListener {
 	 * the field. For each parsed field, a corresponding callback from {@link ParseListener}
 	 * will be called.
 	 *
+	 * <p>The message is everything up to the end of the stream. The stream is read in bulk, so there is
+	 * no need to wrap it in a {@link java.io.BufferedInputStream}.
+	 *
 	 * @param protobuf The stream. If null, the method returns immediately. If there are no
 	 *                 initial bytes, then the method also returns immediately.
 	 * @throws IOException If thrown by the InputStream
@@ -141,14 +556,277 @@ public abstract class ProtoParser implements ParseListener {
 			return;
 		}
 
+		// The stream of a nested message is the input of the enclosing message, limited to the nested
+		// message, which is parsed in place
+		if (protobuf instanceof ProtoInput nested) {
+			final StringCache enclosingCache = nested.stringCache;
+			parse(nested);
+			nested.stringCache = enclosingCache;
+			return;
+		}
+
 		// Reset internal state
-		protoStream.reset(protobuf);
+		streamInput.reset(protobuf, StreamProtoInput.UNBOUNDED);
+		streamInput.begin(limits, -1);
+		parse(streamInput);
+		// The parse stops at the maximum message size, so if there is more the message is too big
+		if (streamInput.bytesRead() >= streamInput.messageEnd && !streamInput.atEnd()) {
+			throw new MalformedProtobufException("Message exceeds the maximum message size of " +
+					limits.maxMessageSize());
+		}
+	}
+
+	/**
+	 * Starts parsing a protobuf message of the given length from the given input stream. This is just like
+	 * {@link #start(InputStream)}, except that exactly {@code length} bytes are consumed from the stream,
+	 * even though it is read in bulk. When this method returns, the stream is positioned right after the
+	 * message, so the caller can carry on reading whatever follows it.
+	 *
+	 * @param protobuf The stream. If null, the method returns immediately.
+	 * @param length The number of bytes in the message. Must be non-negative.
+	 * @throws IOException If thrown by the InputStream
+	 * @throws MalformedProtobufException If the stream ends before {@code length} bytes were read, or
+	 * 									  has malformed protobuf bytes (i.e. isn't valid protobuf).
+	 */
+	protected final void start(InputStream protobuf, long length) throws IOException, MalformedProtobufException {
+		if (length < 0) {
+			throw new IllegalArgumentException("The length must be non-negative");
+		}
+
+		// If protobuf stream is null, then return null (valid protobuf encoding can be 0+ tag/value pairs)
+		if (protobuf == null) {
+			return;
+		}
+
+		streamInput.reset(protobuf, length);
+		streamInput.begin(limits, length);
+		parse(streamInput);
+		if (streamInput.bytesRead() < length) {
+			throw new MalformedProtobufException("Truncated protobuf, expected " + length +
+					" bytes but the stream ended after " + streamInput.bytesRead());
+		}
+	}
+
+	/**
+	 * Starts parsing a protobuf message incrementally. Rather than being read from an input, the bytes of the
+	 * message are pushed to the parser a chunk at a time, as they arrive, with {@link #feed(ByteBuffer)}. The
+	 * parser never waits for bytes, so one thread can parse messages from any number of non-blocking
+	 * channels, with a parser for each.
+	 *
+	 * <p>If the length of the message is known, the parse is done once that many bytes have been fed.
+	 * Otherwise, the parser has to be told where the message ends, with {@link #finishIncremental()}.
+	 *
+	 * @param length The number of bytes in the message, or -1 if it is not known
+	 * @throws MalformedProtobufException If the length exceeds the maximum message size
+	 */
+	protected final void startIncremental(long length) throws MalformedProtobufException {
+		if (length < -1) {
+			throw new IllegalArgumentException("The length must be non-negative, or -1 if not known");
+		}
+		if (length > limits.maxMessageSize()) {
+			throw new MalformedProtobufException("Message of " + length +
+					" bytes exceeds the maximum message size of " + limits.maxMessageSize());
+		}
+		if (incremental == null) {
+			incremental = new IncrementalState();
+		}
+		// Anything left of an earlier message that was abandoned part way through is dropped
+		abandonRepeatedFields();
+		incremental.reset(length, limits.maxMessageSize());
+	}
+
+	/**
+	 * Feeds the next chunk of the message being parsed incrementally (see {@link #startIncremental(long)}).
+	 * Each field is passed to the {@link ParseListener} callbacks as soon as all of it has arrived, straight
+	 * from the chunk if it is all in the chunk, so most fields are never copied. A field that runs from one
+	 * chunk into the next (which may be a nested message) is gathered until it has all arrived. The chunk is
+	 * consumed up to the end of the message, and its position is moved past the bytes consumed.
+	 *
+	 * <p>Just as when parsing a ByteBuffer, the slices handed out for {@link #setZeroCopyBytes(boolean)},
+	 * {@link #setLazyStrings(boolean)} and {@link #setMessageSlices(boolean)} may be of the chunk, and <b>are
+	 * only valid for as long as the chunk is</b>.
+	 *
+	 * @param chunk The next bytes of the message. Must not be null.
+	 * @return {@link FeedResult#DONE} if the whole message has been parsed, and otherwise
+	 * 			{@link FeedResult#NEED_MORE}
+	 * @throws MalformedProtobufException If the bytes are malformed. The rest of the message can't be parsed.
+	 * @throws IllegalStateException If no message is being parsed incrementally
+	 */
+	protected final FeedResult feed(ByteBuffer chunk) throws MalformedProtobufException {
+		Objects.requireNonNull(chunk);
+		final IncrementalState state = incremental;
+		if (state == null || !state.active) {
+			throw new IllegalStateException("No message is being parsed incrementally");
+		}
+
+		boolean done = false;
+		try {
+			int pos = chunk.position();
+			// Clamped before adding, since with no known length and no size limit there is no end to speak of
+			final int limit = pos + (int) Math.min(state.remaining(), chunk.limit() - pos);
+			while (pos < limit) {
+				if (!state.gathering()) {
+					// Parse all the whole fields at the front of the chunk straight from it
+					final int end = IncrementalState.wholeFieldsEnd(chunk, pos, limit, limits.maxFieldLength());
+					if (end > pos) {
+						parseChunk(state, chunk, pos, end);
+						state.consumed += end - pos;
+						pos = end;
+						continue;
+					}
+				}
+				// The next field runs past the end of the chunk, so it has to be gathered
+				pos = state.gather(chunk, pos, limit, limits.maxFieldLength());
+				if (state.fieldComplete()) {
+					final byte[] field = state.takeField();
+					parseChunk(state, ByteBuffer.wrap(field), 0, field.length);
+				}
+			}
+			chunk.position(pos);
+
+			if (state.lengthKnown() && state.remaining() == 0) {
+				endIncremental(state);
+				done = true;
+				return FeedResult.DONE;
+			}
+			if (!state.lengthKnown() && pos < chunk.limit()) {
+				throw new MalformedProtobufException("Message exceeds the maximum message size of " +
+						limits.maxMessageSize());
+			}
+			done = true;
+			return FeedResult.NEED_MORE;
+		} finally {
+			if (!done) {
+				state.active = false;
+				abandonRepeatedFields();
+			}
+		}
+	}
+
+	/**
+	 * Ends the message being parsed incrementally, which was started without a length.
+	 *
+	 * @throws MalformedProtobufException If the message ends part way through a field, or if it was started
+	 * 									  with a length, and fewer bytes than that were fed
+	 * @throws IllegalStateException If no message is being parsed incrementally
+	 */
+	protected final void finishIncremental() throws MalformedProtobufException {
+		final IncrementalState state = incremental;
+		if (state == null || !state.active) {
+			throw new IllegalStateException("No message is being parsed incrementally");
+		}
+
+		boolean done = false;
+		try {
+			if (state.lengthKnown()) {
+				throw new MalformedProtobufException("Truncated protobuf, the message ended " +
+						state.remaining() + " bytes short of its length");
+			}
+			endIncremental(state);
+			done = true;
+		} finally {
+			if (!done) {
+				state.active = false;
+				abandonRepeatedFields();
+			}
+		}
+	}
+
+	private void endIncremental(IncrementalState state) throws MalformedProtobufException {
+		if (state.gathering()) {
+			throw new MalformedProtobufException("Truncated protobuf, the message ended part way through a field");
+		}
+		state.active = false;
+		deliverRepeatedFields();
+	}
+
+	/**
+	 * Parses the whole fields in the given part of a chunk of a message being parsed incrementally.
+	 */
+	private void parseChunk(IncrementalState state, ByteBuffer chunk, int from, int to)
+			throws MalformedProtobufException {
+		try {
+			final ProtoInput in;
+			if (chunk.hasArray()) {
+				final int offset = chunk.arrayOffset();
+				arrayInput.reset(chunk.array(), offset + from, offset + to);
+				in = arrayInput;
+			} else {
+				if (bufferInput == null) {
+					bufferInput = new BufferProtoInput();
+				}
+				bufferInput.reset(chunk, from, to);
+				in = bufferInput;
+			}
+			in.begin(limits, to - from);
+			// The unknown fields of the whole message count, not just those of this part
+			in.unknownFields = state.unknownFields;
+			in.stringCache = stringCache;
+			in.fieldMask = fieldMask;
+			this.input = in;
+			parseFields(in);
+			state.unknownFields = in.unknownFields;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Parses all the bytes of the given input, invoking the {@link ParseListener} callbacks for each field.
+	 *
+	 * @param in The decode engine to read from, already reset to the bytes to be parsed
+	 * @throws IOException If thrown by the underlying input
+	 * @throws MalformedProtobufException If the input has malformed protobuf bytes
+	 */
+	private void parse(ProtoInput in) throws IOException, MalformedProtobufException {
+		this.input = in;
+		in.stringCache = stringCache;
+		// A nested message parsed in place has the part of the mask of the enclosing message for it
+		if (in.depth == 0) {
+			in.fieldMask = fieldMask;
+		}
+		// This message may be nested in another one being parsed by this parser, whose repeated fields
+		// are still being collected
+		final int outerFirstRepeated = firstRepeated;
+		firstRepeated = repeatedCount;
+		try {
+			parseFields(in);
+			deliverRepeatedFields();
+		} finally {
+			// If the parse failed, the fields that were not delivered are dropped
+			abandonRepeatedFields();
+			firstRepeated = outerFirstRepeated;
+		}
+	}
+
+	/**
+	 * Parses each field of the input in turn, invoking the {@link ParseListener} callbacks for all but the
+	 * repeated scalar fields, which are collected to be delivered at the end.
+	 */
+	private void parseFields(ProtoInput in) throws IOException, MalformedProtobufException {
+		final CompiledSchema schema = this.schema;
+		final FieldMask mask = in.fieldMask;
+		// The field expected next, if known (see CompiledSchema)
+		CompiledSchema.Entry expected = schema == null ? null : schema.expectedFirst();
+
+		// Continue to parse bytes out of the input until we get to the end.
+		while (!in.eof()) {
+			// If the bytes at the cursor are the tag of the field that was expected, there is no need to
+			// decode the tag, look the field up or validate it.
+			if (expected != null && in.matchTag(expected)) {
+				predictionHits++;
+				if (mask == null || mask.includes(expected.definition.number())) {
+					expected.decoder.decode(this, expected.definition.number(), expected.definition);
+				} else {
+					in.skipField(expected.wireType);
+				}
+				expected = expected.expectedNext;
+				continue;
+			}
 
-		// Continue to parse bytes out of the input stream until we get to the end.
-		while (!protoStream.eof()) {
 			// Read the "tag" byte which gives us the field number for the next field to read
 			// and the wire type (way it is encoded on the wire).
-			final int tag = (int) protoStream.readVarint("TAG", false);
+			final int tag = (int) in.readVarint("TAG", false);
 			// If the tag is -1 then we never read it from the InputStream because it was empty.
 			// It is OK for the input stream to be empty, it just means we were handed an empty
 			// InputStream to start with (or byte[] or byte buffer) and we can just return.
@@ -172,544 +850,664 @@ public abstract class ProtoParser implements ParseListener {
 				throw new MalformedProtobufException("Cannot understand wire_type of " + wireType);
 			}
 
-			// Ask the subclass to inform us what field this represents.
-			final var f = getFieldDefinition(field);
+			// Find out what field this is, and how to decode it. With a compiled schema, this is a single
+			// lookup of the whole tag, which also checks the wire type. Otherwise, ask the subclass.
+			final FieldDefinition f;
+			final FieldDecoder decoder;
+			if (schema != null) {
+				predictionMisses++;
+				final var entry = schema.entryForTag(tag);
+				if (entry != null) {
+					f = entry.definition;
+					decoder = entry.decoder;
+					expected = entry.expectedNext;
+				} else {
+					// Either an unknown field, or a known one with the wrong wire type
+					f = schema.getField(field);
+					decoder = null;
+					expected = null;
+				}
+			} else {
+				f = getFieldDefinition(field);
+				decoder = f == null ? null : decoderFor(f, wireType);
+			}
 
 			// It may be that the parser subclass doesn't know about this field. In that case, we
 			// just need to read off the bytes for this field to skip it and move on to the next one.
 			if (f == null) {
-				protoStream.skipField(wireType);
-			} else {
-				// special handling for value types that are wrapped in a object
-				if (f.optional()) {
-					// Read the message size, it is not needed
-					final int valueTypeMessageSize = (int) protoStream.readVarint("ValueTypeMessageSize", false);
-					if (valueTypeMessageSize > 0) {
-						// TODO could validate this size against bytes read or expected filed type
-						// read inner tag
-						final int tag2 = (int) protoStream.readVarint("TAG", false);
-						// TODO check this type against expected field type
-					} else {
-						// means optional is default value
-						switch (f.type()) {
-							case INT_32, UINT_32, SINT_32, FIXED_32, SFIXED_32 -> intField(field, 0);
-							case INT_64, UINT_64, SINT_64, FIXED_64, SFIXED_64 -> longField(field, 0);
-							case BOOL -> booleanField(field, false);
-							case ENUM -> enumField(field,0); // TODO ? is this right
-							case FLOAT -> floatField(field, 0);
-							case DOUBLE -> doubleField(field, 0);
-							case STRING -> stringField(field, "");
-							case BYTES -> bytesField(field, ByteBuffer.wrap(new byte[0]).asReadOnlyBuffer()); // TODO ? is this right
-							default -> {
-								throw new MalformedProtobufException("Unexpected and unknown field type " + f.type() + " cannot be parsed");
-							}
-						}
-						continue;
-					}
+				if (++in.unknownFields > in.limits.maxUnknownFields()) {
+					throw new MalformedProtobufException("More than the maximum of " +
+							in.limits.maxUnknownFields() + " unknown fields");
 				}
+				in.skipField(wireType);
+			} else if (decoder == null) {
+				throw new MalformedProtobufException("Bad protobuf encoding, field " + f.name() +
+						" cannot be encoded with wire type " + wireType);
+			} else if (mask != null && !mask.includes(field)) {
+				in.skipField(wireType);
+			} else {
 				// Given the wire type and the field type, parse the field
 				// (which will also invoke the appropriate callback).
-				// TODO Validate that the wire type is of the expected kind
-				switch (f.type()) {
-					case INT_32 -> handleInt32(field, f);
-					case INT_64 -> handleInt64(field, f);
-					case UINT_32 -> handleUint32(field, f);
-					case UINT_64 -> handleUint64(field, f);
-					case BOOL -> handleBoolean(field, f);
-					case ENUM -> handleEnum(field, f);
-
-					case SINT_32 -> handleSint32(field, f);
-					case SINT_64 -> handleSint64(field, f);
-
-					case SFIXED_32 -> handleSfixed32(field, f);
-					case FIXED_32 -> handleFixed32(field, f);
-					case FLOAT -> handleFloat(field, f);
-					case SFIXED_64 -> handleSfixed64(field, f);
-					case FIXED_64 -> handleFixed64(field, f);
-					case DOUBLE -> handleDouble(field, f);
-					case MESSAGE -> handleMessage(field, f);
-					case STRING -> handleString(field, f);
-					case BYTES -> handleBytes(field, f);
-					default -> {
-						throw new MalformedProtobufException(
-								"Unexpected and unknown field type " + f.type() + " cannot be parsed");
-					}
-				}
+				decoder.decode(this, field, f);
 			}
 		}
 	}
 
-	private <T> List<T> readList(FieldDefinition f, ReadFunction<T> readFunction) throws IOException, MalformedProtobufException {
-		// The length is the number of bytes, NOT the number of elements that should be read.
-		final var length = (int) protoStream.readLengthFromStream();
-		final var list = new ArrayList<T>(length);
-		final var endOfList = protoStream.bytesRead() + length;
-		while (protoStream.bytesRead() < endOfList) {
-			list.add(readFunction.apply(f.name()));
-		}
+	/**
+	 * Decodes a field, and passes its value to the {@link ParseListener} callback for its type. There is one
+	 * decoder for each {@link FieldType}, plus one for optional (wrapped) values, resolved from the field
+	 * definition once, by {@link #decoderFor(FieldDefinition)}, so that a field is decoded with a single call.
+	 */
+	@FunctionalInterface
+	interface FieldDecoder {
+		void decode(ProtoParser parser, int field, FieldDefinition f) throws IOException, MalformedProtobufException;
+	}
 
-		if (protoStream.bytesRead() > endOfList) {
-			throw new MalformedProtobufException("List length was incorrect");
+	/**
+	 * The decoder of each field type, indexed by {@link FieldType#ordinal()}
+	 */
+	private static final FieldDecoder[] DECODERS = new FieldDecoder[FieldType.values().length];
+
+	static {
+		for (final FieldType type : FieldType.values()) {
+			DECODERS[type.ordinal()] = switch (type) {
+				case INT_32 -> ProtoParser::handleInt32;
+				case INT_64 -> ProtoParser::handleInt64;
+				case UINT_32 -> ProtoParser::handleUint32;
+				case UINT_64 -> ProtoParser::handleUint64;
+				case BOOL -> ProtoParser::handleBoolean;
+				case ENUM -> ProtoParser::handleEnum;
+				case SINT_32 -> ProtoParser::handleSint32;
+				case SINT_64 -> ProtoParser::handleSint64;
+				case SFIXED_32 -> ProtoParser::handleSfixed32;
+				case FIXED_32 -> ProtoParser::handleFixed32;
+				case FLOAT -> ProtoParser::handleFloat;
+				case SFIXED_64 -> ProtoParser::handleSfixed64;
+				case FIXED_64 -> ProtoParser::handleFixed64;
+				case DOUBLE -> ProtoParser::handleDouble;
+				case MESSAGE -> ProtoParser::handleMessage;
+				case STRING -> ProtoParser::handleString;
+				case BYTES -> ProtoParser::handleBytes;
+			};
 		}
-
-		return list;
 	}
 
-	private void handleInt32(int field, FieldDefinition f) throws MalformedProtobufException, IOException {
-		if (f.repeated()) {
-			intList(field, readList(f, protoStream::readInt32));
-		} else {
-			intField(field, protoStream.readInt32(f.name()));
+	private static final FieldDecoder OPTIONAL_DECODER = ProtoParser::handleOptional;
+
+	/**
+	 * The decoder of a single element of an unpacked repeated field of each scalar type, indexed by
+	 * {@link FieldType#ordinal()}. The element is added to the list of the field.
+	 */
+	private static final FieldDecoder[] UNPACKED_DECODERS = new FieldDecoder[FieldType.values().length];
+
+	static {
+		for (final FieldType type : FieldType.values()) {
+			UNPACKED_DECODERS[type.ordinal()] = switch (type) {
+				case INT_32 -> (p, field, f) -> p.repeatedField(field, f).ints().append(p.input.readInt32(f.name()));
+				case INT_64 -> (p, field, f) -> p.repeatedField(field, f).longs().append(p.input.readInt64(f.name()));
+				case UINT_32 -> (p, field, f) -> p.repeatedField(field, f).ints().append(p.input.readUint32(f.name()));
+				case UINT_64 -> (p, field, f) -> p.repeatedField(field, f).longs().append(p.input.readUint64(f.name()));
+				case BOOL -> (p, field, f) -> p.repeatedField(field, f).booleans().append(p.input.readBool(f.name()));
+				case ENUM -> (p, field, f) -> p.repeatedField(field, f).ints().append(p.input.readEnum(f.name()));
+				case SINT_32 -> (p, field, f) -> p.repeatedField(field, f).ints().append(p.input.readSignedInt32(f.name()));
+				case SINT_64 -> (p, field, f) -> p.repeatedField(field, f).longs().append(p.input.readSignedInt64(f.name()));
+				case SFIXED_32 -> (p, field, f) -> p.repeatedField(field, f).ints().append(p.input.readSignedFixed32(f.name()));
+				case FIXED_32 -> (p, field, f) -> p.repeatedField(field, f).ints().append(p.input.readFixed32(f.name()));
+				case FLOAT -> (p, field, f) -> p.repeatedField(field, f).floats().append(p.input.readFloat(f.name()));
+				case SFIXED_64 -> (p, field, f) -> p.repeatedField(field, f).longs().append(p.input.readSignedFixed64(f.name()));
+				case FIXED_64 -> (p, field, f) -> p.repeatedField(field, f).longs().append(p.input.readFixed64(f.name()));
+				case DOUBLE -> (p, field, f) -> p.repeatedField(field, f).doubles().append(p.input.readDouble(f.name()));
+				// These are never packed, so each element always has a tag of its own
+				case MESSAGE, STRING, BYTES -> null;
+			};
 		}
 	}
 
-	private void handleInt64(int field, FieldDefinition f) throws MalformedProtobufException, IOException {
-		if (f.repeated()) {
-			longList(field, readList(f, protoStream::readInt64));
-		} else {
-			longField(field, protoStream.readInt64(f.name()));
-		}
+	/**
+	 * Gets the decoder for the given field, encoded the way it normally is.
+	 *
+	 * @param f The field definition
+	 * @return the decoder, never null
+	 */
+	static FieldDecoder decoderFor(FieldDefinition f) {
+		return f.optional() ? OPTIONAL_DECODER : DECODERS[f.type().ordinal()];
 	}
 
-	private void handleUint32(int field, FieldDefinition f) throws MalformedProtobufException, IOException {
-		if (f.repeated()) {
-			intList(field, readList(f, protoStream::readUint32));
-		} else {
-			intField(field, protoStream.readUint32(f.name()));
-		}
+	/**
+	 * Gets the decoder for a single element of the given unpacked repeated scalar field.
+	 *
+	 * @param f The field definition, for which {@link CompiledSchema#isUnpackable(FieldDefinition)} is true
+	 * @return the decoder, never null
+	 */
+	static FieldDecoder unpackedDecoderFor(FieldDefinition f) {
+		return UNPACKED_DECODERS[f.type().ordinal()];
 	}
 
-	private void handleUint64(int field, FieldDefinition f) throws MalformedProtobufException, IOException {
-		if (f.repeated()) {
-			longList(field, readList(f, protoStream::readUint64));
-		} else {
-			longField(field, protoStream.readUint64(f.name()));
+	/**
+	 * Gets the decoder for the given field, encoded with the given wire type.
+	 *
+	 * @param f The field definition
+	 * @param wireType The wire type read off the wire
+	 * @return the decoder, or null if the field is never encoded with that wire type
+	 */
+	static FieldDecoder decoderFor(FieldDefinition f, int wireType) {
+		if (wireType == CompiledSchema.wireType(f)) {
+			return decoderFor(f);
+		}
+		if (CompiledSchema.isUnpackable(f) && wireType == CompiledSchema.wireType(f.type())) {
+			return unpackedDecoderFor(f);
 		}
+		return null;
 	}
 
-	private void handleSint32(int field, FieldDefinition f) throws MalformedProtobufException, IOException {
-		if (f.repeated()) {
-			intList(field, readList(f, protoStream::readSignedInt32));
-		} else {
-			intField(field, protoStream.readSignedInt32(f.name()));
+	/**
+	 * Decodes an optional value, which is wrapped in a message of its own (one of the protobuf built in value
+	 * types). An empty wrapper means the value is the default value of its type.
+	 */
+	private void handleOptional(int field, FieldDefinition f) throws IOException, MalformedProtobufException {
+		// Read the message size, it is not needed
+		final int valueTypeMessageSize = (int) input.readVarint("ValueTypeMessageSize", false);
+		if (valueTypeMessageSize > 0) {
+			// TODO could validate this size against bytes read or expected filed type
+			// read inner tag, which is always the "value" field (number 1) of the wrapper
+			final int tag2 = (int) input.readVarint("TAG", false);
+			if (tag2 != ((1 << TAG_FIELD_OFFSET) | CompiledSchema.wireType(f.type()))) {
+				throw new MalformedProtobufException("Bad protobuf encoding, optional field " + f.name() +
+						" has a value with tag " + tag2);
+			}
+			DECODERS[f.type().ordinal()].decode(this, field, f);
+			return;
 		}
-	}
 
-	private void handleSint64(int field, FieldDefinition f) throws MalformedProtobufException, IOException {
-		if (f.repeated()) {
-			longList(field, readList(f, protoStream::readSignedInt64));
-		} else {
-			longField(field, protoStream.readSignedInt64(f.name()));
+		// means optional is default value
+		switch (f.type()) {
+			case INT_32, UINT_32, SINT_32, FIXED_32, SFIXED_32 -> intField(field, 0);
+			case INT_64, UINT_64, SINT_64, FIXED_64, SFIXED_64 -> longField(field, 0);
+			case BOOL -> booleanField(field, false);
+			case ENUM -> enumField(field,0); // TODO ? is this right
+			case FLOAT -> floatField(field, 0);
+			case DOUBLE -> doubleField(field, 0);
+			case STRING -> {
+				if (lazyStrings) {
+					utf8Field(field, Utf8View.EMPTY);
+				} else {
+					stringField(field, "");
+				}
+			}
+			case BYTES -> bytesField(field, ByteBuffer.wrap(new byte[0]).asReadOnlyBuffer()); // TODO ? is this right
+			default -> {
+				throw new MalformedProtobufException("Unexpected and unknown field type " + f.type() + " cannot be parsed");
+			}
 		}
 	}
 
-	private void handleSfixed32(int field, FieldDefinition f) throws MalformedProtobufException, IOException {
-		if (f.repeated()) {
-			intList(field, readList(f, protoStream::readSignedFixed32));
-		} else {
-			intField(field, protoStream.readSignedFixed32(f.name()));
-		}
+	/**
+	 * Reads the length in bytes of a packed repeated field. The length is the number of bytes, NOT the number
+	 * of elements that should be read.
+	 */
+	private int readPackedLength(FieldDefinition f) throws IOException, MalformedProtobufException {
+		return input.readDelimitedLength(f.name());
 	}
 
-	private void handleSfixed64(int field, FieldDefinition f) throws MalformedProtobufException, IOException {
-		if (f.repeated()) {
-			longList(field, readList(f, protoStream::readSignedFixed64));
-		} else {
-			longField(field, protoStream.readSignedFixed64(f.name()));
+	/**
+	 * Works out how many elements to make room for in the list of a packed repeated field. If the input can
+	 * count them up front the list is exactly the right size. Otherwise, it is a guess that is never bigger
+	 * than {@link #MAX_GUESSED_LIST_CAPACITY}, so that a bogus length can't cause a huge allocation.
+	 *
+	 * @param length The length of the field in bytes
+	 * @param fixedWidth The size of each element in bytes, or 0 for varints
+	 */
+	private int packedCapacity(int length, int fixedWidth) throws IOException {
+		final int count = input.countPackedElements(length, fixedWidth);
+		if (count >= 0) {
+			return count;
 		}
+		return Math.min(fixedWidth == 0 ? length : length / fixedWidth, MAX_GUESSED_LIST_CAPACITY);
 	}
 
-	private void handleFixed32(int field, FieldDefinition f) throws MalformedProtobufException, IOException {
-		if (f.repeated()) {
-			intList(field, readList(f, protoStream::readFixed32));
-		} else {
-			intField(field, protoStream.readFixed32(f.name()));
+	private void checkPackedEnd(long endOfList) throws MalformedProtobufException {
+		if (input.bytesRead() > endOfList) {
+			throw new MalformedProtobufException("List length was incorrect");
 		}
 	}
 
-	private void handleFixed64(int field, FieldDefinition f) throws MalformedProtobufException, IOException {
-		if (f.repeated()) {
-			longList(field, readList(f, protoStream::readFixed64));
-		} else {
-			longField(field, protoStream.readFixed64(f.name()));
+	private void checkRepeatedElements(FieldDefinition f, int count) throws MalformedProtobufException {
+		if (count > input.limits.maxRepeatedElements()) {
+			throw new MalformedProtobufException("Repeated field " + f.name() + " has more than the maximum of " +
+					input.limits.maxRepeatedElements() + " elements");
 		}
 	}
 
-	private void handleFloat(int field, FieldDefinition f) throws MalformedProtobufException, IOException {
-		if (f.repeated()) {
-			floatList(field, readList(f, protoStream::readFloat));
-		} else {
-			floatField(field, protoStream.readFloat(f.name()));
-		}
+	/**
+	 * How the elements of a repeated message field are parsed in parallel
+	 */
+	private record ParallelMessages(BatchParser<?, ?> batchParser, Executor executor) {
 	}
 
-	private void handleDouble(int field, FieldDefinition f) throws MalformedProtobufException, IOException {
-		if (f.repeated()) {
-			doubleList(field, readList(f, protoStream::readDouble));
-		} else {
-			doubleField(field, protoStream.readDouble(f.name()));
+	/**
+	 * A repeated scalar field of the message being parsed, and the list its elements are collected in. The
+	 * lists are created when first needed, and emptied and reused once the field has been delivered. For a
+	 * repeated message field that is parsed in parallel, the list is an index of where each element is: a
+	 * slice of the input holding it.
+	 */
+	private static final class RepeatedField {
+		int field;
+		FieldDefinition definition;
+		private IntList ints;
+		private LongList longs;
+		private FloatList floats;
+		private DoubleList doubles;
+		private BooleanList booleans;
+		private ArrayList<ByteBuffer> messages;
+
+		IntList ints() {
+			return ints != null ? ints : (ints = new IntList(0));
 		}
-	}
 
-	private void handleBoolean(int field, FieldDefinition f) throws MalformedProtobufException, IOException {
-		if (f.repeated()) {
-			booleanList(field, readList(f, protoStream::readBool));
-		} else {
-			booleanField(field, protoStream.readBool(f.name()));
+		LongList longs() {
+			return longs != null ? longs : (longs = new LongList(0));
 		}
-	}
 
-	private void handleEnum(int field, FieldDefinition f) throws MalformedProtobufException, IOException {
-		if (f.repeated()) {
-			enumList(field, readList(f, protoStream::readEnum));
-		} else {
-			enumField(field, protoStream.readEnum(f.name()));
+		FloatList floats() {
+			return floats != null ? floats : (floats = new FloatList(0));
 		}
-	}
 
-	private void handleString(int field, FieldDefinition f) throws MalformedProtobufException, IOException {
-		stringField(field, protoStream.readString(f.name()));
-	}
+		DoubleList doubles() {
+			return doubles != null ? doubles : (doubles = new DoubleList(0));
+		}
 
-	private void handleBytes(int field, FieldDefinition f) throws MalformedProtobufException, IOException {
-		bytesField(field, protoStream.readBytes(f.name()));
-	}
+		BooleanList booleans() {
+			return booleans != null ? booleans : (booleans = new BooleanList(0));
+		}
 
-	private void handleMessage(int field, FieldDefinition f) throws MalformedProtobufException, IOException {
-		final var nestedStream = new LimitedStream(protoStream, (int) protoStream.readLengthFromStream());
-		objectField(field, nestedStream);
-		if (nestedStream.totalBytesRead < nestedStream.maxBytesToRead) {
-			new Exception("Extra bytes left after reading message, field="+field+
-					" totalBytesRead="+nestedStream.totalBytesRead+" maxBytesToRead="+nestedStream.maxBytesToRead+
-					" fieldDefinition="+f)
-					.printStackTrace();
-			protoStream.skipNBytes(nestedStream.maxBytesToRead - nestedStream.totalBytesRead);
+		ArrayList<ByteBuffer> messages() {
+			return messages != null ? messages : (messages = new ArrayList<>());
 		}
-	}
 
-	private interface ReadFunction<T> {
-		public T apply(String fieldName) throws MalformedProtobufException, IOException;
+		int size() {
+			return switch (definition.type()) {
+				case INT_64, UINT_64, SINT_64, FIXED_64, SFIXED_64 -> longs.size();
+				case FLOAT -> floats.size();
+				case DOUBLE -> doubles.size();
+				case BOOL -> booleans.size();
+				case MESSAGE -> messages.size();
+				default -> ints.size();
+			};
+		}
 	}
 
-	private static final class LimitedStream extends InputStream {
-		private final InputStream stream;
-		private final int maxBytesToRead;
-		private int totalBytesRead = 0;
+	/**
+	 * Gets the slot that the elements of the given repeated field are collected in, for the message being
+	 * parsed. A message seldom has more than a handful of repeated fields, so they are searched in order.
+	 */
+	private RepeatedField repeatedField(int field, FieldDefinition f) {
+		RepeatedField[] slots = repeatedFields;
+		for (int i = firstRepeated; i < repeatedCount; i++) {
+			if (slots[i].field == field) {
+				return slots[i];
+			}
+		}
+		if (repeatedCount == slots.length) {
+			slots = repeatedFields = Arrays.copyOf(slots, slots.length * 2);
+		}
+		RepeatedField slot = slots[repeatedCount];
+		if (slot == null) {
+			slot = slots[repeatedCount] = new RepeatedField();
+		}
+		repeatedCount++;
+		slot.field = field;
+		slot.definition = f;
+		return slot;
+	}
 
-		public LimitedStream(InputStream in, int limit) {
-			this.maxBytesToRead = limit;
-			this.stream = in;
+	/**
+	 * Drops the repeated fields collected for a message that is not going to be finished, lists and all, so
+	 * that none of their elements turn up in the next message.
+	 */
+	private void abandonRepeatedFields() {
+		for (int i = firstRepeated; i < repeatedCount; i++) {
+			repeatedFields[i] = null;
 		}
+		repeatedCount = firstRepeated;
+	}
 
-		@Override
-		public int read() throws IOException {
-			if (totalBytesRead >= maxBytesToRead) {
-				return -1;
+	/**
+	 * Passes each repeated field collected for the message being parsed to the list callback for its type,
+	 * in the order the fields first appeared. Each gets a list of its own, and the reusable lists are emptied.
+	 */
+	private void deliverRepeatedFields() throws MalformedProtobufException {
+		final RepeatedField[] slots = repeatedFields;
+		for (int i = firstRepeated; i < repeatedCount; i++) {
+			final RepeatedField slot = slots[i];
+			// Packed runs are checked as they are read, but unpacked elements are only counted here
+			checkRepeatedElements(slot.definition, slot.size());
+			final int field = slot.field;
+			final int max = MAX_RETAINED_LIST_CAPACITY;
+			switch (slot.definition.type()) {
+				case INT_32, UINT_32, SINT_32, FIXED_32, SFIXED_32 -> intList(field, slot.ints.copyAndClear(max));
+				case ENUM -> enumList(field, slot.ints.copyAndClear(max));
+				case INT_64, UINT_64, SINT_64, FIXED_64, SFIXED_64 -> longList(field, slot.longs.copyAndClear(max));
+				case FLOAT -> floatList(field, slot.floats.copyAndClear(max));
+				case DOUBLE -> doubleList(field, slot.doubles.copyAndClear(max));
+				case BOOL -> booleanList(field, slot.booleans.copyAndClear(max));
+				case MESSAGE -> deliverParallelMessages(slot);
+				default -> throw new IllegalStateException("Field " + slot.definition.name() + " is not a repeated scalar");
 			}
-			int b = stream.read();
-			totalBytesRead++;
-			return b;
+			slot.definition = null;
 		}
+		repeatedCount = firstRepeated;
 	}
 
-	private static final class ProtoStream extends InputStream {
-		private InputStream stream;
-		private int nextByte = -1;
-
-		/**
-		 * Used for reading longs from the input stream.
-		 */
-		private final byte[] readBuffer = new byte[8];
-		private int totalBytesRead = 0;
-
-		private void reset(InputStream stream) throws IOException {
-			this.stream = stream;
-			this.nextByte = stream.read();
-			this.totalBytesRead = 0;
+	/**
+	 * Parses the elements of a repeated message field all at once, and passes them to
+	 * {@link #objectList(int, List)}. The index of the elements is emptied, to be reused.
+	 */
+	private void deliverParallelMessages(RepeatedField slot) throws MalformedProtobufException {
+		final ParallelMessages parallel = parallelMessages.get(slot.field);
+		final List<?> messages = parallel.batchParser.parseAll(slot.messages, parallel.executor).messages();
+		if (slot.messages.size() > MAX_RETAINED_LIST_CAPACITY) {
+			slot.messages = null;
+		} else {
+			// Don't hold on to the slices, and so the input
+			slot.messages.clear();
 		}
+		objectList(slot.field, messages);
+	}
 
-		public boolean hasNextByte() {
-			return nextByte != -1;
+	// Each of these reads a packed repeated field. If the subclass chooses to stream the field (see
+	// ParseListener#packedStart) each element is passed to it as it is read. Otherwise, the elements are
+	// added to the list of the field, which is delivered at the end of the message.
+
+	private void readIntList(int field, FieldDefinition f, IntReader reader, int fixedWidth)
+			throws IOException, MalformedProtobufException {
+		final int length = readPackedLength(f);
+		final var endOfList = input.bytesRead() + length;
+		if (packedStart(field, length)) {
+			int count = 0;
+			while (input.bytesRead() < endOfList) {
+				intElement(field, reader.read(f.name()));
+				count++;
+			}
+			checkPackedEnd(endOfList);
+			packedEnd(field, count);
+			return;
 		}
 
-		public boolean eof() {
-			return nextByte == -1;
+		final var list = repeatedField(field, f).ints();
+		list.reserve(packedCapacity(length, fixedWidth));
+		while (input.bytesRead() < endOfList) {
+			list.append(reader.read(f.name()));
 		}
+		checkPackedEnd(endOfList);
+		checkRepeatedElements(f, list.size());
+	}
 
-		public int bytesRead() {
-			return totalBytesRead;
+	private void readLongList(int field, FieldDefinition f, LongReader reader, int fixedWidth)
+			throws IOException, MalformedProtobufException {
+		final int length = readPackedLength(f);
+		final var endOfList = input.bytesRead() + length;
+		if (packedStart(field, length)) {
+			int count = 0;
+			while (input.bytesRead() < endOfList) {
+				longElement(field, reader.read(f.name()));
+				count++;
+			}
+			checkPackedEnd(endOfList);
+			packedEnd(field, count);
+			return;
 		}
 
-		@Override
-		public int read() throws IOException {
-			int value = nextByte;
-			nextByte = stream.read(); // TODO Does this ever throw an exception?
-			totalBytesRead++;
-			return value;
+		final var list = repeatedField(field, f).longs();
+		list.reserve(packedCapacity(length, fixedWidth));
+		while (input.bytesRead() < endOfList) {
+			list.append(reader.read(f.name()));
 		}
+		checkPackedEnd(endOfList);
+		checkRepeatedElements(f, list.size());
+	}
 
-		private int readInt32(String fieldName) throws IOException, MalformedProtobufException {
-			return (int) readVarint(fieldName, false);
+	private void readFloatList(int field, FieldDefinition f) throws IOException, MalformedProtobufException {
+		final int length = readPackedLength(f);
+		final var endOfList = input.bytesRead() + length;
+		if (packedStart(field, length)) {
+			int count = 0;
+			while (input.bytesRead() < endOfList) {
+				floatElement(field, input.readFloat(f.name()));
+				count++;
+			}
+			checkPackedEnd(endOfList);
+			packedEnd(field, count);
+			return;
 		}
 
-		private long readInt64(String fieldName) throws IOException, MalformedProtobufException {
-			return readVarint(fieldName, false);
+		final var list = repeatedField(field, f).floats();
+		list.reserve(packedCapacity(length, Float.BYTES));
+		while (input.bytesRead() < endOfList) {
+			list.append(input.readFloat(f.name()));
 		}
+		checkPackedEnd(endOfList);
+		checkRepeatedElements(f, list.size());
+	}
 
-		private int readUint32(String fieldName) throws IOException, MalformedProtobufException {
-			return (int) readVarint(fieldName, false);
+	private void readDoubleList(int field, FieldDefinition f) throws IOException, MalformedProtobufException {
+		final int length = readPackedLength(f);
+		final var endOfList = input.bytesRead() + length;
+		if (packedStart(field, length)) {
+			int count = 0;
+			while (input.bytesRead() < endOfList) {
+				doubleElement(field, input.readDouble(f.name()));
+				count++;
+			}
+			checkPackedEnd(endOfList);
+			packedEnd(field, count);
+			return;
 		}
 
-		private long readUint64(String fieldName) throws IOException, MalformedProtobufException {
-			return readVarint(fieldName, false);
+		final var list = repeatedField(field, f).doubles();
+		list.reserve(packedCapacity(length, Double.BYTES));
+		while (input.bytesRead() < endOfList) {
+			list.append(input.readDouble(f.name()));
 		}
+		checkPackedEnd(endOfList);
+		checkRepeatedElements(f, list.size());
+	}
 
-		private boolean readBool(String fieldName) throws IOException, MalformedProtobufException {
-			final var i = readVarint(fieldName, false);
-			if (i != 1 && i != 0) {
-				throw new MalformedProtobufException("Bad protobuf encoding. Boolean was not 0 or 1");
+	private void readBooleanList(int field, FieldDefinition f) throws IOException, MalformedProtobufException {
+		final int length = readPackedLength(f);
+		final var endOfList = input.bytesRead() + length;
+		if (packedStart(field, length)) {
+			int count = 0;
+			while (input.bytesRead() < endOfList) {
+				booleanElement(field, input.readBool(f.name()));
+				count++;
 			}
-			return i == 1;
+			checkPackedEnd(endOfList);
+			packedEnd(field, count);
+			return;
 		}
 
-		private int readEnum(String fieldName) throws IOException, MalformedProtobufException {
-			final var i = readVarint(fieldName, false);
-			return (int) i;
+		final var list = repeatedField(field, f).booleans();
+		list.reserve(packedCapacity(length, 0));
+		while (input.bytesRead() < endOfList) {
+			list.append(input.readBool(f.name()));
 		}
+		checkPackedEnd(endOfList);
+		checkRepeatedElements(f, list.size());
+	}
 
-		private int readSignedInt32(String fieldName) throws IOException, MalformedProtobufException {
-			return (int) readVarint(fieldName, true);
+	private void handleInt32(int field, FieldDefinition f) throws MalformedProtobufException, IOException {
+		if (f.repeated()) {
+			readIntList(field, f, input::readInt32, 0);
+		} else {
+			intField(field, input.readInt32(f.name()));
 		}
+	}
 
-		private long readSignedInt64(String fieldName) throws IOException, MalformedProtobufException {
-			return readVarint(fieldName, true);
+	private void handleInt64(int field, FieldDefinition f) throws MalformedProtobufException, IOException {
+		if (f.repeated()) {
+			readLongList(field, f, input::readInt64, 0);
+		} else {
+			longField(field, input.readInt64(f.name()));
 		}
+	}
 
-		private int readSignedFixed32(String fieldName) throws IOException, MalformedProtobufException {
-			return readIntFromStream();
+	private void handleUint32(int field, FieldDefinition f) throws MalformedProtobufException, IOException {
+		if (f.repeated()) {
+			readIntList(field, f, input::readUint32, 0);
+		} else {
+			intField(field, input.readUint32(f.name()));
 		}
+	}
 
-		private int readFixed32(String fieldName) throws IOException, MalformedProtobufException {
-			return readIntFromStream();
+	private void handleUint64(int field, FieldDefinition f) throws MalformedProtobufException, IOException {
+		if (f.repeated()) {
+			readLongList(field, f, input::readUint64, 0);
+		} else {
+			longField(field, input.readUint64(f.name()));
 		}
+	}
 
-		private float readFloat(String fieldName) throws IOException, MalformedProtobufException {
-			return Float.intBitsToFloat(readIntFromStream());
+	private void handleSint32(int field, FieldDefinition f) throws MalformedProtobufException, IOException {
+		if (f.repeated()) {
+			readIntList(field, f, input::readSignedInt32, 0);
+		} else {
+			intField(field, input.readSignedInt32(f.name()));
 		}
+	}
 
-		private long readSignedFixed64(String fieldName) throws IOException, MalformedProtobufException {
-			return readLongFromStream();
+	private void handleSint64(int field, FieldDefinition f) throws MalformedProtobufException, IOException {
+		if (f.repeated()) {
+			readLongList(field, f, input::readSignedInt64, 0);
+		} else {
+			longField(field, input.readSignedInt64(f.name()));
 		}
+	}
 
-		private long readFixed64(String fieldName) throws IOException, MalformedProtobufException {
-			return readLongFromStream();
+	private void handleSfixed32(int field, FieldDefinition f) throws MalformedProtobufException, IOException {
+		if (f.repeated()) {
+			readIntList(field, f, input::readSignedFixed32, Integer.BYTES);
+		} else {
+			intField(field, input.readSignedFixed32(f.name()));
 		}
+	}
 
-		private double readDouble(String fieldName) throws IOException, MalformedProtobufException {
-			return Double.longBitsToDouble(readLongFromStream());
+	private void handleSfixed64(int field, FieldDefinition f) throws MalformedProtobufException, IOException {
+		if (f.repeated()) {
+			readLongList(field, f, input::readSignedFixed64, Long.BYTES);
+		} else {
+			longField(field, input.readSignedFixed64(f.name()));
 		}
+	}
 
-		private String readString(String fieldName) throws IOException, MalformedProtobufException {
-			final long length = readLengthFromStream(); // TODO If length > 2GB throw like mad
-			final byte[] data = new byte[(int) length]; // TODO Reuse buffer
-			final long read = this.read(data, 0, (int) length);
-			if (read != length) {
-				throw new MalformedProtobufException("Truncated protobuf, missing at least " +
-						(length - read) + " bytes while reading field: "+fieldName);
-			}
-			return new String(data);
+	private void handleFixed32(int field, FieldDefinition f) throws MalformedProtobufException, IOException {
+		if (f.repeated()) {
+			readIntList(field, f, input::readFixed32, Integer.BYTES);
+		} else {
+			intField(field, input.readFixed32(f.name()));
 		}
+	}
 
-		private ByteBuffer readBytes(String fieldName) throws IOException, MalformedProtobufException {
-			final long length = readLengthFromStream(); // TODO If length > 2GB throw like mad
-			final byte[] data = new byte[(int) length];
-			final long read = this.read(data, 0, (int) length);
-			if (read != length) {
-				throw new MalformedProtobufException("Truncated protobuf, missing at least " +
-						(length - read) + " bytes");
-			}
-			return ByteBuffer.wrap(data).asReadOnlyBuffer();
-		}
-
-		/**
-		 * Reads a variable length encoded integer from the protobuf byte stream.
-		 *
-		 * @param fieldName The name of the field being decoded. Used for error messages only.
-		 * @param zigZag    Whether to decode using zig-zag decoding
-		 * @return the 64-bit integer read and decoded from the protobuf byte stream
-		 * @throws IOException                if the proto stream cannot be read
-		 * @throws MalformedProtobufException if the stream cannot be decoded properly due to a malformed stream
-		 */
-		private long readVarint(String fieldName, boolean zigZag) throws IOException, MalformedProtobufException {
-			// Protobuf encodes smaller integers with fewer bytes than larger integers. It takes a full byte
-			// to encode 7 bits of information. So, if all 64 bits of a long are in use (for example, if the
-			// leading bit is 1, or even all bits are 1) then it will take 10 bytes to transmit what would
-			// have otherwise been 8 bytes of data!
-			//
-			// Thus, at most, reading a varint should involve reading 10 bytes of data.
-			//
-			// The leading bit of each byte is a continuation bit. If set, another byte will follow.
-			// If we read 10 bytes in sequence with a continuation bit set, then we have a malformed
-			// byte stream.
-			// The bytes come least to most significant 7 bits. So the first byte we read represents
-			// the lowest 7 bytes, then the next byte is the next highest 7 bytes, etc.
-
-			// Keeps track of the number of bytes that have been read. If we read 10 in a row all with
-			// the leading continuation bit set, then throw a malformed protobuf exception.
-			int numBytesRead = 0;
-			// The final value.
-			long value = 0;
-			// The amount to shift the bits we read by before AND with the value
-			long shift = 0;
-			// The byte to read from the stream
-			int b;
-
-			while ((b = this.read()) != -1) {
-				// Keep track of the number of bytes read
-				numBytesRead++;
-				// Checks whether the continuation bit is set
-				final boolean continuationBitSet = (b & VARINT_CONTINUATION_MASK) != 0;
-				// Strip off the continuation bit by keeping only the data bits
-				b &= VARINT_DATA_MASK;
-				// Shift the data bits left into position to AND with the value
-				final long toBeAdded = (long) b << shift;
-				value |= toBeAdded;
-				// Increment the shift for the next data bits (if there are more bits)
-				shift += NUM_BITS_PER_VARINT_BYTE;
-
-				if (continuationBitSet) {
-					// msb is set, so there is another byte following this one. If we've just read our 10th byte,
-					// then we have a malformed protobuf stream
-					if (numBytesRead == 10) {
-						throw new MalformedProtobufException(
-								"Bad protobuf encoding, MSB set on last byte of varint for field '" + fieldName + "'!");
-					}
-				} else {
-					break;
-				}
-			}
-
-			// "ZigZag" mode basically maps a signed number into unsigned bits such that small signed and
-			// unsigned numbers are small numbers. The most significant bit indicates the sign. All negative
-			// numbers of a msb of 1, while all positive numbers are 0. When encoding, you would take a number
-			// and multiply it by two and XOR it with all 1's if it is negative and all 0's if it is positive
-			// (XOR ends up flipping the bits if the mask is all 1's and leaving them be if all 0's). Of course,
-			// multiple by two means to shift left by 1. So the encoding looks like:
-			//
-			//   (value << 1) ^ (value >> 63)
-			//
-			// The first term simply multiplies the value by 2 while the second term is the mask. It does an
-			// arithmetic shift -- basically if the msb is 1 then it will fill it with all 1's. If 0 then it
-			// fills with all 0's.
-			//
-			// The operation to undo this is slightly more tricky. The first term (value >>> 1) will divide
-			// the number, but uses the *logical shift right* operation so the msb will always be 0. Then
-			// it creates the XOR flag of all 1's if the *lsb* is 1, otherwise with 0's. The trick of
-			// using (value << 63 >> 63) basically left shifts until the lsb is in the msb spot with all 0's
-			// following it, and then arithmetically shifts right the same number of places, ending up with
-			// either -1 (all 1's) or 0 (all 0's).
-			//
-			// I could have put an "if" operation in there instead (if value & 0x1 == 0 use mask of all 0's
-			// else all 1's), but unless the JVM optimizes it, it will be less efficient. There you go.
-			if (zigZag) {
-				value = (value >>> 1) ^ (value << 63 >> 63);
-			}
-
-			return value;
+	private void handleFixed64(int field, FieldDefinition f) throws MalformedProtobufException, IOException {
+		if (f.repeated()) {
+			readLongList(field, f, input::readFixed64, Long.BYTES);
+		} else {
+			longField(field, input.readFixed64(f.name()));
 		}
+	}
 
-		private void skipField(int wireType) throws IOException, MalformedProtobufException {
-			switch (wireType) {
-				case WIRE_TYPE_FIXED_64_BIT -> this.skipNBytes(8);
-				case WIRE_TYPE_FIXED_32_BIT -> this.skipNBytes(4);
-				// The value for "zigZag" when calling varint doesn't matter because we are just reading past
-				// the varint, we don't care how to interpret it (zigzag is only used for interpretation of
-				// the bytes, not how many of them there are)
-				case WIRE_TYPE_VARINT_OR_ZIGZAG -> readVarint("Unknown", false);
-				case WIRE_TYPE_DELIMITED -> {
-					final var length = readLengthFromStream();
-					this.skipNBytes(length);
-				}
-				case WIRE_TYPE_GROUP_START -> throw new MalformedProtobufException(
-						"Wire type 'Group Start' is unsupported");
-				case WIRE_TYPE_GROUP_END -> throw new MalformedProtobufException(
-						"Wire type 'Group End' is unsupported");
-				default -> throw new MalformedProtobufException(
-						"Unhandled wire type while trying to skip a field " + wireType);
-			}
+	private void handleFloat(int field, FieldDefinition f) throws MalformedProtobufException, IOException {
+		if (f.repeated()) {
+			readFloatList(field, f);
+		} else {
+			floatField(field, input.readFloat(f.name()));
 		}
+	}
 
-		private int readIntFromStream() throws IOException, MalformedProtobufException {
-			int b1 = this.read();
-			int b2 = this.read();
-			int b3 = this.read();
-			int b4 = this.read();
-			if ((b1 | b2 | b3 | b4) < 0) {
-				throw new MalformedProtobufException("Unexpected end of stream while parsing protobuf int");
-			}
-
-			// The bytes in protobuf come in little-endian order -- backwards for Java.
-			return ((b4 << 24) + (b3 << 16) + (b2 << 8) + b1);
+	private void handleDouble(int field, FieldDefinition f) throws MalformedProtobufException, IOException {
+		if (f.repeated()) {
+			readDoubleList(field, f);
+		} else {
+			doubleField(field, input.readDouble(f.name()));
 		}
+	}
 
-		private long readLongFromStream() throws IOException, MalformedProtobufException {
-			int lengthRead = this.read(readBuffer, 0, 8);
-			if (lengthRead != 8) {
-				throw new MalformedProtobufException("Unexpected end of stream while parsing protobuf int");
-			}
-
-			// The bytes in protobuf come in little-endian order -- backwards for Java.
-			return (((long) readBuffer[7] << 56) +
-					((long) (readBuffer[6] & 255) << 48) +
-					((long) (readBuffer[5] & 255) << 40) +
-					((long) (readBuffer[4] & 255) << 32) +
-					((long) (readBuffer[3] & 255) << 24) +
-					((readBuffer[2] & 255) << 16) +
-					((readBuffer[1] & 255) << 8) +
-					((readBuffer[0] & 255)));
+	private void handleBoolean(int field, FieldDefinition f) throws MalformedProtobufException, IOException {
+		if (f.repeated()) {
+			readBooleanList(field, f);
+		} else {
+			booleanField(field, input.readBool(f.name()));
 		}
+	}
 
-		private long readLengthFromStream() throws IOException, MalformedProtobufException {
-			return readVarint("", false);
+	private void handleEnum(int field, FieldDefinition f) throws MalformedProtobufException, IOException {
+		if (f.repeated()) {
+			readIntList(field, f, input::readEnum, 0);
+		} else {
+			enumField(field, input.readEnum(f.name()));
 		}
 	}
 
-	private static final class ByteArrayInputStreamAdapter extends InputStream {
-		private int position = 0;
-		private byte[] data;
-
-		private void reset(byte[] newData) {
-			assert newData != null : "The only code that calls this ensures this is true";
-			this.position = 0;
-			this.data = newData;
+	private void handleString(int field, FieldDefinition f) throws MalformedProtobufException, IOException {
+		if (lazyStrings) {
+			utf8Field(field, input.readUtf8(f.name()));
+		} else {
+			stringField(field, input.readString(f.name()));
 		}
+	}
 
-		@Override
-		public int read() {
-			assert data != null : "This must be true unless read was somehow called before reset!";
-			return position >= data.length
-					? -1
-					: 0b0000_0000_0000_0000_0000_0000_1111_1111 & data[position++]; // no sign extending
-		}
+	private void handleBytes(int field, FieldDefinition f) throws MalformedProtobufException, IOException {
+		bytesField(field, zeroCopyBytes ? input.readBytesSlice(f.name()) : input.readBytes(f.name()));
 	}
 
-	private static final class ByteBufferInputStreamAdapter extends InputStream {
-		private ByteBuffer buffer;
-		private int position = 0;
-		private int length = 0;
+	private void handleMessage(int field, FieldDefinition f) throws MalformedProtobufException, IOException {
+		if (parallelMessages != null && f.repeated() && parallelMessages.containsKey(field)) {
+			// Just note where the element is. The chunks of an incremental parse are gone by the end of the
+			// message, so then the element is copied.
+			final boolean copy = incremental != null && incremental.active;
+			final ByteBuffer element = copy ? input.readBytes(f.name()) : input.readBytesSlice(f.name());
+			repeatedField(field, f).messages().add(element.order(ByteOrder.LITTLE_ENDIAN));
+			return;
+		}
 
-		private void reset(ByteBuffer buffer) {
-			// TODO What about resetting the buffer position? Who is responsible for that kind of safety?
-			assert buffer != null : "The only code that calls this ensures this is true";
-			this.buffer = buffer;
-			this.position = 0;
-			this.length = buffer.limit();
+		if (messageSlices) {
+			// Protobuf is little-endian, so the slice is too, which saves byte-swapping when it is parsed
+			// The length is checked against what is left of the message it is in, before it is sliced
+			final ByteBuffer message = input.readBytesSlice(f.name()).order(ByteOrder.LITTLE_ENDIAN);
+			objectField(field, message);
+			return;
 		}
 
-		@Override
-		public int read() throws IOException {
-			assert buffer != null : "This must be true unless read was somehow called before reset!";
-			return position >= length ? -1 : buffer.get(position++);
+		final long length = input.readLengthFromStream();
+		final long previousEnd = input.pushLimit(length);
+		final FieldMask enclosingMask = input.fieldMask;
+		try {
+			final long end = input.messageEnd;
+			input.fieldMask = enclosingMask == null ? null : enclosingMask.child(field);
+			objectField(field, input);
+			final long bytesRead = input.bytesRead();
+			if (bytesRead > end) {
+				throw new MalformedProtobufException("Bad protobuf encoding, a field of nested message " +
+						f.name() + " ran " + (bytesRead - end) + " bytes past its end");
+			}
+			if (bytesRead < end) {
+				new Exception("Extra bytes left after reading message, field="+field+
+						" totalBytesRead="+(length - (end - bytesRead))+" maxBytesToRead="+length+
+						" fieldDefinition="+f)
+						.printStackTrace();
+				input.skipBytes(end - bytesRead, f.name());
+			}
+		} finally {
+			input.fieldMask = enclosingMask;
+			input.popLimit(previousEnd);
 		}
 	}
+
+	// Reads a single element of a repeated field, without boxing it
+	private interface IntReader {
+		int read(String fieldName) throws MalformedProtobufException, IOException;
+	}
+
+	private interface LongReader {
+		long read(String fieldName) throws MalformedProtobufException, IOException;
+	}
 }
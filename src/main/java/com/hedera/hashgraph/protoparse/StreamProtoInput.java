@@ -0,0 +1,188 @@
+package com.hedera.hashgraph.protoparse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A {@link ProtoInput} that reads from an arbitrary {@link InputStream}. Rather than calling
+ * {@link InputStream#read()} for every byte, it reads the stream in bulk into a reusable chunk buffer, and
+ * decodes from that buffer exactly like {@link ArrayProtoInput} does, refilling it as it runs low.
+ *
+ * <p>The input may be bounded to a maximum number of bytes, in which case no more than that many bytes are
+ * ever read from the stream, even though it is read in bulk. This means that when a message of known length
+ * is parsed out of a larger stream, the stream is left positioned exactly after the message.
+ */
+final class StreamProtoInput extends ArrayProtoInput {
+	/**
+	 * The default size of the chunk buffer
+	 */
+	static final int DEFAULT_BUFFER_SIZE = 8192;
+	/**
+	 * The smallest allowed size of the chunk buffer. It must be able to hold at least the longest varint.
+	 */
+	static final int MIN_BUFFER_SIZE = 16;
+	/**
+	 * Used as the maximum number of bytes to read when the input is only bounded by the end of the stream
+	 */
+	static final long UNBOUNDED = Long.MAX_VALUE;
+
+	/**
+	 * The largest the chunk buffer is allowed to be
+	 */
+	private final int bufferSize;
+	private InputStream stream;
+	/**
+	 * The number of bytes that may still be read from the stream
+	 */
+	private long remaining;
+	/**
+	 * The number of bytes read from the stream and then dropped from the front of the chunk buffer
+	 */
+	private long bytesBeforeBuffer;
+
+	/**
+	 * Create a new instance.
+	 *
+	 * @param bufferSize The largest the chunk buffer is allowed to be. Must be at least {@link #MIN_BUFFER_SIZE}.
+	 */
+	StreamProtoInput(int bufferSize) {
+		if (bufferSize < MIN_BUFFER_SIZE) {
+			throw new IllegalArgumentException("The stream buffer size must be at least " + MIN_BUFFER_SIZE);
+		}
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * Resets this input to read from the given stream.
+	 *
+	 * @param stream The stream to read from
+	 * @param maxBytes The maximum number of bytes to read from the stream, or {@link #UNBOUNDED}
+	 */
+	void reset(InputStream stream, long maxBytes) {
+		assert stream != null : "The only code that calls this ensures this is true";
+		assert maxBytes >= 0;
+		this.stream = stream;
+		this.remaining = maxBytes;
+		this.bytesBeforeBuffer = 0;
+
+		// The chunk buffer is allocated lazily, and is never bigger than the number of bytes there are to read.
+		// Small bounded messages (such as nested messages) therefore only need a small buffer.
+		final int size = (int) Math.min(bufferSize, Math.max(maxBytes, MIN_BUFFER_SIZE));
+		final byte[] chunk = buffer == null || buffer.length < size ? new byte[size] : buffer;
+		super.reset(chunk, 0, 0);
+	}
+
+	@Override
+	long bytesRead() {
+		return bytesBeforeBuffer + position;
+	}
+
+	@Override
+	boolean refill(int needed) throws IOException {
+		if (limit - position >= needed) {
+			return true;
+		}
+
+		if (needed > buffer.length || remaining == 0) {
+			return false;
+		}
+
+		// Move the unread bytes to the front of the chunk to make room
+		final int unread = limit - position;
+		System.arraycopy(buffer, position, buffer, 0, unread);
+		bytesBeforeBuffer += position;
+		position = 0;
+		limit = unread;
+
+		// Read as much as will fit, without reading past the maximum number of bytes
+		while (limit < needed && remaining > 0) {
+			final int numRead = stream.read(buffer, limit, (int) Math.min(buffer.length - limit, remaining));
+			if (numRead < 0) {
+				remaining = 0;
+			} else {
+				limit += numRead;
+				remaining -= numRead;
+			}
+		}
+
+		return limit >= needed;
+	}
+
+	@Override
+	ByteBuffer readBytesSlice(String fieldName) throws IOException, MalformedProtobufException {
+		// The chunk buffer is overwritten as the stream is read, so it can't be sliced
+		return readBytes(fieldName);
+	}
+
+	@Override
+	Utf8View readUtf8(String fieldName) throws IOException, MalformedProtobufException {
+		// Likewise, the bytes of the string have to be copied out of the chunk buffer
+		final int length = readDelimitedLength(fieldName);
+		if (limit - position < length && !refill(length)) {
+			return new Utf8View(readBytesBeyondBuffer(length, fieldName), 0, length);
+		}
+
+		final byte[] data = Arrays.copyOfRange(buffer, position, position + length);
+		position += length;
+		return new Utf8View(data, 0, length);
+	}
+
+	@Override
+	void skipBytesBeyondBuffer(long length, String fieldName) throws IOException, MalformedProtobufException {
+		// Drop whatever is left in the chunk, and skip the rest of the stream without reading it where it can be
+		long toSkip = length - (limit - position);
+		bytesBeforeBuffer += limit;
+		position = 0;
+		limit = 0;
+
+		while (toSkip > 0) {
+			// The last byte is always read rather than skipped. Some streams (such as files) happily skip past
+			// their end, and reading it proves that the skipped bytes were really there. A stream may also
+			// skip nothing without being at its end, in which case a chunk is read instead.
+			long numSkipped = toSkip > 1 && remaining > 0 ? stream.skip(Math.min(toSkip - 1, remaining)) : 0;
+			if (numSkipped <= 0) {
+				final int numRead = remaining == 0
+						? -1
+						: stream.read(buffer, 0, (int) Math.min(Math.min(toSkip, remaining), buffer.length));
+				if (numRead < 0) {
+					remaining = 0;
+					throw new MalformedProtobufException("Truncated protobuf, missing at least " + toSkip +
+							" bytes while skipping field: " + fieldName);
+				}
+				numSkipped = numRead;
+			}
+			toSkip -= numSkipped;
+			remaining -= numSkipped;
+			bytesBeforeBuffer += numSkipped;
+		}
+	}
+
+	@Override
+	byte[] readBytesBeyondBuffer(int length, String fieldName) throws IOException, MalformedProtobufException {
+		// Copy whatever is left in the chunk, and read the rest straight from the stream
+		final byte[] data = new byte[length];
+		int numCopied = limit - position;
+		System.arraycopy(buffer, position, data, 0, numCopied);
+		bytesBeforeBuffer += limit;
+		position = 0;
+		limit = 0;
+
+		while (numCopied < length) {
+			final int numRead = remaining == 0
+					? -1
+					: stream.read(data, numCopied, (int) Math.min(length - numCopied, remaining));
+			if (numRead < 0) {
+				remaining = 0;
+				throw new MalformedProtobufException("Truncated protobuf, missing at least " +
+						(length - numCopied) + " bytes while reading field: " + fieldName);
+			}
+			numCopied += numRead;
+			remaining -= numRead;
+			bytesBeforeBuffer += numRead;
+		}
+
+		return data;
+	}
+}
@@ -0,0 +1,292 @@
+package com.hedera.hashgraph.protoparse;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of decoded string field values, for payloads that repeat the same strings over and over
+ * (account aliases, token symbols, memo templates, and so on). A parser configured with a cache (see
+ * {@link ProtoParser#setStringCache(StringCache)}) hashes the raw UTF-8 bytes of each string field and looks
+ * them up before decoding them. On a hit, the canonical String from the cache is returned, which saves both
+ * decoding and allocating a new String, and means that long-lived objects built from parsed values share
+ * the same Strings rather than each holding their own copy.
+ *
+ * <p>The cache is a fixed-size table, so it never grows. Each value hashes to a bucket of
+ * {@link #BUCKET_SIZE} consecutive slots. When a new value is added to a full bucket, one of the values in
+ * the bucket is evicted using the "clock" (second chance) algorithm: every hit marks a value as referenced,
+ * and the eviction sweep skips (and un-marks) referenced values, so frequently used values stay in the cache.
+ *
+ * <p>A cache is threadsafe and lock-free, so a single cache can be shared by any number of parsers on any
+ * number of threads. Two threads adding the same value at the same time may both decode it, but the cache
+ * never returns a wrong value.
+ *
+ * <p>Only values up to a maximum length are cached. Longer values are rarely repeated, and would make the
+ * cache hold on to a lot of memory.
+ */
+public final class StringCache {
+	/**
+	 * The number of slots that a value can be in, and the number of values the clock sweeps over
+	 */
+	static final int BUCKET_SIZE = 8;
+	/**
+	 * The default maximum length (in UTF-8 bytes) of the values that are cached
+	 */
+	public static final int DEFAULT_MAX_LENGTH = 128;
+
+	private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final long HASH_MULTIPLIER = 0x9E37_79B9_7F4A_7C15L;
+
+	/**
+	 * A cached value, along with the bytes it was decoded from. Immutable except for the clock bit.
+	 */
+	private static final class Entry {
+		private final int hash;
+		private final byte[] utf8;
+		private final String value;
+		/**
+		 * Set on every hit, and cleared by the eviction sweep
+		 */
+		private volatile boolean referenced;
+
+		private Entry(int hash, byte[] utf8, String value) {
+			this.hash = hash;
+			this.utf8 = utf8;
+			this.value = value;
+		}
+	}
+
+	private final AtomicReferenceArray<Entry> table;
+	private final int mask;
+	private final int maxLength;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Create a new cache holding up to {@code capacity} values of up to {@link #DEFAULT_MAX_LENGTH} bytes.
+	 *
+	 * @param capacity The number of values the cache can hold. Rounded up to a power of two, and to at least
+	 *                 {@link #BUCKET_SIZE}.
+	 * @throws IllegalArgumentException If the capacity is not positive, or more than 2^30
+	 */
+	public StringCache(int capacity) {
+		this(capacity, DEFAULT_MAX_LENGTH);
+	}
+
+	/**
+	 * Create a new cache.
+	 *
+	 * @param capacity The number of values the cache can hold. Rounded up to a power of two, and to at least
+	 *                 {@link #BUCKET_SIZE}.
+	 * @param maxLength The maximum length, in UTF-8 bytes, of the values that are cached. Longer values are
+	 *                  always decoded.
+	 * @throws IllegalArgumentException If the capacity is not positive or more than 2^30, or the maximum
+	 * 									length is negative
+	 */
+	public StringCache(int capacity, int maxLength) {
+		if (capacity <= 0 || capacity > 1 << 30) {
+			throw new IllegalArgumentException("The capacity must be between 1 and 2^30");
+		}
+		if (maxLength < 0) {
+			throw new IllegalArgumentException("The maximum length must be non-negative");
+		}
+
+		final int size = Math.max(BUCKET_SIZE, Integer.highestOneBit(capacity - 1) << 1);
+		this.table = new AtomicReferenceArray<>(size);
+		this.mask = size - 1;
+		this.maxLength = maxLength;
+	}
+
+	/**
+	 * Gets the canonical String for the given UTF-8 bytes, decoding them and adding them to the cache if
+	 * they are not in it.
+	 *
+	 * @param utf8 The array holding the bytes
+	 * @param offset The index of the first byte
+	 * @param length The number of bytes
+	 * @return The decoded String
+	 */
+	public String get(byte[] utf8, int offset, int length) {
+		if (length > maxLength) {
+			return new String(utf8, offset, length, StandardCharsets.UTF_8);
+		}
+
+		final int hash = hash(utf8, offset, length);
+		final int bucket = hash & mask;
+		for (int i = 0; i < BUCKET_SIZE; i++) {
+			final Entry entry = table.get((bucket + i) & mask);
+			if (entry != null && entry.hash == hash
+					&& Arrays.equals(entry.utf8, 0, entry.utf8.length, utf8, offset, offset + length)) {
+				return hit(entry);
+			}
+		}
+
+		misses.increment();
+		final byte[] copy = Arrays.copyOfRange(utf8, offset, offset + length);
+		final String value = new String(copy, StandardCharsets.UTF_8);
+		add(bucket, new Entry(hash, copy, value));
+		return value;
+	}
+
+	/**
+	 * Gets the canonical String for the given UTF-8 bytes, decoding them and adding them to the cache if
+	 * they are not in it. The position and limit of the buffer are not used or modified.
+	 *
+	 * @param utf8 The buffer holding the bytes
+	 * @param index The index in the buffer of the first byte
+	 * @param length The number of bytes
+	 * @return The decoded String
+	 */
+	public String get(ByteBuffer utf8, int index, int length) {
+		if (utf8.hasArray()) {
+			return get(utf8.array(), utf8.arrayOffset() + index, length);
+		}
+
+		if (length > maxLength) {
+			final byte[] copy = new byte[length];
+			utf8.get(index, copy);
+			return new String(copy, StandardCharsets.UTF_8);
+		}
+
+		final int hash = hash(utf8, index, length);
+		final int bucket = hash & mask;
+		for (int i = 0; i < BUCKET_SIZE; i++) {
+			final Entry entry = table.get((bucket + i) & mask);
+			if (entry != null && entry.hash == hash && equals(entry.utf8, utf8, index, length)) {
+				return hit(entry);
+			}
+		}
+
+		misses.increment();
+		final byte[] copy = new byte[length];
+		utf8.get(index, copy);
+		final String value = new String(copy, StandardCharsets.UTF_8);
+		add(bucket, new Entry(hash, copy, value));
+		return value;
+	}
+
+	private static boolean equals(byte[] cached, ByteBuffer utf8, int index, int length) {
+		if (cached.length != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (cached[i] != utf8.get(index + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private String hit(Entry entry) {
+		hits.increment();
+		// Only write when needed, so that hot values don't keep invalidating the cache line
+		if (!entry.referenced) {
+			entry.referenced = true;
+		}
+		return entry.value;
+	}
+
+	/**
+	 * Adds the entry to the bucket, in an empty slot if there is one, or else in place of the first entry the
+	 * clock finds that has not been referenced since the last sweep.
+	 */
+	private void add(int bucket, Entry entry) {
+		// Two sweeps are always enough, since the first one clears every referenced bit it passes
+		for (int i = 0; i < 2 * BUCKET_SIZE; i++) {
+			final int slot = (bucket + i) & mask;
+			final Entry existing = table.get(slot);
+			if (existing == null) {
+				if (table.compareAndSet(slot, null, entry)) {
+					return;
+				}
+			} else if (existing.referenced) {
+				existing.referenced = false;
+			} else if (table.compareAndSet(slot, existing, entry)) {
+				return;
+			}
+		}
+		// Lost every race to other threads adding values. The value is still returned, just not cached.
+	}
+
+	/**
+	 * Hashes the bytes 8 at a time, which is several times faster than {@link Arrays#hashCode(byte[])}.
+	 */
+	private static int hash(byte[] utf8, int offset, int length) {
+		long hash = length;
+		int i = offset;
+		final int end = offset + length;
+		for (; i + Long.BYTES <= end; i += Long.BYTES) {
+			hash = (hash ^ (long) LONG_LE.get(utf8, i)) * HASH_MULTIPLIER;
+		}
+		for (; i < end; i++) {
+			hash = (hash ^ utf8[i]) * HASH_MULTIPLIER;
+		}
+		return finish(hash);
+	}
+
+	/**
+	 * Exactly the same hash as {@link #hash(byte[], int, int)}, so that the same bytes hit no matter what
+	 * kind of input they were parsed from.
+	 */
+	private static int hash(ByteBuffer utf8, int index, int length) {
+		final boolean bigEndian = utf8.order() == ByteOrder.BIG_ENDIAN;
+		long hash = length;
+		int i = index;
+		final int end = index + length;
+		for (; i + Long.BYTES <= end; i += Long.BYTES) {
+			final long word = utf8.getLong(i);
+			hash = (hash ^ (bigEndian ? Long.reverseBytes(word) : word)) * HASH_MULTIPLIER;
+		}
+		for (; i < end; i++) {
+			hash = (hash ^ utf8.get(i)) * HASH_MULTIPLIER;
+		}
+		return finish(hash);
+	}
+
+	private static int finish(long hash) {
+		// The high bits are the best mixed, so fold them into the low bits that pick the bucket
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	/**
+	 * Gets the number of lookups that found their value in the cache.
+	 *
+	 * @return the number of hits
+	 */
+	public long hits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Gets the number of lookups that had to decode their value. Values too long to be cached are not counted.
+	 *
+	 * @return the number of misses
+	 */
+	public long misses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Gets the fraction of lookups that found their value in the cache.
+	 *
+	 * @return the hit rate, from 0 to 1, or 0 if there have been no lookups
+	 */
+	public double hitRate() {
+		final long h = hits();
+		final long total = h + misses();
+		return total == 0 ? 0 : (double) h / total;
+	}
+
+	/**
+	 * Resets the hit and miss counters to zero. The cached values are kept.
+	 */
+	public void resetCounters() {
+		hits.reset();
+		misses.reset();
+	}
+}
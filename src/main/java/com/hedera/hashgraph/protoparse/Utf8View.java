@@ -0,0 +1,220 @@
+package com.hedera.hashgraph.protoparse;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * A string field value that has not been decoded yet. It wraps the raw UTF-8 bytes of the field, and only
+ * decodes them into a {@link String} if and when {@link #toString()} (or one of the {@link CharSequence}
+ * methods that needs the characters) is called. The decoded String is cached, so this happens at most once.
+ *
+ * <p>Handlers that only compare a value ({@link #contentEquals(String)}), hash it, or ignore it never pay
+ * for decoding it, or for allocating the String.
+ *
+ * <p>Two views are equal if they hold the same bytes. Just like {@link StringBuilder}, a view is never
+ * equal to a String, use {@link #contentEquals(String)} for that.
+ *
+ * <p>When parsing a byte[], ByteBuffer or file, the bytes are those of the input itself, not a copy. Just
+ * like the slices given to {@link ParseListener#bytesField(int, ByteBuffer)} in zero-copy mode, <b>such a
+ * view is only valid for as long as the input is</b>. Call {@link #toString()} to get a value that
+ * outlives the input.
+ *
+ * @see ProtoParser#setLazyStrings(boolean)
+ */
+public final class Utf8View implements CharSequence {
+	/**
+	 * The empty string, which is the default value of a string field
+	 */
+	static final Utf8View EMPTY = new Utf8View(new byte[0], 0, 0);
+
+	/**
+	 * The array holding the UTF-8 bytes, or null if they are in {@link #buffer}
+	 */
+	private final byte[] array;
+	/**
+	 * The buffer holding the UTF-8 bytes, or null if they are in {@link #array}
+	 */
+	private final ByteBuffer buffer;
+	/**
+	 * The index of the first byte in the array or buffer
+	 */
+	private final int offset;
+	/**
+	 * The number of bytes
+	 */
+	private final int length;
+	/**
+	 * The decoded value, or null if it hasn't been decoded yet
+	 */
+	private String string;
+
+	/**
+	 * Create a new view over the given UTF-8 bytes of an array. The bytes must not be modified afterwards.
+	 *
+	 * @param utf8 The array holding the UTF-8 encoded bytes. Must not be null.
+	 * @param offset The index of the first byte
+	 * @param length The number of bytes
+	 * @throws IndexOutOfBoundsException If the offset and length don't fit in the array
+	 */
+	public Utf8View(byte[] utf8, int offset, int length) {
+		Objects.checkFromIndexSize(offset, length, utf8.length);
+		this.array = utf8;
+		this.buffer = null;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	/**
+	 * Create a new view over the given UTF-8 bytes, from the position to the limit of the buffer. The bytes
+	 * must not be modified afterwards. The position and limit of the buffer are not used after this.
+	 *
+	 * @param utf8 The buffer holding the UTF-8 encoded bytes. Must not be null.
+	 */
+	public Utf8View(ByteBuffer utf8) {
+		this.array = null;
+		this.buffer = utf8;
+		this.offset = utf8.position();
+		this.length = utf8.remaining();
+	}
+
+	/**
+	 * Gets the number of UTF-8 bytes. This never needs the value to be decoded.
+	 *
+	 * @return the number of bytes
+	 */
+	public int byteLength() {
+		return length;
+	}
+
+	/**
+	 * Gets the UTF-8 bytes.
+	 *
+	 * @return A read-only buffer holding the bytes from its position to its limit
+	 */
+	public ByteBuffer bytes() {
+		return array != null
+				? ByteBuffer.wrap(array, offset, length).asReadOnlyBuffer()
+				: buffer.asReadOnlyBuffer().limit(offset + length).position(offset);
+	}
+
+	private byte byteAt(int index) {
+		return array != null ? array[offset + index] : buffer.get(offset + index);
+	}
+
+	/**
+	 * Gets the number of chars in the value, as defined by {@link CharSequence#length()}. For ASCII values,
+	 * which is most of them, this is the number of bytes and nothing has to be decoded.
+	 *
+	 * @return the number of chars
+	 */
+	@Override
+	public int length() {
+		if (string == null && isAscii()) {
+			return length;
+		}
+		return toString().length();
+	}
+
+	@Override
+	public char charAt(int index) {
+		return toString().charAt(index);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return toString().subSequence(start, end);
+	}
+
+	/**
+	 * Gets whether this value has the same characters as the given String. If this view has not been decoded
+	 * yet and holds only ASCII, the comparison is done on the bytes, without decoding.
+	 *
+	 * @param other The String to compare to. May be null.
+	 * @return true if the characters are the same
+	 */
+	public boolean contentEquals(String other) {
+		if (other == null) {
+			return false;
+		}
+
+		if (string != null) {
+			return string.equals(other);
+		}
+
+		// Each char takes at least one byte
+		if (other.length() > length) {
+			return false;
+		}
+
+		for (int i = 0; i < length; i++) {
+			final byte b = byteAt(i);
+			if (b < 0) {
+				// Not ASCII, so the bytes don't line up with the chars any more
+				return toString().equals(other);
+			}
+			if (i >= other.length() || b != other.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean isAscii() {
+		for (int i = 0; i < length; i++) {
+			if (byteAt(i) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+
+		if (!(o instanceof Utf8View other) || length != other.length) {
+			return false;
+		}
+
+		for (int i = 0; i < length; i++) {
+			if (byteAt(i) != other.byteAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gets a hash code computed from the bytes, just like {@link java.util.Arrays#hashCode(byte[])}.
+	 */
+	@Override
+	public int hashCode() {
+		int hash = 1;
+		for (int i = 0; i < length; i++) {
+			hash = 31 * hash + byteAt(i);
+		}
+		return hash;
+	}
+
+	/**
+	 * Gets the value as a String, decoding it the first time this is called.
+	 *
+	 * @return the decoded value, never null
+	 */
+	@Override
+	public String toString() {
+		if (string == null) {
+			if (array != null) {
+				string = new String(array, offset, length, StandardCharsets.UTF_8);
+			} else {
+				final byte[] bytes = new byte[length];
+				buffer.get(offset, bytes);
+				string = new String(bytes, StandardCharsets.UTF_8);
+			}
+		}
+		return string;
+	}
+}
@@ -0,0 +1,32 @@
+package com.hedera.hashgraph.protoparse;
+
+import org.junit.jupiter.api.Test;
+
+import static com.hedera.hashgraph.protoparse.ProtoConstants.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledSchemaTableTest {
+    @Test
+    void probedTableFindsEveryEntry() {
+        // Sparse enough for a hash table, and with no multipliers tried, so it has to be probed
+        final int[] numbers = { 1, 2, 15, 16, 2047, 2048, 100_000, 19_000, 536_870_911 };
+        final var fields = new FieldDefinition[numbers.length];
+        for (int i = 0; i < numbers.length; i++) {
+            fields[i] = new FieldDefinition("f" + i, FieldType.INT_64, i % 2 == 0, numbers[i]);
+        }
+        final var schema = new CompiledSchema(0, fields);
+        for (final var f : fields) {
+            assertSame(f, schema.getField(f.number()));
+            final var entry = schema.entryForTag((f.number() << TAG_FIELD_OFFSET) | CompiledSchema.wireType(f));
+            assertSame(f, entry.definition);
+            // The wire type is part of the tag, so the wrong one finds nothing
+            assertNull(schema.entryForTag((f.number() << TAG_FIELD_OFFSET) | WIRE_TYPE_FIXED_32_BIT));
+        }
+        for (int n = 3; n < 5000; n++) {
+            if (n != 15 && n != 16 && n != 2047 && n != 2048) {
+                assertNull(schema.getField(n));
+            }
+        }
+        assertSame(fields[0], schema.expectedFirst().definition);
+    }
+}
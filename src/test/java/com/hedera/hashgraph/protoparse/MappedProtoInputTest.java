@@ -0,0 +1,152 @@
+package com.hedera.hashgraph.protoparse;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.hedera.hashgraph.protoparse.ProtoConstants.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Maps the file in windows of just 16 bytes, so that values cross from one window to the next just as they do
+ * every 2GB of a real file.
+ */
+class MappedProtoInputTest {
+    private static final int WINDOW_SIZE = 16;
+    /**
+     * Bytes before the region, so that the windows don't start at the start of the file
+     */
+    private static final int OFFSET = 5;
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static MappedProtoInput map(FileChannel channel, int length) throws Exception {
+        final var in = new MappedProtoInput(WINDOW_SIZE);
+        in.reset(channel, OFFSET, length);
+        in.begin(ParserLimits.UNLIMITED, length);
+        return in;
+    }
+
+    private static FileChannel write(Path dir, byte[] region) throws Exception {
+        final byte[] file = new byte[OFFSET + region.length + 3];
+        System.arraycopy(region, 0, file, OFFSET, region.length);
+        return FileChannel.open(Files.write(dir.resolve("region.bin"), file));
+    }
+
+    @Test
+    void valuesThatStraddleTwoWindows(@TempDir Path dir) throws Exception {
+        final var out = new ByteArrayOutputStream();
+        out.write(new byte[12], 0, 12);
+        writeVarint(out, Long.MIN_VALUE); // 10 bytes, from 12 to 22
+        out.write(new byte[6], 0, 6);
+        out.writeBytes(ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN)
+                .putLong(0x0102_0304_0506_0708L).array()); // 8 bytes, from 28 to 36
+        final byte[] region = out.toByteArray();
+
+        try (var channel = write(dir, region)) {
+            final var in = map(channel, region.length);
+            in.skipBytes(12, "padding");
+            assertEquals(12, in.bytesRead());
+            assertEquals(Long.MIN_VALUE, in.readVarint("varint", false));
+            assertEquals(22, in.bytesRead());
+            in.skipBytes(6, "padding");
+            assertEquals(0x0102_0304_0506_0708L, in.readLongFromStream());
+            assertEquals(36, in.bytesRead());
+            assertTrue(in.eof());
+        }
+    }
+
+    @Test
+    void skipPastSeveralWindows(@TempDir Path dir) throws Exception {
+        final var out = new ByteArrayOutputStream();
+        out.write(1);
+        writeVarint(out, 100);
+        out.write(new byte[100], 0, 100);
+        writeVarint(out, 300);
+        final byte[] region = out.toByteArray();
+
+        try (var channel = write(dir, region)) {
+            final var in = map(channel, region.length);
+            assertEquals(1, in.readVarint("first", false));
+            in.skipField(WIRE_TYPE_DELIMITED);
+            assertEquals(102, in.bytesRead());
+            assertEquals(300, in.readVarint("last", false));
+            assertEquals(region.length, in.bytesRead());
+            assertTrue(in.eof());
+        }
+    }
+
+    @Test
+    void bytesLongerThanAWindow(@TempDir Path dir) throws Exception {
+        final byte[] value = new byte[50];
+        for (int i = 0; i < value.length; i++) {
+            value[i] = (byte) ('a' + i % 26);
+        }
+        final var out = new ByteArrayOutputStream();
+        out.write(0);
+        for (int i = 0; i < 2; i++) {
+            writeVarint(out, value.length);
+            out.writeBytes(value);
+        }
+        final byte[] region = out.toByteArray();
+
+        try (var channel = write(dir, region)) {
+            final var in = map(channel, region.length);
+            assertEquals(0, in.readVarint("first", false));
+            final ByteBuffer bytes = in.readBytes("bytes");
+            final byte[] copy = new byte[bytes.remaining()];
+            bytes.get(copy);
+            assertArrayEquals(value, copy);
+            assertEquals(1 + 1 + value.length, in.bytesRead());
+            assertEquals(new String(value), in.readString("string"));
+            assertEquals(region.length, in.bytesRead());
+            assertTrue(in.eof());
+        }
+    }
+
+    @Test
+    void truncatedRegion(@TempDir Path dir) throws Exception {
+        final var out = new ByteArrayOutputStream();
+        writeVarint(out, 40);
+        out.write(new byte[40], 0, 40);
+        final byte[] region = out.toByteArray();
+
+        try (var channel = write(dir, region)) {
+            // The region ends 10 bytes short of the field, part way through the third window. The length of
+            // the message is not given, so it is the end of the region that stops each read.
+            final int length = region.length - 10;
+            final var in = new MappedProtoInput(WINDOW_SIZE);
+            for (int i = 0; i < 2; i++) {
+                in.reset(channel, OFFSET, length);
+                in.begin(ParserLimits.UNLIMITED, -1);
+                if (i == 0) {
+                    final long fieldLength = in.readVarint("length", false);
+                    assertThrows(MalformedProtobufException.class, () -> in.skipBytes(fieldLength, "skipped"));
+                } else {
+                    assertThrows(MalformedProtobufException.class, () -> in.readBytes("read"));
+                }
+                assertEquals(1, in.bytesRead());
+            }
+
+            // A fixed64 that would run past the end of the region, in the next window
+            in.reset(channel, OFFSET, 20);
+            in.begin(ParserLimits.UNLIMITED, -1);
+            in.skipBytes(14, "padding");
+            assertEquals(14, in.bytesRead());
+            assertThrows(MalformedProtobufException.class, in::readLongFromStream);
+            assertEquals(14, in.bytesRead());
+        }
+    }
+}
@@ -17,6 +17,9 @@ public class FruitsParser extends ProtoParser {
 	private Apple apple;
 	private Banana banana;
 
+	private final AppleParser appleParser = new AppleParser();
+	private final BananaParser bananaParser = new BananaParser();
+
 	public Object parse(byte[] protobuf) throws MalformedProtobufException {
 		apple = null;
 		banana = null;
@@ -50,8 +53,8 @@ public class FruitsParser extends ProtoParser {
 	@Override
 	public void objectField(final int fieldNum, final InputStream protoStream) throws IOException, MalformedProtobufException {
 		switch (fieldNum) {
-			case 1 -> apple = new AppleParser().parse(protoStream);
-			case 2 -> banana = new BananaParser().parse(protoStream);
+			case 1 -> apple = appleParser.parse(protoStream);
+			case 2 -> banana = bananaParser.parse(protoStream);
 			default -> throw new AssertionError("Unknown field number " + fieldNum);
 		}
 	}
@@ -1,9 +1,18 @@
 package sample.target.proto.parsers;
 
-import com.hedera.hashgraph.protoparse.FieldDefinition;
+import com.hedera.hashgraph.protoparse.BatchParser;
+import com.hedera.hashgraph.protoparse.BooleanList;
+import com.hedera.hashgraph.protoparse.DoubleList;
+import com.hedera.hashgraph.protoparse.FeedResult;
+import com.hedera.hashgraph.protoparse.FieldMask;
+import com.hedera.hashgraph.protoparse.FloatList;
+import com.hedera.hashgraph.protoparse.IntList;
+import com.hedera.hashgraph.protoparse.LongList;
 import com.hedera.hashgraph.protoparse.MalformedProtobufException;
 import com.hedera.hashgraph.protoparse.OneOf;
+import com.hedera.hashgraph.protoparse.ParserLimits;
 import com.hedera.hashgraph.protoparse.ProtoParser;
+import com.hedera.hashgraph.protoparse.StringCache;
 import sample.target.model.Fruits;
 import sample.target.model.Nested;
 import sample.target.model.Omnibus;
@@ -13,7 +22,10 @@ import sample.target.proto.schemas.OmnibusSchema;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.Executor;
 
 public class OmnibusParser extends ProtoParser {
 	private int int32Number;
@@ -64,12 +76,92 @@ public class OmnibusParser extends ProtoParser {
 
 	private List<Object> fruitList = null; // Apple or Banana
 
+	// Parsers of the nested messages of the lists, when they are parsed in parallel
+	private static final BatchParser<NestedParser, Nested> NESTED_BATCH_PARSER =
+			new BatchParser<>(NestedParser::new, NestedParser::parse);
+	private static final BatchParser<FruitsParser, Object> FRUITS_BATCH_PARSER =
+			new BatchParser<>(FruitsParser::new, FruitsParser::parse);
+
+	// Parsers for the nested messages, reused for every occurrence
+	private final NestedParser nestedParser = new NestedParser();
+	private final AppleParser appleParser = new AppleParser();
+	private final BananaParser bananaParser = new BananaParser();
+	private final FruitsParser fruitsParser = new FruitsParser();
+
+	public OmnibusParser() {
+		super(OmnibusSchema.SCHEMA);
+	}
+
+	public OmnibusParser(int streamBufferSize) {
+		super(OmnibusSchema.SCHEMA, streamBufferSize);
+	}
+
+	public void zeroCopyBytes(boolean zeroCopyBytes) {
+		setZeroCopyBytes(zeroCopyBytes);
+	}
+
+	public void lazyStrings(boolean lazyStrings) {
+		setLazyStrings(lazyStrings);
+	}
+
+	public void stringCache(StringCache stringCache) {
+		setStringCache(stringCache);
+	}
+
+	public void messageSlices(boolean messageSlices) {
+		setMessageSlices(messageSlices);
+	}
+
+	public void limits(ParserLimits limits) {
+		setLimits(limits);
+	}
+
+	// Parses the elements of nestedList and fruitList in parallel on the executor, or one at a time if it is null
+	public void parallelLists(Executor executor) {
+		setParallelMessages(316, executor == null ? null : NESTED_BATCH_PARSER, executor);
+		setParallelMessages(317, executor == null ? null : FRUITS_BATCH_PARSER, executor);
+	}
+
+	public void startFeed(long length) throws MalformedProtobufException {
+		reset();
+		startIncremental(length);
+	}
+
+	// Returns the message once it is all parsed, or null if more is needed
+	public Omnibus feedChunk(ByteBuffer chunk) throws MalformedProtobufException {
+		return feed(chunk) == FeedResult.DONE ? createOmnibus() : null;
+	}
+
+	public Omnibus finishFeed() throws MalformedProtobufException {
+		finishIncremental();
+		return createOmnibus();
+	}
+
 	public Omnibus parse(byte[] protobuf) throws MalformedProtobufException {
 		reset();
 		super.start(protobuf);
 		return createOmnibus();
 	}
 
+	// Parses just the fields the mask selects
+	public Omnibus parse(byte[] protobuf, FieldMask fieldMask) throws MalformedProtobufException {
+		setFieldMask(fieldMask);
+		try {
+			return parse(protobuf);
+		} finally {
+			setFieldMask(null);
+		}
+	}
+
+	public Omnibus parse(ByteBuffer protobuf, FieldMask fieldMask) throws MalformedProtobufException {
+		setFieldMask(fieldMask);
+		try {
+			return parse(protobuf);
+		} finally {
+			setFieldMask(null);
+		}
+	}
+
 	public Omnibus parse(ByteBuffer protobuf) throws MalformedProtobufException {
 		reset();
 		super.start(protobuf);
@@ -82,6 +174,24 @@ public class OmnibusParser extends ProtoParser {
 		return createOmnibus();
 	}
 
+	public Omnibus parse(InputStream protobuf, long length) throws IOException, MalformedProtobufException {
+		reset();
+		super.start(protobuf, length);
+		return createOmnibus();
+	}
+
+	public Omnibus parse(FileChannel protobuf, long offset, long length) throws IOException, MalformedProtobufException {
+		reset();
+		super.start(protobuf, offset, length);
+		return createOmnibus();
+	}
+
+	public Omnibus parse(Path protobuf) throws IOException, MalformedProtobufException {
+		reset();
+		super.start(protobuf);
+		return createOmnibus();
+	}
+
 	private Omnibus createOmnibus() {
 		return new Omnibus(int32Number, int64Number, uint32Number, uint64Number, flag,
 				suitEnum, sint32Number, sint64Number, sfixed32Number, sfixed64Number,
@@ -147,67 +257,6 @@ public class OmnibusParser extends ProtoParser {
 		this.fruitList = null; // Apple or Banana
 	}
 
-	@Override
-	protected FieldDefinition getFieldDefinition(final int fieldNumber) {
-		return switch(fieldNumber) {
-			case 10 -> OmnibusSchema.INT32_NUMBER;
-			case 11 -> OmnibusSchema.INT64_NUMBER;
-			case 12 -> OmnibusSchema.UINT32_NUMBER;
-			case 13 -> OmnibusSchema.UINT64_NUMBER;
-			case 14 -> OmnibusSchema.FLAG;
-			case 15 -> OmnibusSchema.SUIT;
-			case 30 -> OmnibusSchema.SINT32_NUMBER;
-			case 31 -> OmnibusSchema.SINT64_NUMBER;
-			case 20 -> OmnibusSchema.SFIXED32_NUMBER;
-			case 25 -> OmnibusSchema.SFIXED64_NUMBER;
-			case 21 -> OmnibusSchema.FIXED32_NUMBER;
-			case 26 -> OmnibusSchema.FIXED64_NUMBER;
-			case 22 -> OmnibusSchema.FLOAT_NUMBER;
-			case 27 -> OmnibusSchema.DOUBLE_NUMBER;
-			case 1 -> OmnibusSchema.MEMO;
-			case 2 -> OmnibusSchema.RANDOM_BYTES;
-			case 3 -> OmnibusSchema.NESTED;
-			case 200 -> OmnibusSchema.FRUIT_APPLE;
-			case 201 -> OmnibusSchema.FRUIT_BANANA;
-			case 210 -> OmnibusSchema.INT32_UNIQUE;
-			case 211 -> OmnibusSchema.INT64_UNIQUE;
-			case 212 -> OmnibusSchema.UINT32_UNIQUE;
-			case 213 -> OmnibusSchema.UINT64_UNIQUE;
-			case 214 -> OmnibusSchema.FLAG_UNIQUE;
-			case 215 -> OmnibusSchema.SUIT_UNIQUE;
-			case 230 -> OmnibusSchema.SINT32_UNIQUE;
-			case 231 -> OmnibusSchema.SINT64_UNIQUE;
-			case 220 -> OmnibusSchema.SFIXED32_UNIQUE;
-			case 225 -> OmnibusSchema.SFIXED64_UNIQUE;
-			case 221 -> OmnibusSchema.FIXED32_UNIQUE;
-			case 226 -> OmnibusSchema.FIXED64_UNIQUE;
-			case 222 -> OmnibusSchema.FLOAT_UNIQUE;
-			case 227 -> OmnibusSchema.DOUBLE_UNIQUE;
-			case 251 -> OmnibusSchema.MEMO_UNIQUE;
-			case 252 -> OmnibusSchema.RANDOM_BYTES_UNIQUE;
-			case 253 -> OmnibusSchema.NESTED_UNIQUE;
-			case 300 -> OmnibusSchema.INT32_REPEATED;
-			case 301 -> OmnibusSchema.INT64_REPEATED;
-			case 302 -> OmnibusSchema.UINT32_REPEATED;
-			case 303 -> OmnibusSchema.UINT64_REPEATED;
-			case 304 -> OmnibusSchema.FLAG_REPEATED;
-			case 305 -> OmnibusSchema.SUIT_REPEATED;
-			case 306 -> OmnibusSchema.SINT32_REPEATED;
-			case 307 -> OmnibusSchema.SINT64_REPEATED;
-			case 308 -> OmnibusSchema.SFIXED32_REPEATED;
-			case 309 -> OmnibusSchema.SFIXED64_REPEATED;
-			case 310 -> OmnibusSchema.FIXED32_REPEATED;
-			case 311 -> OmnibusSchema.FIXED64_REPEATED;
-			case 312 -> OmnibusSchema.FLOAT_REPEATED;
-			case 313 -> OmnibusSchema.DOUBLE_REPEATED;
-			case 314 -> OmnibusSchema.MEMO_REPEATED;
-			case 315 -> OmnibusSchema.RANDOM_BYTES_REPEATED;
-			case 316 -> OmnibusSchema.NESTED_REPEATED;
-			case 317 -> OmnibusSchema.FRUITS_REPEATED;
-			default -> throw new AssertionError("Unknown field type!! Test bug? Or intentional...?");
-		};
-	}
-
 	@Override
 	public void intField(final int fieldNum, final int value) {
 		switch (fieldNum) {
@@ -312,30 +361,64 @@ public class OmnibusParser extends ProtoParser {
 	@Override
 	public void objectField(int fieldNum, InputStream protoStream) throws IOException, MalformedProtobufException {
 		switch (fieldNum) {
-			case 3 -> nested = new NestedParser().parse(protoStream);
-			case 200 -> fruit = new OneOf<>(fieldNum, Fruits.FruitKind.APPLE, new AppleParser().parse(protoStream));
-			case 201 -> fruit = new OneOf<>(fieldNum, Fruits.FruitKind.BANANA, new BananaParser().parse(protoStream));
+			case 3 -> nested = nestedParser.parse(protoStream);
+			case 200 -> fruit = new OneOf<>(fieldNum, Fruits.FruitKind.APPLE, appleParser.parse(protoStream));
+			case 201 -> fruit = new OneOf<>(fieldNum, Fruits.FruitKind.BANANA, bananaParser.parse(protoStream));
 			case 253 ->
-					everything = new OneOf<>(fieldNum, Omnibus.Everything.NESTED, new NestedParser().parse(protoStream));
+					everything = new OneOf<>(fieldNum, Omnibus.Everything.NESTED, nestedParser.parse(protoStream));
 			case 316 -> {
 				if (nestedList == null) {
 					nestedList = new ArrayList<>();
 				}
 				// TODO ProtoStream needs to know what the length is so it can stop parsing when it gets to the end...
-				nestedList.add(new NestedParser().parse(protoStream));
+				nestedList.add(nestedParser.parse(protoStream));
 			}
 			case 317 -> {
 				if (fruitList == null) {
 					fruitList = new ArrayList<>();
 				}
-				fruitList.add(new FruitsParser().parse(protoStream));
+				fruitList.add(fruitsParser.parse(protoStream));
 			}
 			default -> throw new AssertionError("Not implemented in test code fieldNum='" + fieldNum + "'");
 		}
 	}
 
 	@Override
-	public void intList(int fieldNum, List<Integer> value) {
+	public void objectField(int fieldNum, ByteBuffer message) throws IOException, MalformedProtobufException {
+		switch (fieldNum) {
+			case 3 -> nested = nestedParser.parse(message);
+			case 200 -> fruit = new OneOf<>(fieldNum, Fruits.FruitKind.APPLE, appleParser.parse(message));
+			case 201 -> fruit = new OneOf<>(fieldNum, Fruits.FruitKind.BANANA, bananaParser.parse(message));
+			case 253 ->
+					everything = new OneOf<>(fieldNum, Omnibus.Everything.NESTED, nestedParser.parse(message));
+			case 316 -> {
+				if (nestedList == null) {
+					nestedList = new ArrayList<>();
+				}
+				nestedList.add(nestedParser.parse(message));
+			}
+			case 317 -> {
+				if (fruitList == null) {
+					fruitList = new ArrayList<>();
+				}
+				fruitList.add(fruitsParser.parse(message));
+			}
+			default -> throw new AssertionError("Not implemented in test code fieldNum='" + fieldNum + "'");
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void objectList(int fieldNum, List<?> messages) {
+		switch (fieldNum) {
+			case 316 -> nestedList = (List<Nested>) messages;
+			case 317 -> fruitList = (List<Object>) messages;
+			default -> throw new AssertionError("Not implemented in test code fieldNum='" + fieldNum + "'");
+		}
+	}
+
+	@Override
+	public void intList(int fieldNum, IntList value) {
 		switch (fieldNum) {
 			case 300 -> int32NumberList = value;
 			case 302 -> uint32NumberList = value;
@@ -347,7 +430,7 @@ public class OmnibusParser extends ProtoParser {
 	}
 
 	@Override
-	public void longList(int fieldNum, List<Long> value) {
+	public void longList(int fieldNum, LongList value) {
 		switch (fieldNum) {
 			case 301 -> int64NumberList = value;
 			case 303 -> uint64NumberList = value;
@@ -359,7 +442,23 @@ public class OmnibusParser extends ProtoParser {
 	}
 
 	@Override
-	public void booleanList(int fieldNum, List<Boolean> value) {
+	public void floatList(int fieldNum, FloatList value) {
+		switch (fieldNum) {
+			case 312 -> floatNumberList = value;
+			default -> throw new AssertionError("Not implemented in test code fieldNum='" + fieldNum + "'");
+		}
+	}
+
+	@Override
+	public void doubleList(int fieldNum, DoubleList value) {
+		switch (fieldNum) {
+			case 313 -> doubleNumberList = value;
+			default -> throw new AssertionError("Not implemented in test code fieldNum='" + fieldNum + "'");
+		}
+	}
+
+	@Override
+	public void booleanList(int fieldNum, BooleanList value) {
 		switch (fieldNum) {
 			case 304 -> flagList = value;
 			default -> throw new AssertionError("Not implemented in test code fieldNum='" + fieldNum + "'");
@@ -367,7 +466,7 @@ public class OmnibusParser extends ProtoParser {
 	}
 
 	@Override
-	public void enumList(final int fieldNum, final List<Integer> ordinals) {
+	public void enumList(final int fieldNum, final IntList ordinals) {
 		switch (fieldNum) {
 			case 305 -> suitEnumList = ordinals.stream().map(Suit::fromOrdinal).toList();
 			default -> throw new AssertionError("Not implemented in test code fieldNum='" + fieldNum + "'");
@@ -1,5 +1,6 @@
 package sample.target.proto.schemas;
 
+import com.hedera.hashgraph.protoparse.CompiledSchema;
 import com.hedera.hashgraph.protoparse.FieldDefinition;
 import com.hedera.hashgraph.protoparse.FieldType;
 
@@ -59,6 +60,63 @@ public class OmnibusSchema {
     public static final FieldDefinition NESTED_REPEATED = new FieldDefinition("nestedList", FieldType.MESSAGE, true, 316);
     public static final FieldDefinition FRUITS_REPEATED = new FieldDefinition("fruitsList", FieldType.MESSAGE, true, 317);
 
+    // All the fields, in field number order, which is the order they are normally written in
+    public static final CompiledSchema SCHEMA = new CompiledSchema(
+            MEMO,
+            RANDOM_BYTES,
+            NESTED,
+            INT32_NUMBER,
+            INT64_NUMBER,
+            UINT32_NUMBER,
+            UINT64_NUMBER,
+            FLAG,
+            SUIT,
+            SFIXED32_NUMBER,
+            FIXED32_NUMBER,
+            FLOAT_NUMBER,
+            SFIXED64_NUMBER,
+            FIXED64_NUMBER,
+            DOUBLE_NUMBER,
+            SINT32_NUMBER,
+            SINT64_NUMBER,
+            FRUIT_APPLE,
+            FRUIT_BANANA,
+            INT32_UNIQUE,
+            INT64_UNIQUE,
+            UINT32_UNIQUE,
+            UINT64_UNIQUE,
+            FLAG_UNIQUE,
+            SUIT_UNIQUE,
+            SFIXED32_UNIQUE,
+            FIXED32_UNIQUE,
+            FLOAT_UNIQUE,
+            SFIXED64_UNIQUE,
+            FIXED64_UNIQUE,
+            DOUBLE_UNIQUE,
+            SINT32_UNIQUE,
+            SINT64_UNIQUE,
+            MEMO_UNIQUE,
+            RANDOM_BYTES_UNIQUE,
+            NESTED_UNIQUE,
+            INT32_REPEATED,
+            INT64_REPEATED,
+            UINT32_REPEATED,
+            UINT64_REPEATED,
+            FLAG_REPEATED,
+            SUIT_REPEATED,
+            SINT32_REPEATED,
+            SINT64_REPEATED,
+            SFIXED32_REPEATED,
+            SFIXED64_REPEATED,
+            FIXED32_REPEATED,
+            FIXED64_REPEATED,
+            FLOAT_REPEATED,
+            DOUBLE_REPEATED,
+            MEMO_REPEATED,
+            RANDOM_BYTES_REPEATED,
+            NESTED_REPEATED,
+            FRUITS_REPEATED);
+
     public static boolean valid(FieldDefinition field) {
         return field != null && field == getField(field.number());
     }
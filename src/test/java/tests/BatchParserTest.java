@@ -0,0 +1,76 @@
+package tests;
+
+import com.hedera.hashgraph.protoparse.BatchParser;
+import com.hedera.hashgraph.protoparse.MalformedProtobufException;
+import org.junit.jupiter.api.Test;
+import sample.target.proto.parsers.OmnibusParser;
+import test.proto.Omnibus;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchParserTest {
+    private static List<ByteBuffer> batch(int size) {
+        final var buffers = new ArrayList<ByteBuffer>();
+        for (int i = 0; i < size; i++) {
+            final var bytes = Omnibus.newBuilder().setInt32Number(i).setMemo("memo " + i).build().toByteArray();
+            // Mix heap and direct buffers
+            buffers.add(i % 2 == 0
+                    ? ByteBuffer.wrap(bytes)
+                    : ByteBuffer.allocateDirect(bytes.length).put(bytes).flip());
+        }
+        return buffers;
+    }
+
+    @Test
+    void messagesComeOutInOrder() throws Exception {
+        final var buffers = batch(10_000);
+        final var batchParser = new BatchParser<>(OmnibusParser::new, OmnibusParser::parse);
+        final var pool = new ForkJoinPool(4);
+        try {
+            // Twice, so that the second batch reuses the parsers of the first
+            for (int round = 0; round < 2; round++) {
+                final var batch = batchParser.parseAll(buffers, pool);
+                assertEquals(10_000, batch.messages().size());
+                for (int i = 0; i < 10_000; i++) {
+                    assertEquals(i, batch.messages().get(i).int32Number());
+                    assertEquals("memo " + i, batch.messages().get(i).memo());
+                }
+                assertEquals(buffers.stream().mapToLong(ByteBuffer::remaining).sum(), batch.bytes());
+                assertTrue(batch.threads() >= 1 && batch.threads() <= 4);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void emptyBatch() throws Exception {
+        final var batch = new BatchParser<>(OmnibusParser::new, OmnibusParser::parse).parseAll(List.of());
+        assertTrue(batch.messages().isEmpty());
+        assertEquals(0, batch.bytes());
+    }
+
+    @Test
+    void batchFinishesWithoutTheExecutor() throws Exception {
+        // An executor that never runs anything leaves all of the work to the calling thread
+        final var batch = new BatchParser<>(OmnibusParser::new, OmnibusParser::parse)
+                .parseAll(batch(1000), task -> {});
+        assertEquals(1000, batch.messages().size());
+        assertEquals(999, batch.messages().get(999).int32Number());
+        assertEquals(1, batch.threads());
+    }
+
+    @Test
+    void malformedMessageFailsTheBatch() {
+        final var buffers = batch(1000);
+        buffers.set(567, ByteBuffer.wrap(new byte[] {(byte) 0x80}));
+        final var e = assertThrows(MalformedProtobufException.class, () ->
+                new BatchParser<>(OmnibusParser::new, OmnibusParser::parse).parseAll(buffers));
+        assertTrue(e.getMessage().startsWith("Message 567 "));
+    }
+}
@@ -0,0 +1,85 @@
+package tests;
+
+import com.hedera.hashgraph.protoparse.CompiledSchema;
+import com.hedera.hashgraph.protoparse.FieldDefinition;
+import com.hedera.hashgraph.protoparse.FieldType;
+import org.junit.jupiter.api.Test;
+import sample.target.proto.schemas.OmnibusSchema;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledSchemaTest {
+    @Test
+    void invalidFieldsThrow() {
+        final var a = new FieldDefinition("a", FieldType.INT_32, false, 1);
+        final var b = new FieldDefinition("b", FieldType.STRING, false, 1);
+        assertThrows(IllegalArgumentException.class, () -> new CompiledSchema(a, b));
+        assertThrows(IllegalArgumentException.class,
+                () -> new CompiledSchema(a, new FieldDefinition("zero", FieldType.BOOL, false, 0)));
+        assertThrows(NullPointerException.class, () -> new CompiledSchema(a, null));
+
+        // Field numbers this sparse are looked up in a hash table, which must also catch duplicates
+        final var far = new FieldDefinition("far", FieldType.INT_32, false, 100_000);
+        final var farAgain = new FieldDefinition("farAgain", FieldType.INT_32, false, 100_000);
+        assertThrows(IllegalArgumentException.class, () -> new CompiledSchema(a, far, farAgain));
+    }
+
+    @Test
+    void everyFieldIsFound() {
+        for (final var f : OmnibusSchema.SCHEMA.fields()) {
+            assertSame(f, OmnibusSchema.SCHEMA.getField(f.number()));
+        }
+        assertNull(OmnibusSchema.SCHEMA.getField(4));
+        assertNull(OmnibusSchema.SCHEMA.getField(318));
+        assertNull(OmnibusSchema.SCHEMA.getField(1_000_000));
+        assertNull(OmnibusSchema.SCHEMA.getField(-1));
+    }
+
+    @Test
+    void sparseFieldNumbersAreFound() {
+        final int[] numbers = { 1, 2, 15, 16, 2047, 2048, 100_000, 19_000, 536_870_911 };
+        final var fields = new FieldDefinition[numbers.length];
+        for (int i = 0; i < numbers.length; i++) {
+            fields[i] = new FieldDefinition("f" + i, FieldType.INT_64, false, numbers[i]);
+        }
+        final var schema = new CompiledSchema(fields);
+        for (final var f : fields) {
+            assertSame(f, schema.getField(f.number()));
+        }
+        for (int n = 3; n < 5000; n++) {
+            if (n != 15 && n != 16 && n != 2047 && n != 2048) {
+                assertNull(schema.getField(n));
+            }
+        }
+    }
+
+    @Test
+    void largeSparseSchemaIsBuilt() {
+        // Too many randomly scattered fields for any perfect hash table to be found, so a probed one is built
+        final var random = new Random(17);
+        final var numbers = new TreeSet<Integer>();
+        while (numbers.size() < 30_000) {
+            numbers.add(1 + random.nextInt(536_870_911));
+        }
+        final var fields = new ArrayList<FieldDefinition>();
+        for (final int number : numbers) {
+            fields.add(new FieldDefinition("f" + number, FieldType.INT_32, number % 3 == 0, number));
+        }
+        final var schema = assertTimeout(Duration.ofSeconds(10),
+                () -> new CompiledSchema(fields.toArray(new FieldDefinition[0])));
+        for (final var f : fields) {
+            assertSame(f, schema.getField(f.number()));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            final int number = 1 + random.nextInt(536_870_911);
+            if (!numbers.contains(number)) {
+                assertNull(schema.getField(number));
+            }
+        }
+    }
+}
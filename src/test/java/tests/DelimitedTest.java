@@ -0,0 +1,135 @@
+package tests;
+
+import com.hedera.hashgraph.protoparse.DelimitedReader;
+import com.hedera.hashgraph.protoparse.DelimitedWriter;
+import com.hedera.hashgraph.protoparse.MalformedProtobufException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import sample.target.model.Omnibus;
+import sample.target.proto.parsers.OmnibusParser;
+import sample.target.proto.writers.OmnibusWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DelimitedTest {
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 10, 1000})
+    void roundTrip(int count) throws Exception {
+        final var messages = new ArrayList<Omnibus>();
+        for (int i = 0; i < count; i++) {
+            // Every so often a message is big enough to make the reader grow its buffer
+            messages.add(new Omnibus.Builder()
+                    .int32Number(i)
+                    .randomBytes(ByteBuffer.wrap(new byte[i % 100 == 99 ? 20_000 : i % 10]))
+                    .build());
+        }
+
+        final var out = new ByteArrayOutputStream();
+        try (var writer = new DelimitedWriter<Omnibus>(out, new OmnibusWriter())) {
+            writer.writeAll(messages);
+        }
+
+        final var parser = new OmnibusParser();
+        try (var reader = new DelimitedReader<>(new ByteArrayInputStream(out.toByteArray()), parser::parse);
+             var stream = reader.stream()) {
+            final var read = stream.collect(Collectors.toList());
+            assertEquals(count, read.size());
+            for (int i = 0; i < count; i++) {
+                assertEquals(messages.get(i).int32Number(), read.get(i).int32Number());
+                assertEquals(messages.get(i).randomBytes(), read.get(i).randomBytes());
+            }
+        }
+    }
+
+    @Test
+    void readsWhatProtobufWrites() throws Exception {
+        final var out = new ByteArrayOutputStream();
+        for (int i = 0; i < 5; i++) {
+            test.proto.Omnibus.newBuilder().setInt64Number(i).setMemo("m" + i).build().writeDelimitedTo(out);
+        }
+
+        final var reader = new DelimitedReader<>(new ByteArrayInputStream(out.toByteArray()),
+                new OmnibusParser()::parse);
+        final var read = new ArrayList<Omnibus>();
+        reader.forEach(read::add);
+        assertEquals(5, read.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, read.get(i).int64Number());
+            assertEquals("m" + i, read.get(i).memo());
+        }
+        assertNull(reader.read());
+    }
+
+    @Test
+    void protobufReadsWhatIsWritten() throws Exception {
+        final var out = new ByteArrayOutputStream();
+        final var writer = new DelimitedWriter<Omnibus>(out, new OmnibusWriter());
+        for (int i = 0; i < 5; i++) {
+            writer.write(new Omnibus.Builder().uint32Number(i).build());
+        }
+
+        final var in = new ByteArrayInputStream(out.toByteArray());
+        final var read = new ArrayList<test.proto.Omnibus>();
+        test.proto.Omnibus message;
+        while ((message = test.proto.Omnibus.parseDelimitedFrom(in)) != null) {
+            read.add(message);
+        }
+        assertEquals(List.of(0, 1, 2, 3, 4), read.stream().map(test.proto.Omnibus::getUint32Number).toList());
+    }
+
+    @Test
+    void truncatedMessageIsMalformed() throws Exception {
+        final var out = new ByteArrayOutputStream();
+        new DelimitedWriter<Omnibus>(out, new OmnibusWriter()).write(new Omnibus.Builder().int64Number(12345).build());
+        final var bytes = out.toByteArray();
+
+        // Cut off in the message itself, and in its length
+        final var truncated = new DelimitedReader<>(
+                new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 1)), new OmnibusParser()::parse);
+        assertThrows(MalformedProtobufException.class, truncated::read);
+        final var noLength = new DelimitedReader<>(
+                new ByteArrayInputStream(new byte[] {(byte) 0x80}), new OmnibusParser()::parse);
+        assertThrows(MalformedProtobufException.class, noLength::read);
+
+        final var iterated = new DelimitedReader<>(
+                new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 1)), new OmnibusParser()::parse);
+        final var e = assertThrows(UncheckedIOException.class, () -> iterated.iterator().next());
+        assertInstanceOf(MalformedProtobufException.class, e.getCause().getCause());
+    }
+
+    @Test
+    void tooBigMessageIsMalformed() {
+        // Claims to be a megabyte long, with a limit of a kilobyte
+        final var reader = new DelimitedReader<>(
+                new ByteArrayInputStream(new byte[] {(byte) 0x80, (byte) 0x80, 0x40}),
+                new OmnibusParser()::parse, 1024);
+        assertThrows(MalformedProtobufException.class, reader::read);
+    }
+
+    @Test
+    void badLengthIsMalformed() {
+        final byte[][] lengths = {
+                // A length of 1, padded out to 10 bytes with a garbage last byte
+                {(byte) 0x81, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80,
+                        (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x7E, 0x50},
+                // A length of 1 in 6 bytes
+                {(byte) 0x81, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x00, 0x50},
+                // 5 bytes, but more than an int can hold
+                {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x7F, 0x50}};
+        for (final byte[] bytes : lengths) {
+            final var reader = new DelimitedReader<>(
+                    new ByteArrayInputStream(bytes), new OmnibusParser()::parse, Integer.MAX_VALUE);
+            assertThrows(MalformedProtobufException.class, reader::read);
+        }
+    }
+}
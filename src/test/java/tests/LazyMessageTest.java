@@ -0,0 +1,103 @@
+package tests;
+
+import com.google.protobuf.ByteString;
+import com.hedera.hashgraph.protoparse.LazyMessage;
+import com.hedera.hashgraph.protoparse.MalformedProtobufException;
+import com.hedera.hashgraph.protoparse.ParserLimits;
+import org.junit.jupiter.api.Test;
+import sample.target.proto.schemas.NestedSchema;
+import sample.target.proto.schemas.OmnibusSchema;
+import test.proto.Nested;
+import test.proto.Omnibus;
+import test.proto.Suit;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LazyMessageTest {
+    private static final byte[] PROTOBUF = Omnibus.newBuilder()
+            .setInt32Number(-5)
+            .setSint64Number(-77)
+            .setFixed32Number(9)
+            .setFloatNumber(1.5f)
+            .setDoubleNumber(2.5)
+            .setFlag(true)
+            .setSuitEnum(Suit.CLUBS)
+            .setMemo("A memo")
+            .setRandomBytes(ByteString.copyFrom(new byte[] {1, 2, 3}))
+            .setNested(Nested.newBuilder().setNestedMemo("Inner"))
+            .addAllInt64NumberList(List.of(1L, 2L, 300L))
+            .addAllMemoList(List.of("a", "b"))
+            .addNestedList(Nested.newBuilder().setNestedMemo("x"))
+            .addNestedList(Nested.newBuilder().setNestedMemo("y"))
+            .build()
+            .toByteArray();
+
+    private static List<ByteBuffer> buffers() {
+        return List.of(
+                ByteBuffer.wrap(PROTOBUF),
+                ByteBuffer.allocateDirect(PROTOBUF.length).put(PROTOBUF).flip(),
+                ByteBuffer.wrap(PROTOBUF).asReadOnlyBuffer());
+    }
+
+    @Test
+    void readOnlyTheFieldsAskedFor() throws Exception {
+        for (final ByteBuffer buffer : buffers()) {
+            final var message = new LazyMessage(buffer);
+            assertEquals(-5, message.getInt(OmnibusSchema.INT32_NUMBER));
+            assertEquals(-77, message.getLong(OmnibusSchema.SINT64_NUMBER));
+            assertEquals(9, message.getInt(OmnibusSchema.FIXED32_NUMBER));
+            assertEquals(1.5f, message.getFloat(OmnibusSchema.FLOAT_NUMBER));
+            assertEquals(2.5, message.getDouble(OmnibusSchema.DOUBLE_NUMBER));
+            assertTrue(message.getBoolean(OmnibusSchema.FLAG));
+            assertEquals(Suit.CLUBS.getNumber(), message.getInt(OmnibusSchema.SUIT));
+            assertEquals("A memo", message.getString(OmnibusSchema.MEMO));
+            assertEquals(ByteBuffer.wrap(new byte[] {1, 2, 3}), message.getBytes(OmnibusSchema.RANDOM_BYTES));
+            assertEquals("Inner", message.getMessage(OmnibusSchema.NESTED).getString(NestedSchema.NESTED_MEMO));
+            assertEquals(List.of(1L, 2L, 300L), message.getLongList(OmnibusSchema.INT64_REPEATED));
+            assertEquals(List.of("a", "b"), message.getStringList(OmnibusSchema.MEMO_REPEATED));
+            final var nestedList = message.getMessageList(OmnibusSchema.NESTED_REPEATED);
+            assertEquals(2, nestedList.size());
+            assertEquals("y", nestedList.get(1).getString(NestedSchema.NESTED_MEMO));
+            assertEquals(0, buffer.position());
+        }
+    }
+
+    @Test
+    void missingFieldsHaveTheirDefaults() throws Exception {
+        final var message = new LazyMessage(ByteBuffer.wrap(PROTOBUF));
+        assertFalse(message.has(OmnibusSchema.UINT32_NUMBER));
+        assertEquals(0, message.getInt(OmnibusSchema.UINT32_NUMBER));
+        assertEquals("", message.getString(OmnibusSchema.MEMO_UNIQUE));
+        assertNull(message.getMessage(OmnibusSchema.NESTED_UNIQUE));
+        assertTrue(message.getIntList(OmnibusSchema.INT32_REPEATED).isEmpty());
+    }
+
+    @Test
+    void lastOccurrenceWinsAndUnpackedElementsAreMerged() throws Exception {
+        // int32Number (10) = 1, then 2; int32NumberList (300) = 5 unpacked, then [6, 7] packed
+        final var message = new LazyMessage(ByteBuffer.wrap(new byte[] {
+                0x50, 1, 0x50, 2, (byte) 0xE0, 0x12, 5, (byte) 0xE2, 0x12, 2, 6, 7 }));
+        assertEquals(2, message.getInt(OmnibusSchema.INT32_NUMBER));
+        assertEquals(List.of(5, 6, 7), message.getIntList(OmnibusSchema.INT32_REPEATED));
+    }
+
+    @Test
+    void wrongTypesAndMalformedFieldsThrow() {
+        final var message = new LazyMessage(ByteBuffer.wrap(PROTOBUF));
+        assertThrows(IllegalArgumentException.class, () -> message.getLong(OmnibusSchema.INT32_NUMBER));
+        assertThrows(IllegalArgumentException.class, () -> message.getInt(OmnibusSchema.INT32_REPEATED));
+
+        // int32Number (10) with the fixed32 wire type
+        final var wrongWireType = new LazyMessage(ByteBuffer.wrap(new byte[] {0x55, 1, 2, 3, 4}));
+        assertThrows(MalformedProtobufException.class, () -> wrongWireType.getInt(OmnibusSchema.INT32_NUMBER));
+        // A nested message that runs past the end
+        final var truncated = new LazyMessage(ByteBuffer.wrap(new byte[] {0x50, 1, 0x1A, 9}));
+        assertThrows(MalformedProtobufException.class, () -> truncated.getInt(OmnibusSchema.INT32_NUMBER));
+
+        final var tooDeep = new LazyMessage(ByteBuffer.wrap(PROTOBUF), ParserLimits.UNLIMITED.withMaxDepth(0));
+        assertThrows(MalformedProtobufException.class, () -> tooDeep.getMessage(OmnibusSchema.NESTED));
+    }
+}
@@ -1,18 +1,40 @@
 package tests;
 
 import com.google.protobuf.ByteString;
+import com.hedera.hashgraph.protoparse.DoubleList;
+import com.hedera.hashgraph.protoparse.FieldDefinition;
+import com.hedera.hashgraph.protoparse.FieldMask;
+import com.hedera.hashgraph.protoparse.FloatList;
+import com.hedera.hashgraph.protoparse.IntList;
+import com.hedera.hashgraph.protoparse.MalformedProtobufException;
+import com.hedera.hashgraph.protoparse.ParserLimits;
+import com.hedera.hashgraph.protoparse.ProtoParser;
+import com.hedera.hashgraph.protoparse.StringCache;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.junit.jupiter.params.provider.ValueSource;
 import sample.target.model.Suit;
 import sample.target.proto.parsers.OmnibusParser;
+import sample.target.proto.schemas.AppleSchema;
+import sample.target.proto.schemas.NestedSchema;
+import sample.target.proto.schemas.OmnibusSchema;
 import test.proto.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -126,6 +148,25 @@ class ParseTest {
 		assertEquals(val, omnibus.uint64Number());
 	}
 
+	@ParameterizedTest
+	@ValueSource(longs = { Long.MIN_VALUE, -5, 0, 1, 127, 128, 16_383, 16_384, 1L << 55, (1L << 56) - 1, 1L << 56, Long.MAX_VALUE })
+	void parseVarintsFollowedByMoreFields(long val) throws Exception {
+		// Varints with plenty of bytes after them are decoded a word at a time rather than a byte at a time
+		final var protobuf = test.proto.Omnibus.newBuilder()
+				.setInt64Number(val)
+				.setSint64Number(val)
+				.addAllInt64NumberList(List.of(val, val, val))
+				.setDoubleNumber(1.5)
+				.build()
+				.toByteArray();
+
+		final var omnibus = parser.parse(protobuf);
+		assertEquals(val, omnibus.int64Number());
+		assertEquals(val, omnibus.sint64Number());
+		assertEquals(List.of(val, val, val), omnibus.int64NumberList());
+		assertEquals(1.5, omnibus.doubleNumber());
+	}
+
 	@ParameterizedTest
 	@ValueSource(booleans = { false, true })
 	void parseBooleanOnly(boolean val) throws Exception {
@@ -304,6 +345,19 @@ class ParseTest {
 		assertEquals(new sample.target.model.Nested(nestedMemo), omnibus.nested());
 	}
 
+	@Test
+	void nestedMessageMustNotOverrunItsLength() {
+		// A nested message (field 3) of 4 bytes, holding a 5 byte string, followed by padding
+		final byte[] overrun = { 26, 4, (byte) 0xA2, 0x06, 5, 'h', 'e', 'l', 'l', 'o', 0, 0, 0 };
+		assertThrows(MalformedProtobufException.class, () -> parser.parse(overrun));
+		assertThrows(MalformedProtobufException.class, () -> parser.parse(new ByteArrayInputStream(overrun)));
+
+		// A fruitsList entry (field 317) of 5 bytes, holding an apple that claims to be 10 bytes long
+		final byte[] tooLong = { (byte) 0xEA, 0x13, 5, 0x0A, 10, 0x0A, 1, 'a', 0, 0, 0, 0, 0, 0, 0, 0 };
+		assertThrows(MalformedProtobufException.class, () -> parser.parse(tooLong));
+		assertThrows(MalformedProtobufException.class, () -> parser.parse(new ByteArrayInputStream(tooLong)));
+	}
+
 	@Test
 	void parseOneOfFruitOnly() throws Exception {
 		var protobuf = Omnibus.newBuilder()
@@ -757,4 +811,616 @@ class ParseTest {
 			assertEquals(list.get(i), omnibus.fruitList().get(i));
 		}
 	}
+
+	@Test
+	void parseFromEveryKindOfInput() throws Exception {
+		final var protobuf = Omnibus.newBuilder()
+				.setInt32Number(-42)
+				.setFixed64Number(Long.MIN_VALUE)
+				.setDoubleNumber(12.5)
+				.setMemo("I need some ℏ to run work on Hedera!")
+				.setNested(Nested.newBuilder().setNestedMemo("Reminder"))
+				.addAllSint64NumberList(List.of(-1L, 0L, Long.MAX_VALUE))
+				.build()
+				.toByteArray();
+		final var expected = parser.parse(new ByteArrayInputStream(protobuf));
+
+		assertEquals(expected, parser.parse(protobuf));
+		assertEquals(expected, parser.parse(ByteBuffer.wrap(protobuf)));
+		assertEquals(expected, parser.parse(ByteBuffer.wrap(protobuf).asReadOnlyBuffer()));
+
+		// A heap buffer where the protobuf bytes are not at the start of the backing array
+		final var padded = new byte[protobuf.length + 3];
+		System.arraycopy(protobuf, 0, padded, 2, protobuf.length);
+		assertEquals(expected, parser.parse(ByteBuffer.wrap(padded, 2, protobuf.length)));
+		assertEquals(expected, parser.parse(ByteBuffer.wrap(padded, 2, protobuf.length).slice()));
+	}
+
+	@Test
+	void parseFromStreamConsumesOnlyTheMessage() throws Exception {
+		final var protobuf = Omnibus.newBuilder()
+				.setMemo("I need some ℏ to run work on Hedera!")
+				.setNested(Nested.newBuilder().setNestedMemo("Reminder"))
+				.addAllInt64NumberList(List.of(1L, 200L, 30_000L, Long.MIN_VALUE))
+				.build()
+				.toByteArray();
+		final var expected = parser.parse(protobuf);
+
+		// Two messages back to back, followed by a trailing byte
+		final var out = new ByteArrayOutputStream();
+		out.write(protobuf);
+		out.write(protobuf);
+		out.write(42);
+		final var in = new ByteArrayInputStream(out.toByteArray());
+
+		assertEquals(expected, parser.parse(in, protobuf.length));
+		assertEquals(expected, new OmnibusParser(16).parse(in, protobuf.length));
+		assertEquals(42, in.read());
+
+		assertThrows(MalformedProtobufException.class,
+				() -> parser.parse(new ByteArrayInputStream(protobuf), protobuf.length + 1));
+	}
+
+	@Test
+	void parseFromMappedFile(@TempDir Path dir) throws Exception {
+		final var protobuf = Omnibus.newBuilder()
+				.setMemo("I need some ℏ to run work on Hedera!")
+				.setNested(Nested.newBuilder().setNestedMemo("Reminder"))
+				.addAllFixed64NumberList(List.of(1L, 200L, 30_000L, Long.MIN_VALUE))
+				.setRandomBytes(ByteString.copyFrom(new byte[] { 1, 2, 3, 4, 5 }))
+				.build()
+				.toByteArray();
+		final var expected = parser.parse(protobuf);
+
+		final var whole = dir.resolve("whole.bin");
+		Files.write(whole, protobuf);
+		assertEquals(expected, parser.parse(whole));
+
+		// The message somewhere in the middle of a bigger file
+		final var out = new ByteArrayOutputStream();
+		out.write(new byte[] { 42, 42, 42 });
+		out.write(protobuf);
+		out.write(42);
+		final var middle = dir.resolve("middle.bin");
+		Files.write(middle, out.toByteArray());
+		try (var channel = FileChannel.open(middle)) {
+			assertEquals(expected, parser.parse(channel, 3, protobuf.length));
+			assertThrows(MalformedProtobufException.class, () -> parser.parse(channel, 3, protobuf.length - 1));
+			assertThrows(IllegalArgumentException.class, () -> parser.parse(channel, 3, protobuf.length + 2));
+			assertEquals(0, channel.position());
+		}
+
+		// Direct buffers are decoded directly too
+		final var direct = ByteBuffer.allocateDirect(protobuf.length + 1).put((byte) 42).put(protobuf).position(1);
+		assertEquals(expected, parser.parse(direct));
+		assertEquals(1, direct.position());
+	}
+
+	@Test
+	void parseBytesAsSlicesOfTheInput() throws Exception {
+		final var protobuf = Omnibus.newBuilder()
+				.setRandomBytes(ByteString.copyFrom(new byte[] { 1, 2, 3, 4, 5 }))
+				.addRandomBytesList(ByteString.copyFrom(new byte[] { 6, 7 }))
+				.addRandomBytesList(ByteString.copyFrom(new byte[] { 8 }))
+				.build()
+				.toByteArray();
+		final var expected = parser.parse(protobuf);
+
+		final var zeroCopyParser = new OmnibusParser();
+		zeroCopyParser.zeroCopyBytes(true);
+		assertEquals(expected, zeroCopyParser.parse(ByteBuffer.allocateDirect(protobuf.length).put(protobuf).flip()));
+		assertEquals(expected, zeroCopyParser.parse(new ByteArrayInputStream(protobuf)));
+
+		final var input = protobuf.clone();
+		final var omnibus = zeroCopyParser.parse(input);
+		assertEquals(expected, omnibus);
+		assertTrue(omnibus.randomBytes().isReadOnly());
+
+		// The slices share the memory of the input, so they see changes made to it
+		Arrays.fill(input, (byte) 0);
+		assertEquals(0, omnibus.randomBytes().get(0));
+		assertEquals(0, omnibus.randomBytesList().get(1).get(0));
+	}
+
+	@Test
+	void parseNestedMessagesAsSlices() throws Exception {
+		final var protobuf = Omnibus.newBuilder()
+				.setNested(Nested.newBuilder().setNestedMemo("Bob"))
+				.setApple(Apple.newBuilder().setVariety("Gala"))
+				.addNestedList(Nested.newBuilder().setNestedMemo("Sue"))
+				.addNestedList(Nested.newBuilder().setNestedMemo(""))
+				.addFruitsList(Fruits.newBuilder().setBanana(Banana.newBuilder().setVariety("Yellow")))
+				.setMemo("after the nested messages")
+				.build()
+				.toByteArray();
+		final var expected = parser.parse(protobuf);
+
+		final var sliceParser = new OmnibusParser();
+		sliceParser.messageSlices(true);
+		assertEquals(expected, sliceParser.parse(protobuf));
+		assertEquals(expected, sliceParser.parse(ByteBuffer.allocateDirect(protobuf.length).put(protobuf).flip()));
+		assertEquals(expected, sliceParser.parse(new ByteArrayInputStream(protobuf)));
+
+		// A nested message that runs past the end of the input
+		final var truncated = Arrays.copyOf(protobuf, 3);
+		assertThrows(MalformedProtobufException.class, () -> sliceParser.parse(truncated));
+	}
+
+	@Test
+	void parseRepeatedMessagesInParallel() throws Exception {
+		final var builder = Omnibus.newBuilder().setMemo("before the lists");
+		for (int i = 0; i < 1000; i++) {
+			builder.addNestedList(Nested.newBuilder().setNestedMemo("Nested " + i));
+			builder.addFruitsList(i % 2 == 0
+					? Fruits.newBuilder().setApple(Apple.newBuilder().setVariety("Apple " + i))
+					: Fruits.newBuilder().setBanana(Banana.newBuilder().setVariety("Banana " + i)));
+		}
+		final var protobuf = builder.setInt32Number(7).build().toByteArray();
+		final var expected = parser.parse(protobuf);
+
+		final var pool = new ForkJoinPool(4);
+		try {
+			final var parallelParser = new OmnibusParser();
+			parallelParser.parallelLists(pool);
+			assertEquals(expected, parallelParser.parse(protobuf));
+			assertEquals(expected, parallelParser.parse(ByteBuffer.allocateDirect(protobuf.length).put(protobuf).flip()));
+			assertEquals(expected, parallelParser.parse(new ByteArrayInputStream(protobuf)));
+
+			// An element that runs past its end fails the whole message
+			final var malformed = Omnibus.newBuilder()
+					.addNestedList(Nested.newBuilder().setNestedMemo("Sue"))
+					.build()
+					.toByteArray();
+			malformed[malformed.length - 4] = 10;
+			assertThrows(MalformedProtobufException.class, () -> parallelParser.parse(malformed));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	void parseOnlyTheFieldsInTheMask() throws Exception {
+		final var protobuf = Omnibus.newBuilder()
+				.setInt32Number(5)
+				.setUint32Number(6)
+				.setRandomBytes(ByteString.copyFrom(new byte[10_000]))
+				.setNested(Nested.newBuilder().setNestedMemo("Inner"))
+				.setApple(Apple.newBuilder().setVariety("Gala"))
+				.addAllInt64NumberList(List.of(1L, 2L))
+				.addNestedList(Nested.newBuilder().setNestedMemo("Sue"))
+				.build()
+				.toByteArray();
+		final var mask = FieldMask.builder()
+				.include(OmnibusSchema.INT32_NUMBER)
+				.include(OmnibusSchema.NESTED, NestedSchema.NESTED_MEMO)
+				.include(OmnibusSchema.FRUIT_APPLE, AppleSchema.VARIETY)
+				.build();
+		assertEquals("FieldMask[3[100], 10, 200[1]]", mask.toString());
+
+		for (final var omnibus : List.of(parser.parse(protobuf, mask),
+				parser.parse(ByteBuffer.allocateDirect(protobuf.length).put(protobuf).flip(), mask))) {
+			assertEquals(5, omnibus.int32Number());
+			assertEquals(new sample.target.model.Nested("Inner"), omnibus.nested());
+			assertEquals(new sample.target.model.Apple("Gala"), omnibus.fruit().value());
+			assertEquals(0, omnibus.uint32Number());
+			assertEquals(0, omnibus.randomBytes().remaining());
+			assertTrue(omnibus.int64NumberList().isEmpty());
+			assertTrue(omnibus.nestedList().isEmpty());
+		}
+
+		// Selecting every field that is there parses all of it, and the mask was only for that parse
+		final var everything = FieldMask.builder();
+		for (final FieldDefinition field : List.of(OmnibusSchema.INT32_NUMBER, OmnibusSchema.UINT32_NUMBER,
+				OmnibusSchema.RANDOM_BYTES, OmnibusSchema.NESTED, OmnibusSchema.FRUIT_APPLE,
+				OmnibusSchema.INT64_REPEATED, OmnibusSchema.NESTED_REPEATED)) {
+			everything.include(field);
+		}
+		assertEquals(parser.parse(protobuf), parser.parse(protobuf, everything.build()));
+		assertThrows(IllegalArgumentException.class,
+				() -> FieldMask.builder().include(OmnibusSchema.INT32_NUMBER, NestedSchema.NESTED_MEMO));
+	}
+
+	@Test
+	void fieldsInSchemaOrderArePredicted() throws Exception {
+		final var protobuf = Omnibus.newBuilder()
+				.setInt32Number(1)
+				.setInt64Number(2)
+				.setUint32Number(3)
+				.setUint64Number(4)
+				.setFlag(true)
+				.setSuitEnum(test.proto.Suit.CLUBS)
+				.build()
+				.toByteArray();
+
+		parser.resetPredictionCounters();
+		parser.parse(protobuf);
+		// The first field expected is memo (1), which is missing, so int32Number (10) has to be looked up.
+		// After that, each field is the one after the last in the schema.
+		assertEquals(5, parser.predictionHits());
+		assertEquals(1, parser.predictionMisses());
+		assertEquals(5.0 / 6, parser.predictionHitRate(), 0.0001);
+
+		parser.resetPredictionCounters();
+		assertEquals(0, parser.predictionHitRate());
+	}
+
+	@Test
+	void parseStringsLazily() throws Exception {
+		final var protobuf = Omnibus.newBuilder()
+				.setMemo("I need some ℏ to run work on Hedera!")
+				.addAllMemoList(List.of("Bob", "", "Sue"))
+				.build()
+				.toByteArray();
+		final var expected = parser.parse(protobuf);
+
+		// By default, the views are decoded and passed on to stringField
+		final var lazyParser = new OmnibusParser();
+		lazyParser.lazyStrings(true);
+		assertEquals(expected, lazyParser.parse(protobuf));
+		assertEquals(expected, lazyParser.parse(ByteBuffer.allocateDirect(protobuf.length).put(protobuf).flip()));
+		assertEquals(expected, lazyParser.parse(new ByteArrayInputStream(protobuf)));
+	}
+
+	@Test
+	void parseStringsThroughCache() throws Exception {
+		final var protobuf = Omnibus.newBuilder()
+				.setMemo("I need some ℏ to run work on Hedera!")
+				.addAllMemoList(List.of("Bob", "Sue", "Bob"))
+				.build()
+				.toByteArray();
+		final var expected = parser.parse(protobuf);
+
+		final var cache = new StringCache(64);
+		final var cachingParser = new OmnibusParser();
+		cachingParser.stringCache(cache);
+		final var first = cachingParser.parse(protobuf);
+		assertEquals(expected, first);
+		assertSame(first.memoList().get(0), first.memoList().get(2));
+
+		final var second = cachingParser.parse(ByteBuffer.allocateDirect(protobuf.length).put(protobuf).flip());
+		assertEquals(expected, second);
+		assertSame(first.memo(), second.memo());
+		assertEquals(3, cache.misses());
+		assertEquals(5, cache.hits());
+	}
+
+	@Test
+	void parsePackedListsAsPrimitiveLists() throws Exception {
+		final var protobuf = Omnibus.newBuilder()
+				.addAllFloatNumberList(List.of(1.5f, Float.NaN, -3f))
+				.addAllDoubleNumberList(List.of(1.5, Double.MAX_VALUE))
+				.addAllInt64NumberList(List.of(1L, Long.MIN_VALUE, 300L))
+				.addAllInt32NumberList(List.of(-1, 0, 1))
+				.addAllFlagList(List.of(true, false, true))
+				.build()
+				.toByteArray();
+
+		for (final var omnibus : List.of(parser.parse(protobuf), parser.parse(new ByteArrayInputStream(protobuf)))) {
+			assertEquals(FloatList.of(1.5f, Float.NaN, -3f), omnibus.floatNumberList());
+			assertEquals(DoubleList.of(1.5, Double.MAX_VALUE), omnibus.doubleNumberList());
+			assertEquals(List.of(1L, Long.MIN_VALUE, 300L), omnibus.int64NumberList());
+			assertArrayEquals(new int[] { -1, 0, 1 }, ((IntList) omnibus.int32NumberList()).toIntArray());
+			assertEquals(List.of(true, false, true), omnibus.flagList());
+		}
+	}
+
+	@Test
+	void streamPackedElements() throws Exception {
+		final var protobuf = Omnibus.newBuilder()
+				.addAllSint32NumberList(List.of(-1, 2, -3, 4))
+				.addAllFixed64NumberList(List.of(10L, 20L, 30L))
+				.addAllDoubleNumberList(List.of(0.5, 0.25))
+				.addAllFloatNumberList(List.of(1.5f))
+				.addAllFlagList(List.of(true, false, true))
+				.addAllInt32NumberList(List.of(7, 8))
+				.build()
+				.toByteArray();
+
+		final var summer = new SummingParser();
+		summer.parse(protobuf);
+		assertEquals(2, summer.intSum);
+		assertEquals(60, summer.longSum);
+		assertEquals(2.25, summer.doubleSum);
+		assertEquals(2, summer.trueCount);
+		assertEquals(4 + 3 + 2 + 1 + 3, summer.count);
+		// Field 300 wasn't streamed, so it came as a list
+		assertEquals(List.of(7, 8), summer.int32NumberList);
+	}
+
+	@Test
+	void manySmallPackedRunsOfOneFieldAreMerged() throws Exception {
+		// int32NumberList (300), doubleNumberList (313) and flagList (304), each split into one element packed
+		// runs. Merging them must not copy the whole list for every run.
+		final int runs = 100_000;
+		final var out = new ByteArrayOutputStream();
+		for (int i = 0; i < runs; i++) {
+			out.writeBytes(new byte[] { (byte) 0xE2, 0x12, 0x01, (byte) (i % 100) });
+			out.writeBytes(new byte[] { (byte) 0xCA, 0x13, 0x08 });
+			out.writeBytes(ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putDouble(i).array());
+			out.writeBytes(new byte[] { (byte) 0x82, 0x13, 0x01, (byte) (i & 1) });
+		}
+		final byte[] protobuf = out.toByteArray();
+
+		final var omnibus = assertTimeout(Duration.ofSeconds(10), () -> parser.parse(protobuf));
+		assertEquals(runs, omnibus.int32NumberList().size());
+		assertEquals(runs, omnibus.doubleNumberList().size());
+		assertEquals(runs, omnibus.flagList().size());
+		for (int i = 0; i < runs; i++) {
+			assertEquals(i % 100, omnibus.int32NumberList().get(i));
+			assertEquals(i, omnibus.doubleNumberList().get(i));
+			assertEquals((i & 1) == 1, omnibus.flagList().get(i));
+		}
+	}
+
+	@Test
+	void wrongWireTypeIsMalformed() {
+		// int32Number (10) as a length delimited field, and memo (1) as a varint
+		final byte[] delimitedInt = { 0x52, 0x01, 0x01 };
+		final byte[] varintString = { 0x08, 0x01 };
+		for (final byte[] protobuf : List.of(delimitedInt, varintString)) {
+			assertThrows(MalformedProtobufException.class, () -> parser.parse(protobuf));
+			assertThrows(MalformedProtobufException.class, () -> new SummingParser().parse(protobuf));
+		}
+	}
+
+	@Test
+	void parserWithoutSchemaOrFieldDefinitionsFails() {
+		// Neither constructed with a CompiledSchema nor overriding getFieldDefinition
+		final var noFields = new ProtoParser() {
+			void parse(byte[] protobuf) throws MalformedProtobufException {
+				start(protobuf);
+			}
+		};
+		assertThrows(IllegalStateException.class, () -> noFields.parse(new byte[] { 0x50, 0x01 }));
+	}
+
+	@Test
+	void parseUnpackedRepeatedScalars() throws Exception {
+		// int32NumberList (300) with a varint tag, rather than packed
+		final byte[] protobuf = { (byte) 0xE0, 0x12, 0x07 };
+		assertEquals(List.of(7), parser.parse(protobuf).int32NumberList());
+
+		final var summer = new SummingParser();
+		summer.parse(protobuf);
+		assertEquals(List.of(7), summer.int32NumberList);
+	}
+
+	@Test
+	void mergePackedAndUnpackedOccurrences() throws Exception {
+		// int32NumberList (300) packed, then unpacked, then packed again, with int32Number (10) in between
+		final byte[] protobuf = {
+				(byte) 0xE2, 0x12, 0x02, 0x01, 0x02,
+				(byte) 0xE0, 0x12, 0x03,
+				0x50, 0x09,
+				(byte) 0xE2, 0x12, 0x02, 0x04, 0x05 };
+		for (final var omnibus : List.of(parser.parse(protobuf), parser.parse(new ByteArrayInputStream(protobuf)))) {
+			assertEquals(List.of(1, 2, 3, 4, 5), omnibus.int32NumberList());
+			assertEquals(9, omnibus.int32Number());
+		}
+
+		final var summer = new SummingParser();
+		summer.parse(protobuf);
+		assertEquals(1, summer.intListCalls);
+		assertEquals(List.of(1, 2, 3, 4, 5), summer.int32NumberList);
+
+		// The lists are reused, but nothing is carried over from one message to the next
+		assertEquals(List.of(7), parser.parse(new byte[] { (byte) 0xE0, 0x12, 0x07 }).int32NumberList());
+	}
+
+	@Test
+	void hugeLengthIsRejectedBeforeAllocating() {
+		// randomBytes (2) claiming to be 2 GB long
+		final byte[] protobuf = { 0x12, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07 };
+		// The length of a byte[] is known, so it is checked against what is left even without limits
+		assertThrows(MalformedProtobufException.class, () -> parser.parse(protobuf));
+		// The length of a stream isn't, so it takes a limit
+		parser.limits(ParserLimits.UNTRUSTED);
+		assertThrows(MalformedProtobufException.class, () -> parser.parse(new ByteArrayInputStream(protobuf)));
+	}
+
+	@Test
+	void limitsAreEnforced() throws Exception {
+		final var protobuf = Omnibus.newBuilder()
+				.setMemo("Too long")
+				.setNested(Nested.newBuilder().setNestedMemo("Nested"))
+				.addAllInt32NumberList(List.of(1, 2, 3))
+				.build()
+				.toByteArray();
+		// An unknown field, number 999
+		final byte[] withUnknown = Arrays.copyOf(protobuf, protobuf.length + 3);
+		withUnknown[protobuf.length] = (byte) 0xB8;
+		withUnknown[protobuf.length + 1] = 0x3E;
+		withUnknown[protobuf.length + 2] = 0x01;
+
+		for (final var limits : List.of(
+				ParserLimits.UNTRUSTED.withMaxMessageSize(protobuf.length - 1),
+				ParserLimits.UNTRUSTED.withMaxFieldLength(5),
+				ParserLimits.UNTRUSTED.withMaxDepth(0),
+				ParserLimits.UNTRUSTED.withMaxRepeatedElements(2))) {
+			parser.limits(limits);
+			assertThrows(MalformedProtobufException.class, () -> parser.parse(protobuf));
+			assertThrows(MalformedProtobufException.class, () -> parser.parse(new ByteArrayInputStream(protobuf)));
+		}
+
+		parser.limits(ParserLimits.UNTRUSTED.withMaxUnknownFields(0));
+		assertEquals("Too long", parser.parse(protobuf).memo());
+		assertThrows(MalformedProtobufException.class, () -> parser.parse(withUnknown));
+
+		// Exactly at the limits is fine
+		parser.limits(ParserLimits.UNTRUSTED
+				.withMaxMessageSize(protobuf.length)
+				.withMaxFieldLength(9)
+				.withMaxDepth(1)
+				.withMaxRepeatedElements(3)
+				.withMaxUnknownFields(0));
+		assertEquals("Nested", parser.parse(protobuf).nested().nestedMemo());
+		assertEquals(List.of(1, 2, 3), parser.parse(new ByteArrayInputStream(protobuf)).int32NumberList());
+	}
+
+	@Test
+	void largeUnknownFieldsAreSkipped(@TempDir Path dir) throws Exception {
+		final var protobuf = Omnibus.newBuilder()
+				.setInt32Number(7)
+				.setMemo("After the unknown field")
+				.build()
+				.toByteArray();
+		// An unknown bytes field, number 999, of 1 MiB, ahead of the known fields
+		final byte[] header = { (byte) 0xBA, 0x3E, (byte) 0x80, (byte) 0x80, 0x40 };
+		final byte[] withUnknown = new byte[header.length + (1 << 20) + protobuf.length];
+		System.arraycopy(header, 0, withUnknown, 0, header.length);
+		System.arraycopy(protobuf, 0, withUnknown, withUnknown.length - protobuf.length, protobuf.length);
+		final Path file = Files.write(dir.resolve("unknown.pb"), withUnknown);
+		// A stream that never skips, so every byte has to be read past instead
+		final var unskippable = new ByteArrayInputStream(withUnknown) {
+			@Override
+			public synchronized long skip(long n) {
+				return 0;
+			}
+		};
+
+		final var expected = parser.parse(protobuf);
+		assertEquals(expected, parser.parse(withUnknown));
+		assertEquals(expected, parser.parse(ByteBuffer.allocateDirect(withUnknown.length).put(withUnknown).flip()));
+		assertEquals(expected, parser.parse(new ByteArrayInputStream(withUnknown)));
+		assertEquals(expected, parser.parse(unskippable));
+		assertEquals(expected, parser.parse(file));
+		try (var in = Files.newInputStream(file)) {
+			assertEquals(expected, parser.parse(in));
+		}
+
+		// Cut off in the middle of the unknown field
+		final byte[] truncated = Arrays.copyOf(withUnknown, 1000);
+		final Path truncatedFile = Files.write(dir.resolve("truncated.pb"), truncated);
+		assertThrows(MalformedProtobufException.class, () -> parser.parse(truncated));
+		assertThrows(MalformedProtobufException.class, () -> parser.parse(new ByteArrayInputStream(truncated)));
+		assertThrows(MalformedProtobufException.class, () -> parser.parse(truncatedFile));
+		// Files skip past their end without complaint, so the end has to be noticed some other way
+		try (var in = new FileInputStream(truncatedFile.toFile())) {
+			assertThrows(MalformedProtobufException.class, () -> parser.parse(in));
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = { 1, 2, 3, 7, 64 })
+	void parseIncrementally(int chunkSize) throws Exception {
+		final var protobuf = Omnibus.newBuilder()
+				.setMemo("Split across chunks")
+				.setInt32Number(-1)
+				.setDoubleNumber(2.5)
+				.setNested(Nested.newBuilder().setNestedMemo("Nested"))
+				.addAllInt64NumberList(List.of(1L, 300L, Long.MAX_VALUE))
+				.build()
+				.toByteArray();
+		final var expected = parser.parse(protobuf);
+
+		for (final long length : new long[] { protobuf.length, -1 }) {
+			parser.startFeed(length);
+			sample.target.model.Omnibus omnibus = null;
+			for (int pos = 0; pos < protobuf.length; pos += chunkSize) {
+				assertNull(omnibus);
+				omnibus = parser.feedChunk(ByteBuffer.wrap(protobuf, pos, Math.min(chunkSize, protobuf.length - pos)));
+			}
+			if (length < 0) {
+				assertNull(omnibus);
+				omnibus = parser.finishFeed();
+			}
+			assertEquals(expected, omnibus);
+		}
+	}
+
+	@Test
+	void feedChunksThatStartPartWayIntoTheirBuffers() throws Exception {
+		final var protobuf = Omnibus.newBuilder()
+				.setMemo("Each chunk is at the end of a bigger buffer")
+				.setInt32Number(42)
+				.build()
+				.toByteArray();
+
+		// With no length and no limits, the chunks are ahead of the bytes consumed so far in their buffers
+		parser.startFeed(-1);
+		for (int pos = 0; pos < protobuf.length; pos += 5) {
+			final int length = Math.min(5, protobuf.length - pos);
+			final byte[] buffer = new byte[1000 + length];
+			System.arraycopy(protobuf, pos, buffer, 1000, length);
+			final var chunk = ByteBuffer.wrap(buffer, 1000, length);
+			assertNull(parser.feedChunk(chunk));
+			assertEquals(buffer.length, chunk.position());
+		}
+		assertEquals(parser.parse(protobuf), parser.finishFeed());
+	}
+
+	@Test
+	void feedStopsAtTheEndOfTheMessage() throws Exception {
+		// memo (1) "Hi", followed by the first byte of the next message
+		final var chunk = ByteBuffer.wrap(new byte[] { 0x0A, 0x02, 'H', 'i', 0x0A });
+		parser.startFeed(4);
+		assertEquals("Hi", parser.feedChunk(chunk).memo());
+		assertEquals(4, chunk.position());
+	}
+
+	@Test
+	void truncatedFeedIsMalformed() throws Exception {
+		parser.startFeed(-1);
+		assertNull(parser.feedChunk(ByteBuffer.wrap(new byte[] { 0x0A, 0x05, 'H', 'i' })));
+		assertThrows(MalformedProtobufException.class, parser::finishFeed);
+		assertThrows(IllegalStateException.class, () -> parser.feedChunk(ByteBuffer.allocate(1)));
+	}
+
+	/**
+	 * Folds every packed field except int32NumberList (300) as it is read, without collecting it
+	 */
+	private static final class SummingParser extends ProtoParser {
+		private int intSum;
+		private long longSum;
+		private double doubleSum;
+		private int trueCount;
+		private int count;
+		private List<Integer> int32NumberList;
+		private int intListCalls;
+
+		void parse(byte[] protobuf) throws MalformedProtobufException {
+			start(protobuf);
+		}
+
+		@Override
+		protected FieldDefinition getFieldDefinition(int fieldNumber) {
+			return OmnibusSchema.getField(fieldNumber);
+		}
+
+		@Override
+		public boolean packedStart(int fieldNum, int byteLength) {
+			return fieldNum != 300;
+		}
+
+		@Override
+		public void intElement(int fieldNum, int value) {
+			intSum += value;
+		}
+
+		@Override
+		public void longElement(int fieldNum, long value) {
+			longSum += value;
+		}
+
+		@Override
+		public void doubleElement(int fieldNum, double value) {
+			doubleSum += value;
+		}
+
+		@Override
+		public void booleanElement(int fieldNum, boolean value) {
+			trueCount += value ? 1 : 0;
+		}
+
+		@Override
+		public void packedEnd(int fieldNum, int count) {
+			this.count += count;
+		}
+
+		@Override
+		public void intList(int fieldNum, List<Integer> value) {
+			int32NumberList = value;
+			intListCalls++;
+		}
+	}
 }
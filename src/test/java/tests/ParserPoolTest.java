@@ -0,0 +1,102 @@
+package tests;
+
+import com.hedera.hashgraph.protoparse.MalformedProtobufException;
+import com.hedera.hashgraph.protoparse.ParserPool;
+import org.junit.jupiter.api.Test;
+import sample.target.proto.parsers.OmnibusParser;
+import test.proto.Nested;
+import test.proto.Omnibus;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParserPoolTest {
+    @Test
+    void invalidArgumentsThrow() {
+        assertThrows(NullPointerException.class, () -> new ParserPool<OmnibusParser>(null));
+        assertThrows(IllegalArgumentException.class, () -> new ParserPool<>(OmnibusParser::new, -1));
+        assertThrows(NullPointerException.class, () -> new ParserPool<>(OmnibusParser::new).release(null));
+    }
+
+    @Test
+    void releasedParsersAreReused() {
+        final var pool = new ParserPool<>(OmnibusParser::new);
+        final var parser = pool.acquire();
+        pool.release(parser);
+        assertSame(parser, pool.acquire());
+        assertEquals(2, pool.acquires());
+        assertEquals(1, pool.misses());
+        assertEquals(0.5, pool.missRate());
+        assertTrue(pool.averageAcquireNanos() > 0);
+
+        pool.resetCounters();
+        assertEquals(0, pool.missRate());
+        assertEquals(0, pool.averageAcquireNanos());
+    }
+
+    @Test
+    void idleParsersAreBounded() {
+        final var pool = new ParserPool<>(OmnibusParser::new, 2);
+        final var parsers = new ArrayList<OmnibusParser>();
+        for (int i = 0; i < 10; i++) {
+            parsers.add(pool.acquire());
+        }
+        parsers.forEach(pool::release);
+
+        // Only the 4 parsers that fit in this thread's stripe, and 2 in the overflow queue, were kept
+        final var reused = new IdentityHashMap<OmnibusParser, Boolean>();
+        parsers.forEach(p -> reused.put(p, true));
+        int numReused = 0;
+        for (int i = 0; i < 10; i++) {
+            if (reused.containsKey(pool.acquire())) {
+                numReused++;
+            }
+        }
+        assertEquals(6, numReused);
+        assertEquals(14, pool.misses());
+    }
+
+    @Test
+    void useReleasesTheParserEvenWhenItThrows() throws Exception {
+        final var pool = new ParserPool<>(OmnibusParser::new);
+        assertThrows(MalformedProtobufException.class,
+                () -> pool.use(parser -> parser.parse(new byte[] { (byte) 0xFF })));
+        pool.use(parser -> parser.parse(new byte[0]));
+        assertEquals(1, pool.misses());
+    }
+
+    @Test
+    void parsersAreSharedSafelyByManyThreads() throws Exception {
+        final var pool = new ParserPool<>(OmnibusParser::new);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final var results = new ArrayList<Future<Boolean>>();
+            for (int i = 0; i < 1000; i++) {
+                final var memo = "Message " + i;
+                final var protobuf = Omnibus.newBuilder()
+                        .setMemo(memo)
+                        .setNested(Nested.newBuilder().setNestedMemo(memo))
+                        .build()
+                        .toByteArray();
+                results.add(executor.submit(() -> pool.use(parser -> {
+                    final var omnibus = parser.parse(protobuf);
+                    return memo.equals(omnibus.memo()) && memo.equals(omnibus.nested().nestedMemo());
+                })));
+            }
+            for (final var result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(1000, pool.acquires());
+        // Only a handful of parsers are ever in use at once, so very few had to be created
+        assertTrue(pool.missRate() < 0.1);
+    }
+}
@@ -0,0 +1,66 @@
+package tests;
+
+import com.hedera.hashgraph.protoparse.BooleanList;
+import com.hedera.hashgraph.protoparse.DoubleList;
+import com.hedera.hashgraph.protoparse.FloatList;
+import com.hedera.hashgraph.protoparse.IntList;
+import com.hedera.hashgraph.protoparse.LongList;
+import com.hedera.hashgraph.protoparse.ParseListener;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrimitiveListTest {
+    @Test
+    void listsAreEqualToListsOfBoxedValues() {
+        assertEquals(List.of(1, -2, 3), IntList.of(1, -2, 3));
+        assertEquals(IntList.of(1, -2, 3), List.of(1, -2, 3));
+        assertEquals(List.of(1, -2, 3).hashCode(), IntList.of(1, -2, 3).hashCode());
+        assertEquals(List.of(Long.MIN_VALUE, 0L), LongList.of(Long.MIN_VALUE, 0L));
+        assertEquals(List.of(Float.NaN, 1.5f), FloatList.of(Float.NaN, 1.5f));
+        assertEquals(List.of(Double.NaN, 1.5).hashCode(), DoubleList.of(Double.NaN, 1.5).hashCode());
+        assertEquals(List.of(true, false), BooleanList.of(true, false));
+        assertNotEquals(IntList.of(1, 2), IntList.of(1, 2, 3));
+    }
+
+    @Test
+    void valuesAreReadWithoutBoxing() {
+        final var values = new int[] { 1, 2, 3 };
+        final var list = IntList.of(values);
+        values[0] = 42;
+        assertEquals(3, list.size());
+        assertEquals(1, list.getInt(0));
+        assertArrayEquals(new int[] { 1, 2, 3 }, list.toIntArray());
+        assertThrows(IndexOutOfBoundsException.class, () -> list.getInt(3));
+    }
+
+    @Test
+    void listsAreImmutable() {
+        assertThrows(UnsupportedOperationException.class, () -> IntList.of(1).add(2));
+        assertThrows(UnsupportedOperationException.class, () -> LongList.of(1).set(0, 2L));
+        assertThrows(UnsupportedOperationException.class, () -> DoubleList.of(1).clear());
+    }
+
+    @Test
+    void primitiveCallbacksBridgeToBoxedCallbacks() {
+        final var received = new ArrayList<List<?>>();
+        final var listener = new ParseListener() {
+            @Override
+            public void intList(int fieldNum, List<Integer> value) {
+                received.add(value);
+            }
+
+            @Override
+            public void doubleList(int fieldNum, List<Double> value) {
+                received.add(value);
+            }
+        };
+
+        listener.intList(1, IntList.of(1, 2, 3));
+        listener.doubleList(2, DoubleList.of(1.5));
+        assertEquals(List.of(List.of(1, 2, 3), List.of(1.5)), received);
+    }
+}
@@ -0,0 +1,56 @@
+package tests;
+
+import com.hedera.hashgraph.protoparse.StringCache;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StringCacheTest {
+    @Test
+    void invalidArgumentsThrow() {
+        assertThrows(IllegalArgumentException.class, () -> new StringCache(0));
+        assertThrows(IllegalArgumentException.class, () -> new StringCache(16, -1));
+    }
+
+    @Test
+    void repeatedValuesAreTheSameInstance() {
+        final var cache = new StringCache(16);
+        final var bytes = "I need some ℏ".getBytes(StandardCharsets.UTF_8);
+        final var first = cache.get(bytes, 0, bytes.length);
+        assertEquals("I need some ℏ", first);
+        assertSame(first, cache.get(bytes.clone(), 0, bytes.length));
+        assertSame(first, cache.get(ByteBuffer.allocateDirect(bytes.length).put(bytes), 0, bytes.length));
+        assertEquals(2, cache.hits());
+        assertEquals(1, cache.misses());
+        assertEquals(2.0 / 3, cache.hitRate(), 0.0001);
+
+        cache.resetCounters();
+        assertEquals(0, cache.hitRate());
+    }
+
+    @Test
+    void valuesTooLongAreNotCached() {
+        final var cache = new StringCache(16, 4);
+        final var bytes = "Hedera".getBytes(StandardCharsets.UTF_8);
+        assertEquals("Hedera", cache.get(bytes, 0, bytes.length));
+        assertNotSame(cache.get(bytes, 0, bytes.length), cache.get(bytes, 0, bytes.length));
+        assertSame(cache.get(bytes, 0, 4), cache.get(bytes, 0, 4));
+        assertEquals(0, cache.misses() - 1);
+    }
+
+    @Test
+    void cacheNeverGrows() {
+        final var cache = new StringCache(8);
+        final var hot = "hot".getBytes(StandardCharsets.UTF_8);
+        final var hotValue = cache.get(hot, 0, hot.length);
+        for (int i = 0; i < 10_000; i++) {
+            final var bytes = ("value" + i).getBytes(StandardCharsets.UTF_8);
+            assertEquals("value" + i, cache.get(bytes, 0, bytes.length));
+            // A value that keeps getting hit is never evicted
+            assertSame(hotValue, cache.get(hot, 0, hot.length));
+        }
+    }
+}
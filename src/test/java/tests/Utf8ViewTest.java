@@ -0,0 +1,46 @@
+package tests;
+
+import com.hedera.hashgraph.protoparse.Utf8View;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Utf8ViewTest {
+    @ParameterizedTest
+    @ValueSource(strings = {"", "Bob", "I need some ℏ to run work on Hedera!", "😀 emoji"})
+    void viewMatchesString(String value) {
+        final var bytes = value.getBytes(StandardCharsets.UTF_8);
+        final var padded = new byte[bytes.length + 2];
+        System.arraycopy(bytes, 0, padded, 1, bytes.length);
+        final var arrayView = new Utf8View(padded, 1, bytes.length);
+        final var bufferView = new Utf8View(ByteBuffer.allocateDirect(bytes.length).put(bytes).flip());
+
+        for (final var view : new Utf8View[] { arrayView, bufferView }) {
+            assertEquals(bytes.length, view.byteLength());
+            assertEquals(value.length(), view.length());
+            assertTrue(view.contentEquals(value));
+            assertFalse(view.contentEquals(value + "!"));
+            assertEquals(value, view.toString());
+            assertSame(view.toString(), view.toString());
+            assertEquals(ByteBuffer.wrap(bytes), view.bytes());
+        }
+
+        assertEquals(arrayView, bufferView);
+        assertEquals(arrayView.hashCode(), bufferView.hashCode());
+    }
+
+    @Test
+    void viewsOfDifferentBytesAreNotEqual() {
+        final var bob = new Utf8View("Bob".getBytes(StandardCharsets.UTF_8), 0, 3);
+        final var sue = new Utf8View("Sue".getBytes(StandardCharsets.UTF_8), 0, 3);
+        assertNotEquals(bob, sue);
+        assertNotEquals(bob, "Bob");
+        assertFalse(bob.contentEquals("Bo"));
+        assertFalse(bob.contentEquals(null));
+    }
+}
@@ -1,6 +1,7 @@
 package tests;
 
 import com.google.protobuf.ByteString;
+import com.hedera.hashgraph.protoparse.ByteBufferOutputStream;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -10,12 +11,15 @@ import sample.target.proto.writers.AppleWriter;
 import sample.target.proto.writers.OmnibusWriter;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class WriterTest {
     // Also need object test and one-of test
@@ -915,4 +919,31 @@ class WriterTest {
 
         assertArrayEquals(protobuf, protobuf2);
     }
+
+    @Test
+    void writeIntoDirectBuffer() throws Exception {
+        final var omnibus = new Omnibus.Builder()
+                .int32Number(-42)
+                .fixed32Number(7)
+                .sfixed64Number(Long.MIN_VALUE)
+                .doubleNumber(10.25)
+                .nested(new Nested("My memo uses special characters like ℏ"))
+                .fixed64NumberList(List.of(1L, 2L, Long.MAX_VALUE))
+                .build();
+        final var out = new ByteArrayOutputStream();
+        new OmnibusWriter().write(omnibus, out);
+        final var protobuf = out.toByteArray();
+
+        final var buffer = ByteBuffer.allocateDirect(protobuf.length + 1);
+        new OmnibusWriter().write(omnibus, new ByteBufferOutputStream(buffer));
+        assertEquals(protobuf.length, buffer.position());
+        final var protobuf2 = new byte[protobuf.length];
+        buffer.flip().get(protobuf2);
+        assertArrayEquals(protobuf, protobuf2);
+
+        // The buffer is never grown
+        final var tooSmall = ByteBuffer.allocateDirect(protobuf.length - 1);
+        assertThrows(IOException.class,
+                () -> new OmnibusWriter().write(omnibus, new ByteBufferOutputStream(tooSmall)));
+    }
 }